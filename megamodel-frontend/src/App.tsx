@@ -6,7 +6,7 @@ import { api } from "./services/api";
 
 export default function App() {
   const [loading, setLoading] = useState(true);
-  const { components, setComponents } = useComponentStore();
+  const { components, setComponents, applyStateChange } = useComponentStore();
   const [error, setError] = useState<string | null>(null);
   const [isCreating, setIsCreating] = useState(false);
   const [newComponent, setNewComponent] = useState({
@@ -17,8 +17,21 @@ export default function App() {
 
   useEffect(() => {
     fetchComponents();
-    const interval = setInterval(fetchComponents, 5000);
-    return () => clearInterval(interval);
+    let reconnecting = false;
+    return api.subscribeToStateStream({
+      onStateChange: change =>
+        applyStateChange(
+          change.componentId,
+          change.microserviceId,
+          change.toState,
+          change.version
+        ),
+      // Changes missed while disconnected are picked up by a full reload
+      onOpen: () => {
+        if (reconnecting) fetchComponents();
+        reconnecting = true;
+      },
+    });
   }, []);
 
   async function fetchComponents() {
@@ -10,13 +10,13 @@ import {
   Book,
   Edit3,
 } from "lucide-react";
-import { GlobalOperationModel, GomInstance } from "../types/gom";
+import { GomInstance, GomSummary } from "../types/gom";
 import { useGomStore } from "../stores/gomStore";
 import { gomApi } from "../services/gomApi";
 import { api } from "../services/api";
 
 interface GomListProps {
-  onEdit: (gom: GlobalOperationModel) => void;
+  onEdit: (gom: GomSummary) => void;
 }
 
 export function GomList({ onEdit }: GomListProps) {
@@ -84,7 +84,7 @@ export function GomList({ onEdit }: GomListProps) {
     }
   };
 
-  const handleDelete = async (gom: GlobalOperationModel) => {
+  const handleDelete = async (gom: GomSummary) => {
     try {
       await gomApi.deleteGom(gom.id);
       removeGom(gom.id);
@@ -309,6 +309,11 @@ export function GomList({ onEdit }: GomListProps) {
                             >
                               {instance.status}
                             </span>
+                            {instance.status === "RUNNING" && (
+                              <span className="ml-2 text-xs text-gray-500">
+                                {instance.completedSteps}/{instance.totalSteps} steps
+                              </span>
+                            )}
                           </div>
                           <div className="flex items-center gap-2">
                             <span className="text-xs text-gray-500">
@@ -1,6 +1,9 @@
 import React, { useEffect, useState } from "react";
 import { BarChart, Activity, Clock, AlertCircle, Terminal } from "lucide-react";
 import { ComponentState } from "../types/msi";
+import { api, MetricsDelta, StateChangeMessage } from "../services/api";
+
+const MAX_RECENT_ITEMS = 50;
 
 interface Metrics {
   stateDistribution: Record<ComponentState, number>;
@@ -24,6 +27,16 @@ interface Metrics {
   }>;
 }
 
+function emptyMetrics(): Metrics {
+  return {
+    stateDistribution: {} as Record<ComponentState, number>,
+    totalOperations: 0,
+    transitionCounts: {} as Record<ComponentState, number>,
+    recentTransitions: [],
+    componentLogs: [],
+  };
+}
+
 export function MetricsPanel() {
   const [metrics, setMetrics] = useState<Metrics | null>(null);
   const [loading, setLoading] = useState(true);
@@ -33,40 +46,30 @@ export function MetricsPanel() {
   );
 
   useEffect(() => {
-    fetchMetrics();
-    const interval = setInterval(fetchMetrics, 5000);
-    return () => clearInterval(interval);
+    fetchActivity();
+    return api.subscribeToStateStream({
+      onMetrics: applyMetrics,
+      onStateChange: applyTransition,
+      onError: () => setError("Lost connection to metrics stream, retrying..."),
+    });
   }, []);
 
-  async function fetchMetrics() {
+  // Activity lists are loaded once; afterwards the stream keeps them current
+  async function fetchActivity() {
     try {
-      const [distribution, operations, transitions, recent, logs] =
-        await Promise.all([
-          fetch("http://localhost:8080/api/metrics/state-distribution").then(
-            res => res.json()
-          ),
-          fetch("http://localhost:8080/api/metrics/total-operations").then(
-            res => res.json()
-          ),
-          fetch("http://localhost:8080/api/metrics/transition-counts").then(
-            res => res.json()
-          ),
-          fetch("http://localhost:8080/api/metrics/recent-transitions").then(
-            res => res.json()
-          ),
-          fetch("http://localhost:8080/api/metrics/component-logs").then(res =>
-            res.json()
-          ),
-        ]);
-
-      setMetrics({
-        stateDistribution: distribution,
-        totalOperations: operations,
-        transitionCounts: transitions,
+      const [recent, logs] = await Promise.all([
+        fetch("http://localhost:8080/api/metrics/recent-transitions").then(
+          res => res.json()
+        ),
+        fetch("http://localhost:8080/api/metrics/component-logs").then(res =>
+          res.json()
+        ),
+      ]);
+      setMetrics(current => ({
+        ...(current ?? emptyMetrics()),
         recentTransitions: recent,
         componentLogs: logs,
-      });
-      setError(null);
+      }));
     } catch (error) {
       console.error("Error fetching metrics:", error);
       setError("Failed to fetch metrics");
@@ -75,6 +78,39 @@ export function MetricsPanel() {
     }
   }
 
+  function applyMetrics(delta: MetricsDelta) {
+    setMetrics(current => {
+      const base = current ?? emptyMetrics();
+      return {
+        ...base,
+        totalOperations: delta.totalOperations ?? base.totalOperations,
+        stateDistribution: {
+          ...base.stateDistribution,
+          ...delta.stateDistribution,
+        },
+        transitionCounts: { ...base.transitionCounts, ...delta.transitionCounts },
+      };
+    });
+    setError(null);
+    setLoading(false);
+  }
+
+  function applyTransition(change: StateChangeMessage) {
+    setMetrics(current => {
+      const base = current ?? emptyMetrics();
+      return {
+        ...base,
+        recentTransitions: [...base.recentTransitions, change].slice(
+          -MAX_RECENT_ITEMS
+        ),
+        componentLogs: [
+          ...base.componentLogs,
+          { ...change, type: "STATE_TRANSITION" as const },
+        ].slice(-MAX_RECENT_ITEMS),
+      };
+    });
+  }
+
   const getStateColor = (state: ComponentState) => {
     switch (state) {
       case ComponentState.MODIFIED:
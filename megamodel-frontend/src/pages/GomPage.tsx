@@ -4,7 +4,7 @@ import { GomList } from "../components/GomList";
 import { GomForm } from "../components/GomForm";
 import { useGomStore } from "../stores/gomStore";
 import { gomApi } from "../services/gomApi";
-import { GlobalOperationModel } from "../types/gom";
+import { GlobalOperationModel, GomSummary } from "../types/gom";
 
 export function GomPage() {
   const { goms, setGoms, addGom, updateGom } = useGomStore();
@@ -43,6 +43,15 @@ export function GomPage() {
     }
   };
 
+  const handleEditGom = async (gom: GomSummary) => {
+    try {
+      setEditingGom(await gomApi.fetchGom(gom.id));
+    } catch (error) {
+      setError("Failed to load GOM. Please try again.");
+      console.error("Error loading GOM:", error);
+    }
+  };
+
   const handleUpdateGom = async (gom: GlobalOperationModel) => {
     try {
       const updatedGom = await gomApi.updateGom(gom.id, gom);
@@ -116,7 +125,7 @@ export function GomPage() {
             <div className="animate-spin rounded-full h-12 w-12 border-b-2 border-indigo-600"></div>
           </div>
         ) : (
-          <GomList onEdit={setEditingGom} />
+          <GomList onEdit={handleEditGom} />
         )}
       </div>
     </div>
@@ -12,6 +12,34 @@ const defaultHeaders = {
   Accept: "application/json",
 };
 
+export interface StateChangeMessage {
+  componentId: string;
+  microserviceId: string;
+  fromState: ComponentState;
+  toState: ComponentState;
+  version: number;
+  operation: string;
+  timestamp: string;
+}
+
+export interface MetricsDelta {
+  totalOperations?: number;
+  transitionCounts?: Partial<Record<ComponentState, number>>;
+  stateDistribution?: Partial<Record<ComponentState, number>>;
+}
+
+export interface StateStreamHandlers {
+  onStateChange?: (change: StateChangeMessage) => void;
+  onMetrics?: (delta: MetricsDelta) => void;
+  onOpen?: () => void;
+  onError?: () => void;
+}
+
+export interface CursorPage<T> {
+  items: T[];
+  nextCursor: string | null;
+}
+
 async function handleResponse(response: Response) {
   if (!response.ok) {
     const errorText = await response.text();
@@ -20,16 +48,34 @@ async function handleResponse(response: Response) {
   return response;
 }
 
+// Follows nextCursor until the last page of a listing endpoint
+export async function fetchAllPages<T>(
+  url: string,
+  params: Record<string, string> = {},
+  pageSize = 500
+): Promise<T[]> {
+  const items: T[] = [];
+  let cursor: string | null = null;
+  do {
+    const query = new URLSearchParams({ ...params, limit: String(pageSize) });
+    if (cursor !== null) query.set("after", cursor);
+    const response = await fetch(`${url}?${query}`, {
+      headers: defaultHeaders,
+      mode: "cors",
+      credentials: "include",
+    });
+    await handleResponse(response);
+    const page: CursorPage<T> = await response.json();
+    items.push(...page.items);
+    cursor = page.nextCursor;
+  } while (cursor !== null);
+  return items;
+}
+
 export const api = {
   async fetchComponents(): Promise<ComponentModel[]> {
     try {
-      const response = await fetch(`${API_BASE_URL}/components`, {
-        headers: defaultHeaders,
-        mode: "cors",
-        credentials: "include",
-      });
-      await handleResponse(response);
-      return response.json();
+      return await fetchAllPages<ComponentModel>(`${API_BASE_URL}/components`);
     } catch (error) {
       console.error("Error fetching components:", error);
       throw new Error("Failed to fetch components");
@@ -38,19 +84,12 @@ export const api = {
 
   async fetchComponentStates(): Promise<MicroserviceComponent[]> {
     try {
-      const response = await fetch(`${API_BASE_URL}/states`, {
-        headers: defaultHeaders,
-        mode: "cors",
-        credentials: "include",
-      });
-      await handleResponse(response);
-
-      const data = await response.json();
+      const data = await fetchAllPages<any>(`${API_BASE_URL}/states`);
 
-      return data.map((state: any) => ({
+      return data.map(state => ({
         id: state.id.toString(),
-        microservice_id: state.microservice.id,
-        component_id: state.componentModel.id,
+        microservice_id: state.microserviceId,
+        component_id: state.componentId,
         state: state.state as ComponentState,
         consistency_type: state.consistencyType as ConsistencyType,
         version: state.version,
@@ -156,4 +195,32 @@ export const api = {
       throw new Error("Failed to trigger write operation");
     }
   },
+
+  subscribeToStateStream(
+    handlers: StateStreamHandlers,
+    filters: { componentIds?: string[]; microserviceIds?: string[] } = {}
+  ): () => void {
+    const params = new URLSearchParams();
+    filters.componentIds?.forEach(id => params.append("componentIds", id));
+    filters.microserviceIds?.forEach(id =>
+      params.append("microserviceIds", id)
+    );
+    const query = params.toString();
+
+    // EventSource reconnects on its own; the first metrics event after a
+    // reconnect carries full values again
+    const source = new EventSource(
+      `${API_BASE_URL}/states/stream${query ? `?${query}` : ""}`,
+      { withCredentials: true }
+    );
+    source.addEventListener("state", event =>
+      handlers.onStateChange?.(JSON.parse((event as MessageEvent).data))
+    );
+    source.addEventListener("metrics", event =>
+      handlers.onMetrics?.(JSON.parse((event as MessageEvent).data))
+    );
+    source.onopen = () => handlers.onOpen?.();
+    source.onerror = () => handlers.onError?.();
+    return () => source.close();
+  },
 };
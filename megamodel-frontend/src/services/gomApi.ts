@@ -1,4 +1,5 @@
-import { GlobalOperationModel, GomInstance } from "../types/gom";
+import { GlobalOperationModel, GomInstance, GomSummary } from "../types/gom";
+import { fetchAllPages } from "./api";
 
 const API_BASE_URL = "http://localhost:8080/api";
 
@@ -8,13 +9,21 @@ const defaultHeaders = {
 };
 
 export const gomApi = {
-  async fetchGoms(): Promise<GlobalOperationModel[]> {
-    const response = await fetch(`${API_BASE_URL}/goms`, {
+  async fetchGoms(): Promise<GomSummary[]> {
+    try {
+      return await fetchAllPages<GomSummary>(`${API_BASE_URL}/goms`);
+    } catch {
+      throw new Error("Failed to fetch GOMs");
+    }
+  },
+
+  async fetchGom(id: string): Promise<GlobalOperationModel> {
+    const response = await fetch(`${API_BASE_URL}/goms/${id}`, {
       headers: defaultHeaders,
       mode: "cors",
       credentials: "include",
     });
-    if (!response.ok) throw new Error("Failed to fetch GOMs");
+    if (!response.ok) throw new Error("Failed to fetch GOM");
     return response.json();
   },
 
@@ -1,4 +1,5 @@
 import { Microservice } from "../types/microservice";
+import { fetchAllPages } from "./api";
 
 const API_BASE_URL = "http://localhost:8080/api";
 
@@ -9,13 +10,11 @@ const defaultHeaders = {
 
 export const microserviceApi = {
   async fetchMicroservices(): Promise<Microservice[]> {
-    const response = await fetch(`${API_BASE_URL}/microservices`, {
-      headers: defaultHeaders,
-      mode: "cors", // Added explicit CORS mode
-      credentials: "include",
-    });
-    if (!response.ok) throw new Error("Failed to fetch microservices");
-    return response.json();
+    try {
+      return await fetchAllPages<Microservice>(`${API_BASE_URL}/microservices`);
+    } catch {
+      throw new Error("Failed to fetch microservices");
+    }
   },
 
   async createMicroservice(
@@ -12,6 +12,12 @@ interface ComponentStore {
     states: MicroserviceComponent[]
   ) => void;
   updateComponent: (id: string, component: ComponentModel) => void;
+  applyStateChange: (
+    componentId: string,
+    microserviceId: string,
+    state: ComponentState,
+    version: number
+  ) => void;
 }
 
 export const useComponentStore = create<ComponentStore>(set => ({
@@ -35,4 +41,13 @@ export const useComponentStore = create<ComponentStore>(set => ({
         c.id === id ? { ...c, ...component } : c
       ),
     })),
+  applyStateChange: (componentId, microserviceId, newState, version) =>
+    set(state => ({
+      components: state.components.map(c =>
+        c.id === componentId &&
+        (c.microserviceId === microserviceId || c.microserviceId === "")
+          ? { ...c, state: newState, version, microserviceId }
+          : c
+      ),
+    })),
 }));
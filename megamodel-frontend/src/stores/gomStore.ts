@@ -1,13 +1,13 @@
 import { create } from "zustand";
-import { GlobalOperationModel, GomInstance } from "../types/gom";
+import { GomInstance, GomSummary } from "../types/gom";
 
 interface GomStore {
-  goms: GlobalOperationModel[];
+  goms: GomSummary[];
   instances: Record<string, GomInstance[]>;
-  setGoms: (goms: GlobalOperationModel[]) => void;
+  setGoms: (goms: GomSummary[]) => void;
   setInstances: (gomId: string, instances: GomInstance[]) => void;
-  addGom: (gom: GlobalOperationModel) => void;
-  updateGom: (id: string, gom: GlobalOperationModel) => void;
+  addGom: (gom: GomSummary) => void;
+  updateGom: (id: string, gom: GomSummary) => void;
   removeGom: (id: string) => void;
   addInstance: (gomId: string, instance: GomInstance) => void;
   removeInstance: (gomId: string, instanceId: string) => void;
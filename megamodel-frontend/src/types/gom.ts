@@ -10,10 +10,15 @@ export interface MicroserviceRequirement {
   requiredComponents: ComponentRequirement[];
 }
 
-export interface GlobalOperationModel {
+// Listing projection of a GOM, fetch the GOM itself for its requirements
+export interface GomSummary {
   id: string;
   name: string;
   description: string;
+  coherenceProtocol?: string;
+}
+
+export interface GlobalOperationModel extends GomSummary {
   microserviceRequirements: MicroserviceRequirement[];
 }
 
@@ -21,7 +26,10 @@ export interface GomInstance {
   id: string;
   gomId: string;
   name: string;
-  status: "RUNNING" | "COMPLETED" | "FAILED";
+  status: "QUEUED" | "RUNNING" | "COMPLETED" | "FAILED" | "CANCELLED";
+  totalSteps: number;
+  completedSteps: number;
+  errorMessage?: string;
   microserviceStates: MicroserviceComponentState[];
   createdAt: string;
   updatedAt: string;
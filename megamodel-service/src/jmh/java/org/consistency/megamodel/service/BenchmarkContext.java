@@ -0,0 +1,91 @@
+package org.consistency.megamodel.service;
+
+import org.consistency.megamodel.MegamodelServiceApplication;
+import org.consistency.megamodel.model.ComponentModelEntity;
+import org.consistency.megamodel.model.ComponentModelRepository;
+import org.consistency.megamodel.model.ConsistencyType;
+import org.consistency.megamodel.model.MicroserviceEntity;
+import org.consistency.megamodel.model.MicroserviceRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boots the service without a web server against an in-memory H2 database and seeds
+ * components that are each shared by the same set of microservices.
+ */
+final class BenchmarkContext implements AutoCloseable {
+    // MIGRATIONS is the production schema, HIBERNATE the one generated from the entities
+    enum Schema { MIGRATIONS, HIBERNATE }
+
+    private final ConfigurableApplicationContext context;
+    final StateTransitionService stateTransitionService;
+    final MetricsService metricsService;
+    final List<String> microserviceIds = new ArrayList<>();
+    final List<String> componentIds = new ArrayList<>();
+
+    BenchmarkContext(int components, int sharers, String consistencyMix) {
+        this(components, sharers, consistencyMix, Schema.MIGRATIONS);
+    }
+
+    BenchmarkContext(int components, int sharers, String consistencyMix, Schema schema) {
+        context = new SpringApplicationBuilder(MegamodelServiceApplication.class)
+            .web(WebApplicationType.NONE)
+            // Command line arguments take precedence over application.properties
+            .run(
+                // Flyway does not recognize H2's MariaDB mode, MySQL mode accepts the same DDL
+                "--spring.datasource.url=jdbc:h2:mem:bench-" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.flyway.enabled=" + (schema == Schema.MIGRATIONS),
+                // H2 reports the enum columns of the migrations as OTHER, which validate rejects
+                "--spring.jpa.hibernate.ddl-auto=" + (schema == Schema.MIGRATIONS ? "none" : "create"),
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.org.consistency.megamodel=WARN");
+        stateTransitionService = context.getBean(StateTransitionService.class);
+        metricsService = context.getBean(MetricsService.class);
+
+        MicroserviceRepository microserviceRepo = context.getBean(MicroserviceRepository.class);
+        ComponentModelRepository componentModelRepo = context.getBean(ComponentModelRepository.class);
+        for (int i = 0; i < sharers; i++) {
+            MicroserviceEntity microservice = new MicroserviceEntity();
+            microservice.setId("ms-" + i);
+            microservice.setName("ms-" + i);
+            microserviceRepo.save(microservice);
+            microserviceIds.add(microservice.getId());
+        }
+        for (int i = 0; i < components; i++) {
+            ComponentModelEntity component = new ComponentModelEntity();
+            component.setId("component-" + i);
+            component.setName("component-" + i);
+            componentModelRepo.save(component);
+            componentIds.add(component.getId());
+        }
+
+        ConsistencyType[] types = ConsistencyType.values();
+        for (String componentId : componentIds) {
+            for (int i = 0; i < sharers; i++) {
+                String microserviceId = microserviceIds.get(i);
+                stateTransitionService.handleReadOperation(microserviceId, componentId);
+                ConsistencyType type = "MIXED".equals(consistencyMix)
+                    ? types[i % types.length]
+                    : ConsistencyType.valueOf(consistencyMix);
+                stateTransitionService.updateConsistencyType(microserviceId, componentId, type);
+            }
+        }
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
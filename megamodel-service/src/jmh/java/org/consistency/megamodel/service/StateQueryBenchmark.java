@@ -0,0 +1,114 @@
+package org.consistency.megamodel.service;
+
+import org.consistency.megamodel.model.ComponentModelServiceRepository;
+import org.consistency.megamodel.model.ComponentState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The hot component_model_services queries with the schema Hibernate generates from the
+ * entities and with the schema of the migrations. The plan of every query is printed at the
+ * start of a trial, so the output shows which index each schema uses.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StateQueryBenchmark {
+    private static final List<PlannedQuery> PLANNED_QUERIES = List.of(
+        new PlannedQuery("pair lookup",
+            "select * from component_model_services where microservice_id = 'ms-0' and component_model_id = 'component-0'"),
+        new PlannedQuery("component load",
+            "select id, microservice_id, state, version from component_model_services where component_model_id = 'component-0'"),
+        new PlannedQuery("other holders",
+            "select * from component_model_services where component_model_id = 'component-0' and microservice_id <> 'ms-0'"),
+        new PlannedQuery("holders in state",
+            "select * from component_model_services where component_model_id = 'component-0' and state = 'MODIFIED'"),
+        new PlannedQuery("components in state",
+            "select distinct component_model_id from component_model_services where state = 'SHARED_MINUS'"),
+        new PlannedQuery("components with staleness bound",
+            "select distinct component_model_id from component_model_services "
+                + "where staleness_bound is not null and state <> 'INVALID'"));
+
+    private record PlannedQuery(String name, String sql) {
+    }
+
+    @State(Scope.Benchmark)
+    public static class Database {
+        @Param({"HIBERNATE", "MIGRATIONS"})
+        String schema;
+
+        @Param({"256"})
+        int components;
+
+        @Param({"16"})
+        int sharers;
+
+        BenchmarkContext context;
+        ComponentModelServiceRepository repository;
+
+        @Setup(Level.Trial)
+        public void start() {
+            context = new BenchmarkContext(components, sharers, "MIXED", BenchmarkContext.Schema.valueOf(schema));
+            repository = context.bean(ComponentModelServiceRepository.class);
+
+            JdbcTemplate jdbc = context.bean(JdbcTemplate.class);
+            for (PlannedQuery query : PLANNED_QUERIES) {
+                System.out.println("[" + schema + "] " + query.name());
+                for (Map<String, Object> row : jdbc.queryForList("explain " + query.sql())) {
+                    System.out.println("    " + row.values());
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            context.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Caller {
+        final SplittableRandom random = new SplittableRandom(42);
+    }
+
+    @Benchmark
+    public void pairLookup(Database database, Caller caller, Blackhole blackhole) {
+        BenchmarkContext context = database.context;
+        String microserviceId = context.microserviceIds.get(caller.random.nextInt(context.microserviceIds.size()));
+        String componentId = context.componentIds.get(caller.random.nextInt(context.componentIds.size()));
+        blackhole.consume(database.repository.findByMicroserviceIdAndComponentModelId(microserviceId, componentId));
+    }
+
+    @Benchmark
+    public void componentLoad(Database database, Caller caller, Blackhole blackhole) {
+        BenchmarkContext context = database.context;
+        String componentId = context.componentIds.get(caller.random.nextInt(context.componentIds.size()));
+        blackhole.consume(database.repository.findEntriesByComponentId(componentId));
+    }
+
+    @Benchmark
+    public void holdersInState(Database database, Caller caller, Blackhole blackhole) {
+        BenchmarkContext context = database.context;
+        String componentId = context.componentIds.get(caller.random.nextInt(context.componentIds.size()));
+        blackhole.consume(database.repository.findByComponentModelIdAndState(componentId, ComponentState.SHARED_MINUS));
+    }
+
+    @Benchmark
+    public void componentsInState(Database database, Blackhole blackhole) {
+        blackhole.consume(database.repository.findComponentIdsByState(ComponentState.SHARED_MINUS));
+    }
+}
@@ -0,0 +1,78 @@
+package org.consistency.megamodel.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read/write operations through the full service against H2. Throughput gives ops/us and
+ * sample time the latency percentiles (p0.99 in the JMH output).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class StateTransitionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Engine {
+        @Param({"1", "8", "64"})
+        int sharers;
+
+        @Param({"EVENTUAL", "STRONG", "BOUNDED_STALENESS", "MIXED"})
+        String consistencyMix;
+
+        @Param({"0.5", "0.9", "0.99"})
+        double readRatio;
+
+        @Param({"16"})
+        int components;
+
+        BenchmarkContext context;
+
+        @Setup(Level.Trial)
+        public void start() {
+            context = new BenchmarkContext(components, sharers, consistencyMix);
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            context.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Caller {
+        final SplittableRandom random = new SplittableRandom(42);
+    }
+
+    @Benchmark
+    public void operation(Engine engine, Caller caller) {
+        BenchmarkContext context = engine.context;
+        String microserviceId = context.microserviceIds.get(caller.random.nextInt(context.microserviceIds.size()));
+        String componentId = context.componentIds.get(caller.random.nextInt(context.componentIds.size()));
+        if (caller.random.nextDouble() < engine.readRatio) {
+            context.stateTransitionService.handleReadOperation(microserviceId, componentId);
+        } else {
+            context.stateTransitionService.handleWriteOperation(microserviceId, componentId);
+        }
+    }
+
+    @Benchmark
+    public void findAuthoritativeSource(Engine engine, Caller caller, Blackhole blackhole) {
+        BenchmarkContext context = engine.context;
+        String componentId = context.componentIds.get(caller.random.nextInt(context.componentIds.size()));
+        blackhole.consume(context.stateTransitionService.findAuthoritativeSource(componentId));
+    }
+}
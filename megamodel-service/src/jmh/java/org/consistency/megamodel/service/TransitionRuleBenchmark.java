@@ -0,0 +1,70 @@
+package org.consistency.megamodel.service;
+
+import org.consistency.megamodel.model.ComponentState;
+import org.consistency.megamodel.model.ConsistencyType;
+import org.consistency.megamodel.model.OperationType;
+import org.consistency.megamodel.state.IdRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The pieces of the hot path below the state table: the transition table lookup and
+ * recording a transition in the metrics log.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class TransitionRuleBenchmark {
+    private static final ConsistencyType[] TYPES = ConsistencyType.values();
+    private static final ComponentState[] STATES = ComponentState.values();
+
+    private final int[] componentKeys = new int[16];
+    private final int[] microserviceKeys = new int[64];
+    private BenchmarkContext context;
+    private MetricsService metricsService;
+    private TransitionTable transitions;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // The transitions are recorded for pairs that exist, like the ones of real operations
+        context = new BenchmarkContext(componentKeys.length, microserviceKeys.length, "EVENTUAL");
+        metricsService = context.metricsService;
+        transitions = new DefaultCoherenceProtocol().transitionTable();
+        IdRegistry ids = context.bean(IdRegistry.class);
+        for (int i = 0; i < componentKeys.length; i++) {
+            componentKeys[i] = ids.existingComponentKey(context.componentIds.get(i));
+        }
+        for (int i = 0; i < microserviceKeys.length; i++) {
+            microserviceKeys[i] = ids.existingMicroserviceKey(context.microserviceIds.get(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ComponentState peerWriteTransition() {
+        int i = counter++;
+        return transitions.next(TYPES[i % TYPES.length], STATES[(i >>> 3) % STATES.length],
+            OperationType.WRITE, TransitionTable.Role.PEER);
+    }
+
+    @Benchmark
+    public void recordStateTransition() {
+        int i = counter++;
+        metricsService.recordStateTransition(
+            componentKeys[i & 15], microserviceKeys[i & 63], STATES[i & 3], STATES[(i + 1) & 3], "WRITE");
+    }
+}
@@ -0,0 +1,150 @@
+package org.consistency.megamodel.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.consistency.megamodel.model.ModelNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Calls other nodes of the cluster. Every request carries {@link #FORWARDED_BY}, so the
+ * receiving node serves it itself instead of forwarding it again. A peer answering 503
+ * or not answering at all surfaces as {@link PartitionUnavailableException}.
+ */
+@Slf4j
+@Component
+public class ClusterClient {
+    public static final String FORWARDED_BY = "X-Megamodel-Forwarded-By";
+
+    private final PartitionTable partitions;
+    private final ObjectMapper objectMapper;
+    private final RestTemplate restTemplate;
+
+    public ClusterClient(
+        PartitionTable partitions,
+        ObjectMapper objectMapper,
+        RestTemplateBuilder restTemplateBuilder,
+        @Value("${megamodel.cluster.request-timeout-ms:5000}") long requestTimeoutMs
+    ) {
+        this.partitions = partitions;
+        this.objectMapper = objectMapper;
+        this.restTemplate = restTemplateBuilder
+            .setConnectTimeout(Duration.ofMillis(requestTimeoutMs))
+            .setReadTimeout(Duration.ofMillis(requestTimeoutMs))
+            .errorHandler(new ResponseErrorHandler() {
+                // Statuses are checked by the callers
+                @Override
+                public boolean hasError(ClientHttpResponse response) {
+                    return false;
+                }
+
+                @Override
+                public void handleError(ClientHttpResponse response) {
+                }
+            })
+            .build();
+    }
+
+    public <T> T post(String nodeUrl, String path, Object body, ParameterizedTypeReference<T> type, Object... uriVariables) {
+        URI uri = UriComponentsBuilder.fromHttpUrl(nodeUrl).path(path).buildAndExpand(uriVariables).encode().toUri();
+        ResponseEntity<byte[]> response = exchange(uri, HttpMethod.POST, new HttpEntity<>(body, headers()));
+        byte[] content = response.getBody() != null ? response.getBody() : new byte[0];
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            throw failure(nodeUrl, response.getStatusCode().value(), new String(content, StandardCharsets.UTF_8));
+        }
+        if (content.length == 0) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(content, objectMapper.getTypeFactory().constructType(type.getType()));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreadable answer from node " + nodeUrl, e);
+        }
+    }
+
+    // Best effort; returns how many peers answered with a success status
+    public int broadcast(String path, Object body, Object... uriVariables) {
+        int accepted = 0;
+        for (String peerUrl : partitions.peerUrls()) {
+            URI uri = UriComponentsBuilder.fromHttpUrl(peerUrl).path(path).buildAndExpand(uriVariables).encode().toUri();
+            try {
+                ResponseEntity<Void> response = restTemplate.exchange(
+                    uri, HttpMethod.POST, new HttpEntity<>(body, headers()), Void.class);
+                if (response.getStatusCode().is2xxSuccessful()) {
+                    accepted++;
+                }
+            } catch (ResourceAccessException e) {
+                log.warn("Could not reach node {} for {}: {}", peerUrl, uri.getPath(), e.getMessage());
+            }
+        }
+        return accepted;
+    }
+
+    // Replays an API request on the node owning its component and copies the answer back
+    public void relay(String nodeUrl, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String query = request.getQueryString();
+        URI uri = URI.create(nodeUrl + request.getRequestURI() + (query != null ? "?" + query : ""));
+        HttpHeaders headers = headers();
+        if (request.getContentType() != null) {
+            headers.set(HttpHeaders.CONTENT_TYPE, request.getContentType());
+        }
+        if (request.getHeader(HttpHeaders.ACCEPT) != null) {
+            headers.set(HttpHeaders.ACCEPT, request.getHeader(HttpHeaders.ACCEPT));
+        }
+        byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+
+        ResponseEntity<byte[]> answer = exchange(uri, HttpMethod.valueOf(request.getMethod()),
+            new HttpEntity<>(body.length > 0 ? body : null, headers));
+        response.setStatus(answer.getStatusCode().value());
+        if (answer.getHeaders().getContentType() != null) {
+            response.setContentType(answer.getHeaders().getContentType().toString());
+        }
+        if (answer.getBody() != null) {
+            response.getOutputStream().write(answer.getBody());
+        }
+    }
+
+    private ResponseEntity<byte[]> exchange(URI uri, HttpMethod method, HttpEntity<?> entity) {
+        try {
+            return restTemplate.exchange(uri, method, entity, byte[].class);
+        } catch (ResourceAccessException e) {
+            throw new PartitionUnavailableException("Node " + uri.getAuthority() + " is unreachable", e);
+        }
+    }
+
+    private HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(FORWARDED_BY, partitions.nodeId());
+        return headers;
+    }
+
+    private static RuntimeException failure(String nodeUrl, int status, String body) {
+        if (status == HttpStatus.SERVICE_UNAVAILABLE.value()) {
+            return new PartitionUnavailableException("Node " + nodeUrl + " does not serve the partition");
+        }
+        if (status == HttpStatus.NOT_FOUND.value()) {
+            return new ModelNotFoundException(body);
+        }
+        return new IllegalStateException(String.format("Node %s answered %d: %s", nodeUrl, status, body));
+    }
+}
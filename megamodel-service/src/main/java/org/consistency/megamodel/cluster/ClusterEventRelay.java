@@ -0,0 +1,72 @@
+package org.consistency.megamodel.cluster;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.consistency.megamodel.event.StateChangeBatchListener;
+import org.consistency.megamodel.event.StateChangeEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends the state changes committed on this node to the other nodes, so stream subscribers
+ * see the changes of every partition whichever node they are connected to. Relaying runs
+ * on its own thread with a bounded backlog; when peers fall behind, batches are dropped
+ * rather than slowing down the event bus.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ClusterEventRelay implements StateChangeBatchListener {
+    private final PartitionTable partitions;
+    private final ClusterClient clusterClient;
+    private final AtomicLong droppedBatches = new AtomicLong();
+    private ThreadPoolExecutor relayExecutor;
+
+    @Value("${megamodel.cluster.event-relay-backlog:256}")
+    private int backlog;
+
+    @PostConstruct
+    void init() {
+        relayExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(backlog),
+            runnable -> {
+                Thread thread = new Thread(runnable, "cluster-event-relay");
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    @Override
+    public void onStateChanges(List<StateChangeEvent> events) {
+        if (!partitions.isEnabled() || partitions.peerUrls().isEmpty()) {
+            return;
+        }
+        List<RelayedStateChange> changes = new ArrayList<>(events.size());
+        events.forEach(event -> changes.add(RelayedStateChange.of(event)));
+        try {
+            relayExecutor.execute(() -> clusterClient.broadcast("/api/cluster/events", changes));
+        } catch (RejectedExecutionException e) {
+            if (droppedBatches.incrementAndGet() % 100 == 1) {
+                log.warn("Event relay backlog is full, {} batches dropped so far", droppedBatches.get());
+            }
+        }
+    }
+
+    public long getDroppedBatches() {
+        return droppedBatches.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        relayExecutor.shutdownNow();
+    }
+}
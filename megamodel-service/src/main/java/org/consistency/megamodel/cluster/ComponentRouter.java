@@ -0,0 +1,132 @@
+package org.consistency.megamodel.cluster;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs component-scoped work on the node that serves the component: locally when this node
+ * serves it, otherwise through the given remote call. Work that hits a partition in the
+ * middle of a move is retried until a node serves it again, at most a few times.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ComponentRouter {
+    private final PartitionTable partitions;
+
+    @Value("${megamodel.cluster.route-attempts:5}")
+    private int attempts;
+
+    @Value("${megamodel.cluster.route-retry-delay-ms:500}")
+    private long retryDelayMs;
+
+    public <T> T route(String componentId, Supplier<T> local, Function<String, T> remote) {
+        if (!partitions.isEnabled()) {
+            return local.get();
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return partitions.isLocal(componentId)
+                    ? local.get()
+                    : remote.apply(partitions.ownerUrl(componentId));
+            } catch (PartitionUnavailableException e) {
+                awaitRetry(attempt, e);
+            }
+        }
+    }
+
+    /**
+     * Splits the components by serving node and merges the results: the local ones are
+     * handled by {@code local}, every other node's share by one {@code remote} call. Both
+     * return an entry, possibly null, for every component they handled; components left
+     * out were not served there and are routed again, as are all components of a call
+     * that failed with {@link PartitionUnavailableException}.
+     */
+    public <V> Map<String, V> routeAll(
+        Collection<String> componentIds,
+        Function<Collection<String>, Map<String, V>> local,
+        BiFunction<String, Collection<String>, Map<String, V>> remote
+    ) {
+        if (!partitions.isEnabled()) {
+            return local.apply(componentIds);
+        }
+        Map<String, V> results = new LinkedHashMap<>();
+        List<String> pending = new ArrayList<>(componentIds);
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            List<String> localIds = new ArrayList<>();
+            Map<String, List<String>> remoteIds = new LinkedHashMap<>();
+            for (String componentId : pending) {
+                if (partitions.isLocal(componentId)) {
+                    localIds.add(componentId);
+                } else {
+                    String ownerUrl = ownerUrlOrNull(componentId);
+                    remoteIds.computeIfAbsent(ownerUrl, url -> new ArrayList<>()).add(componentId);
+                }
+            }
+
+            PartitionUnavailableException failure = null;
+            if (!localIds.isEmpty()) {
+                try {
+                    results.putAll(local.apply(localIds));
+                } catch (PartitionUnavailableException e) {
+                    failure = e;
+                }
+            }
+            for (Map.Entry<String, List<String>> group : remoteIds.entrySet()) {
+                try {
+                    if (group.getKey() == null) {
+                        throw new PartitionUnavailableException("No owner for components " + group.getValue());
+                    }
+                    results.putAll(remote.apply(group.getKey(), group.getValue()));
+                } catch (PartitionUnavailableException e) {
+                    failure = e;
+                }
+            }
+
+            List<String> unserved = new ArrayList<>();
+            for (String componentId : pending) {
+                if (!results.containsKey(componentId)) {
+                    unserved.add(componentId);
+                }
+            }
+            if (!unserved.isEmpty()) {
+                awaitRetry(attempt, failure != null ? failure
+                    : new PartitionUnavailableException("Components " + unserved + " are moving between nodes"));
+            }
+            pending = unserved;
+        }
+        return results;
+    }
+
+    private String ownerUrlOrNull(String componentId) {
+        try {
+            return partitions.ownerUrl(componentId);
+        } catch (PartitionUnavailableException e) {
+            return null;
+        }
+    }
+
+    private void awaitRetry(int attempt, PartitionUnavailableException failure) {
+        if (attempt >= attempts) {
+            throw failure;
+        }
+        log.debug("Retrying after attempt {}: {}", attempt, failure.getMessage());
+        try {
+            Thread.sleep(retryDelayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.consistency.megamodel.cluster;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+@Component
+@RequiredArgsConstructor
+public class ComponentRoutingInterceptor implements HandlerInterceptor {
+    private final PartitionTable partitions;
+    private final ClusterClient clusterClient;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!partitions.isEnabled() || !(handler instanceof HandlerMethod method)
+            || request.getHeader(ClusterClient.FORWARDED_BY) != null) {
+            return true;
+        }
+        RoutedByComponent routed = method.getMethodAnnotation(RoutedByComponent.class);
+        if (routed == null) {
+            return true;
+        }
+        String componentId = componentId(request, routed.value());
+        if (componentId == null || partitions.isLocal(componentId)) {
+            return true;
+        }
+        clusterClient.relay(partitions.ownerUrl(componentId), request, response);
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String componentId(HttpServletRequest request, String name) {
+        Map<String, String> pathVariables =
+            (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (pathVariables != null && pathVariables.containsKey(name)) {
+            return pathVariables.get(name);
+        }
+        return request.getParameter(name);
+    }
+}
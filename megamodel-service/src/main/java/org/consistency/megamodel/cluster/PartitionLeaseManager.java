@@ -0,0 +1,221 @@
+package org.consistency.megamodel.cluster;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.consistency.megamodel.model.ClusterNodeEntity;
+import org.consistency.megamodel.model.ClusterNodeRepository;
+import org.consistency.megamodel.model.PartitionLeaseEntity;
+import org.consistency.megamodel.model.PartitionLeaseRepository;
+import org.consistency.megamodel.service.BackgroundSyncService;
+import org.consistency.megamodel.state.StateFlusher;
+import org.consistency.megamodel.state.StateTable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps this node's share of the partition leases. Every renewal heartbeats the node,
+ * extends the leases it holds, and then moves towards an equal share of the partitions
+ * per live node: excess partitions are released, free or expired ones are acquired.
+ * A partition is released only after its components were unloaded and their dirty rows
+ * flushed, and a newly acquired partition loads its components from the database, so
+ * ownership moves without losing state changes.
+ * <p>
+ * A node stops serving its partitions a safety margin before its leases run out in the
+ * database. Row updates are additionally fenced by the lease epoch the component was
+ * loaded under (see {@link PartitionTable#condition()}), so changes a node still holds
+ * for a partition it lost, such as batches requeued during a database outage, are
+ * rejected by the database instead of overwriting the new owner's rows.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PartitionLeaseManager {
+    private static final String NODE_CLEANUP_JOB = "cluster-node-cleanup";
+
+    private final PartitionTable partitions;
+    private final PartitionLeaseRepository leaseRepository;
+    private final ClusterNodeRepository nodeRepository;
+    private final StateTable stateTable;
+    private final StateFlusher stateFlusher;
+    private final BackgroundSyncService backgroundSyncService;
+
+    @Value("${megamodel.cluster.lease-duration-ms:10000}")
+    private long leaseDurationMs;
+
+    private volatile boolean stopped;
+
+    @PostConstruct
+    void init() {
+        if (!partitions.isEnabled()) {
+            return;
+        }
+        if (leaseRepository.count() > partitions.partitionCount()) {
+            throw new IllegalStateException(String.format(
+                "The database has %d partition leases but this node is configured for %d partitions",
+                leaseRepository.count(), partitions.partitionCount()));
+        }
+        for (int partition = 0; partition < partitions.partitionCount(); partition++) {
+            if (!leaseRepository.existsById(partition)) {
+                try {
+                    leaseRepository.save(new PartitionLeaseEntity(partition));
+                } catch (DataIntegrityViolationException e) {
+                    // Created by another node starting at the same time
+                }
+            }
+        }
+        stateTable.setAccessCheck(partitions::checkLocal);
+        stateTable.setWriteFence(partitions);
+    }
+
+    @Scheduled(fixedDelayString = "${megamodel.cluster.renew-interval-ms:2000}")
+    public synchronized void renewLeases() {
+        if (!partitions.isEnabled() || stopped) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            LocalDateTime now = leaseRepository.databaseTime();
+            Duration leaseDuration = Duration.ofMillis(leaseDurationMs);
+            LocalDateTime until = now.plus(leaseDuration);
+            nodeRepository.save(new ClusterNodeEntity(partitions.nodeId(), partitions.advertisedUrl(), now));
+            leaseRepository.renew(partitions.nodeId(), until);
+            partitions.setServingUntil(started + Duration.ofMillis(leaseDurationMs - leaseDurationMs / 4).toNanos());
+
+            List<ClusterNodeEntity> liveNodes = nodeRepository.findByHeartbeatAtAfter(now.minus(leaseDuration));
+            List<String> peerUrls = new ArrayList<>();
+            for (ClusterNodeEntity node : liveNodes) {
+                if (!node.getNodeId().equals(partitions.nodeId())) {
+                    peerUrls.add(node.getUrl());
+                }
+            }
+            partitions.setPeerUrls(peerUrls);
+            if (partitions.isJobLeader(NODE_CLEANUP_JOB)) {
+                nodeRepository.deleteByHeartbeatBefore(now.minus(leaseDuration.multipliedBy(10)));
+            }
+
+            List<Integer> owned = new ArrayList<>();
+            List<Integer> free = new ArrayList<>();
+            Set<Integer> lost = new HashSet<>();
+            for (PartitionLeaseEntity lease : leaseRepository.findAll()) {
+                int partition = lease.getPartitionId();
+                boolean held = lease.getOwnerNode() != null && lease.getLeaseUntil().isAfter(now);
+                partitions.setOwnerUrl(partition, held ? lease.getOwnerUrl() : null);
+                if (held && lease.getOwnerNode().equals(partitions.nodeId())) {
+                    owned.add(partition);
+                } else {
+                    if (partitions.isMarkedServing(partition)) {
+                        // Lost while this node could not renew, another node may already have changed it
+                        lost.add(partition);
+                    }
+                    if (!held) {
+                        free.add(partition);
+                    }
+                }
+            }
+
+            if (!lost.isEmpty()) {
+                log.warn("Lost the leases of partitions {}", lost);
+                stopServing(lost);
+            }
+
+            int share = (partitions.partitionCount() + liveNodes.size() - 1) / Math.max(1, liveNodes.size());
+            // Partitions left from an unfinished release are released along with the excess
+            Set<Integer> releasing = new HashSet<>();
+            for (int partition : owned) {
+                if (!partitions.isMarkedServing(partition)) {
+                    releasing.add(partition);
+                }
+            }
+            owned.removeAll(releasing);
+            while (owned.size() > share) {
+                releasing.add(owned.remove(owned.size() - 1));
+            }
+            if (!releasing.isEmpty()) {
+                release(releasing);
+            }
+            if (owned.size() < share) {
+                acquire(free, share - owned.size(), now, until);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not renew partition leases: {}", e.getMessage());
+        }
+    }
+
+    private void acquire(List<Integer> free, int wanted, LocalDateTime now, LocalDateTime until) {
+        Set<Integer> acquired = new HashSet<>();
+        for (int partition : free) {
+            if (acquired.size() == wanted) {
+                break;
+            }
+            if (leaseRepository.acquire(partition, partitions.nodeId(), partitions.advertisedUrl(), now, until) == 1) {
+                // The epoch the acquisition moved to fences every row written under this lease
+                PartitionLeaseEntity lease = leaseRepository.findById(partition).orElseThrow();
+                if (partitions.nodeId().equals(lease.getOwnerNode())) {
+                    partitions.setEpoch(partition, lease.getEpoch());
+                    acquired.add(partition);
+                }
+            }
+        }
+        if (!acquired.isEmpty()) {
+            // Anything still loaded from an earlier lease predates the previous owner's changes
+            stateTable.unloadComponents(componentId -> acquired.contains(partitions.partitionOf(componentId)));
+            for (int partition : acquired) {
+                partitions.setOwnerUrl(partition, partitions.advertisedUrl());
+                partitions.startServing(partition);
+            }
+            log.info("Acquired partitions {}", acquired);
+            backgroundSyncService.restoreBackgroundWork(
+                componentId -> acquired.contains(partitions.partitionOf(componentId)));
+        }
+    }
+
+    private void release(Set<Integer> released) {
+        stopServing(released);
+        if (!stateFlusher.flush()) {
+            log.warn("Keeping the leases of partitions {} until their state changes are flushed", released);
+            return;
+        }
+        for (int partition : released) {
+            leaseRepository.release(partition, partitions.nodeId());
+            partitions.setOwnerUrl(partition, null);
+        }
+        log.info("Released partitions {}", released);
+    }
+
+    private void stopServing(Set<Integer> unserved) {
+        unserved.forEach(partitions::stopServing);
+        stateTable.unloadComponents(componentId -> unserved.contains(partitions.partitionOf(componentId)));
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (!partitions.isEnabled()) {
+            return;
+        }
+        stopped = true;
+        for (int partition = 0; partition < partitions.partitionCount(); partition++) {
+            partitions.stopServing(partition);
+        }
+        stateTable.unloadComponents(componentId -> true);
+        try {
+            if (stateFlusher.flush()) {
+                leaseRepository.releaseAll(partitions.nodeId());
+            }
+            nodeRepository.deleteById(partitions.nodeId());
+            log.info("Released the partition leases of node {}", partitions.nodeId());
+        } catch (RuntimeException e) {
+            log.warn("Could not release partition leases, they expire on their own: {}", e.getMessage());
+        }
+    }
+}
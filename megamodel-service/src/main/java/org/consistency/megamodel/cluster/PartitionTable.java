@@ -0,0 +1,179 @@
+package org.consistency.megamodel.cluster;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.consistency.megamodel.state.ComponentStateEntry;
+import org.consistency.megamodel.state.WriteFence;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This node's view of the cluster: which partition a component id belongs to, which
+ * partitions this node serves and where the others are owned. Maintained by
+ * {@link PartitionLeaseManager}; outside clustered mode every component is local.
+ * A partition is only served until the deadline of the last successful lease renewal,
+ * so a node that cannot reach the database stops serving before its leases run out.
+ */
+@Slf4j
+@Component
+public class PartitionTable implements WriteFence {
+    private static final String LEASE_CONDITION =
+        "EXISTS (SELECT 1 FROM partition_leases WHERE partition_id = ? AND owner_node = ? AND epoch = ?)";
+
+    @Value("${megamodel.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${megamodel.cluster.partitions:64}")
+    private int partitionCount;
+
+    @Value("${megamodel.cluster.node-id:}")
+    private String nodeId;
+
+    @Value("${megamodel.cluster.advertised-url:}")
+    private String advertisedUrl;
+
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    private AtomicIntegerArray serving;
+    // Owner of every partition as of the last renewal, null while nobody holds its lease
+    private AtomicReferenceArray<String> ownerUrls;
+    // Lease epoch of every partition as of this node's last acquisition of it
+    private AtomicLongArray epochs;
+    private volatile long servingUntilNanos;
+    private volatile List<String> peerUrls = List.of();
+
+    @PostConstruct
+    void init() throws UnknownHostException {
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = UUID.randomUUID().toString();
+        }
+        if (advertisedUrl == null || advertisedUrl.isBlank()) {
+            advertisedUrl = "http://" + InetAddress.getLocalHost().getHostName() + ":" + serverPort;
+        }
+        serving = new AtomicIntegerArray(partitionCount);
+        ownerUrls = new AtomicReferenceArray<>(partitionCount);
+        epochs = new AtomicLongArray(partitionCount);
+        if (enabled) {
+            log.info("Clustered mode: node {} at {}, {} partitions", nodeId, advertisedUrl, partitionCount);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    public String advertisedUrl() {
+        return advertisedUrl;
+    }
+
+    public int partitionCount() {
+        return partitionCount;
+    }
+
+    // String.hashCode is specified, so every node maps a component to the same partition
+    public int partitionOf(String componentId) {
+        return Math.floorMod(componentId.hashCode(), partitionCount);
+    }
+
+    public boolean isLocal(String componentId) {
+        return !enabled || isServing(partitionOf(componentId));
+    }
+
+    /**
+     * Whether this node runs the cluster-wide periodic job of the given name. A job belongs to
+     * the partition its name hashes to, so it runs on exactly one node at a time, different
+     * jobs spread over the nodes and a job fails over with its partition's lease.
+     */
+    public boolean isJobLeader(String job) {
+        return isLocal(job);
+    }
+
+    public void checkLocal(String componentId) {
+        if (!isLocal(componentId)) {
+            throw new PartitionUnavailableException("Component " + componentId + " is not served by node " + nodeId);
+        }
+    }
+
+    // Base URL of the node serving the component, which is not this node
+    public String ownerUrl(String componentId) {
+        String url = ownerUrls.get(partitionOf(componentId));
+        if (url == null || url.equals(advertisedUrl)) {
+            throw new PartitionUnavailableException("Partition of component " + componentId + " has no owner");
+        }
+        return url;
+    }
+
+    public String ownerUrl(int partition) {
+        return ownerUrls.get(partition);
+    }
+
+    public boolean isServing(int partition) {
+        return serving.get(partition) == 1 && System.nanoTime() - servingUntilNanos < 0;
+    }
+
+    // Other live nodes as of the last renewal
+    public List<String> peerUrls() {
+        return peerUrls;
+    }
+
+    // Rows are only written while this node still holds the lease it loaded them under
+    @Override
+    public long token(String componentId) {
+        return epochs.get(partitionOf(componentId));
+    }
+
+    @Override
+    public String condition() {
+        return LEASE_CONDITION;
+    }
+
+    @Override
+    public void bind(PreparedStatement ps, int index, ComponentStateEntry entry) throws SQLException {
+        ps.setInt(index, partitionOf(entry.getComponentId()));
+        ps.setString(index + 1, nodeId);
+        ps.setLong(index + 2, entry.getFenceToken());
+    }
+
+    void setEpoch(int partition, long epoch) {
+        epochs.set(partition, epoch);
+    }
+
+    void startServing(int partition) {
+        serving.set(partition, 1);
+    }
+
+    void stopServing(int partition) {
+        serving.set(partition, 0);
+    }
+
+    boolean isMarkedServing(int partition) {
+        return serving.get(partition) == 1;
+    }
+
+    void setOwnerUrl(int partition, String url) {
+        ownerUrls.set(partition, url);
+    }
+
+    void setServingUntil(long nanos) {
+        servingUntilNanos = nanos;
+    }
+
+    void setPeerUrls(List<String> urls) {
+        peerUrls = List.copyOf(urls);
+    }
+}
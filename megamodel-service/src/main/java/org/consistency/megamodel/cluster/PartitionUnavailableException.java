@@ -0,0 +1,20 @@
+package org.consistency.megamodel.cluster;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * The partition of a component is not served here and its owner is unknown or unreachable,
+ * for instance while the partition moves between nodes. Retrying shortly after succeeds
+ * once a node holds the lease again.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class PartitionUnavailableException extends RuntimeException {
+    public PartitionUnavailableException(String message) {
+        super(message);
+    }
+
+    public PartitionUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
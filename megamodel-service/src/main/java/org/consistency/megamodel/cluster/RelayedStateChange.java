@@ -0,0 +1,23 @@
+package org.consistency.megamodel.cluster;
+
+import org.consistency.megamodel.event.StateChangeEvent;
+import org.consistency.megamodel.model.ComponentState;
+
+// Wire form of a StateChangeEvent sent to the other nodes for their stream subscribers
+public record RelayedStateChange(
+    String microserviceId,
+    String componentId,
+    ComponentState oldState,
+    ComponentState newState,
+    Long version,
+    String operation
+) {
+    static RelayedStateChange of(StateChangeEvent event) {
+        return new RelayedStateChange(event.getMicroserviceId(), event.getComponentId(),
+            event.getOldState(), event.getNewState(), event.getVersion(), event.getOperation());
+    }
+
+    public StateChangeEvent toEvent(Object source) {
+        return new StateChangeEvent(source, microserviceId, componentId, oldState, newState, version, operation);
+    }
+}
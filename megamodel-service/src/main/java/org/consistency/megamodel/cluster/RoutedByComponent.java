@@ -0,0 +1,18 @@
+package org.consistency.megamodel.cluster;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a handler that works on a single component. When clustering is enabled and the
+ * component belongs to another node, {@link ComponentRoutingInterceptor} relays the whole
+ * request to that node instead of invoking the handler.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RoutedByComponent {
+    // Name of the path variable or request parameter holding the component id
+    String value();
+}
@@ -1,12 +1,17 @@
 package org.consistency.megamodel.config;
 
+import lombok.RequiredArgsConstructor;
+import org.consistency.megamodel.cluster.ComponentRoutingInterceptor;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
+@RequiredArgsConstructor
 public class WebConfig implements WebMvcConfigurer {
-    
+    private final ComponentRoutingInterceptor componentRoutingInterceptor;
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/**")  // Changed from /api/** to allow all paths
@@ -16,4 +21,9 @@ public class WebConfig implements WebMvcConfigurer {
             .allowCredentials(true)
             .maxAge(3600); // 1 hour max age
     }
-}
\ No newline at end of file
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(componentRoutingInterceptor).addPathPatterns("/api/states/**");
+    }
+}
@@ -0,0 +1,151 @@
+package org.consistency.megamodel.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.consistency.megamodel.cluster.PartitionTable;
+import org.consistency.megamodel.cluster.RelayedStateChange;
+import org.consistency.megamodel.model.StateOperation;
+import org.consistency.megamodel.service.GlobalOperationModelService;
+import org.consistency.megamodel.service.MetadataCache;
+import org.consistency.megamodel.service.MetricsService;
+import org.consistency.megamodel.service.StateStreamService;
+import org.consistency.megamodel.service.StateTransitionService;
+import org.consistency.megamodel.state.ComponentStateEntry;
+import org.consistency.megamodel.state.StateCount;
+import org.consistency.megamodel.state.StateFlusher;
+import org.consistency.megamodel.state.StateTable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cluster status, and the endpoints nodes call on each other. Apart from the status, every
+ * endpoint works on this node only and is never forwarded again, so a request that reaches
+ * a node which lost the component fails instead of bouncing between nodes.
+ */
+@RestController
+@RequestMapping("/api/cluster")
+@RequiredArgsConstructor
+public class ClusterController {
+    private final PartitionTable partitions;
+    private final StateTransitionService stateTransitionService;
+    private final GlobalOperationModelService gomService;
+    private final StateTable stateTable;
+    private final StateStreamService stateStreamService;
+    private final MetricsService metricsService;
+    private final MetadataCache metadataCache;
+    private final StateFlusher stateFlusher;
+
+    @GetMapping
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", partitions.isEnabled());
+        status.put("nodeId", partitions.nodeId());
+        status.put("url", partitions.advertisedUrl());
+        status.put("peers", partitions.peerUrls());
+        if (partitions.isEnabled()) {
+            List<Map<String, Object>> partitionStatus = new ArrayList<>();
+            int served = 0;
+            for (int partition = 0; partition < partitions.partitionCount(); partition++) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("partition", partition);
+                entry.put("owner", partitions.ownerUrl(partition));
+                entry.put("serving", partitions.isServing(partition));
+                partitionStatus.add(entry);
+                served += partitions.isServing(partition) ? 1 : 0;
+            }
+            status.put("servedPartitions", served);
+            status.put("partitions", partitionStatus);
+        }
+        return status;
+    }
+
+    @PostMapping("/authoritative-sources")
+    public Map<String, ComponentStateEntry> findAuthoritativeSources(@RequestBody List<String> componentIds) {
+        return stateTransitionService.findLocalAuthoritativeSources(componentIds);
+    }
+
+    @PostMapping("/component-states")
+    public Map<String, Map<String, ComponentStateEntry>> getComponentStates(@RequestBody List<String> componentIds) {
+        return stateTransitionService.getLocalComponentStates(componentIds);
+    }
+
+    @PostMapping("/batches")
+    public Map<String, List<ComponentStateEntry>> handleBatchOperations(@RequestBody List<StateOperation> operations) {
+        return stateTransitionService.handleLocalBatchOperations(operations);
+    }
+
+    @PostMapping("/goms/{gomId}/steps/{step}")
+    public ComponentStateEntry applyGomStep(
+            @PathVariable String gomId,
+            @PathVariable int step,
+            @RequestBody StateOperation operation) {
+        return gomService.applyStepLocally(gomId, step, operation);
+    }
+
+    @PostMapping("/goms/{gomId}/invalidate")
+    public ResponseEntity<Void> invalidatePlan(@PathVariable String gomId) {
+        gomService.invalidateLocalPlan(gomId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/gom-instances/{instanceId}/cancel")
+    public ResponseEntity<Void> cancelExecution(@PathVariable String instanceId) {
+        return gomService.cancelLocalExecution(instanceId)
+                ? ResponseEntity.accepted().build()
+                : ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    @PostMapping("/components/{id}/evict")
+    public ResponseEntity<Void> evictComponent(@PathVariable String id) {
+        stateTable.evictComponent(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/microservices/{id}/evict")
+    public ResponseEntity<Void> evictMicroservice(@PathVariable String id) {
+        stateTable.evictMicroservice(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/components/{id}/invalidate")
+    public ResponseEntity<Void> invalidateComponent(@PathVariable String id) {
+        metadataCache.invalidateLocalComponent(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/microservices/{id}/invalidate")
+    public ResponseEntity<Void> invalidateMicroservice(@PathVariable String id) {
+        metadataCache.invalidateLocalMicroservice(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/events")
+    public ResponseEntity<Void> relayStateChanges(@RequestBody List<RelayedStateChange> changes) {
+        stateStreamService.onStateChanges(changes.stream().map(change -> change.toEvent(this)).toList());
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/states/flush")
+    public ResponseEntity<Void> flushStates() {
+        return stateFlusher.flush()
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
+
+    @PostMapping("/state-counts/prepare")
+    public ResponseEntity<Void> prepareStateCounts() {
+        metricsService.prepareStateCounts();
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/state-counts")
+    public ResponseEntity<Void> applyStateCounts(@RequestBody List<StateCount> counted) {
+        metricsService.applyStateCounts(counted);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,12 +1,16 @@
 package org.consistency.megamodel.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.consistency.megamodel.cluster.ClusterClient;
 import org.consistency.megamodel.model.ComponentModelEntity;
 import org.consistency.megamodel.model.ComponentModelRepository;
+import org.consistency.megamodel.model.ComponentModelSummary;
+import org.consistency.megamodel.service.MetadataCache;
+import org.consistency.megamodel.state.StateTable;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -14,15 +18,22 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class ComponentModelController {
     private final ComponentModelRepository componentModelRepository;
+    private final StateTable stateTable;
+    private final ClusterClient clusterClient;
+    private final MetadataCache metadataCache;
 
     @GetMapping
-    public List<ComponentModelEntity> getAllComponents() {
-        return componentModelRepository.findAll();
+    public CursorPage<ComponentModelSummary> getAllComponents(
+            @RequestParam(defaultValue = "") String after,
+            @RequestParam(defaultValue = "100") int limit) {
+        int pageSize = CursorPage.clamp(limit);
+        return CursorPage.of(componentModelRepository.findSummariesAfter(after, PageRequest.ofSize(pageSize + 1)),
+                pageSize, ComponentModelSummary::id);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<ComponentModelEntity> getComponentById(@PathVariable String id) {
-        return componentModelRepository.findById(id)
+    public ResponseEntity<ComponentModelSummary> getComponentById(@PathVariable String id) {
+        return metadataCache.findComponent(id)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -32,7 +43,9 @@ public class ComponentModelController {
         if (component.getId() == null) {
             component.setId(UUID.randomUUID().toString());
         }
-        return componentModelRepository.save(component);
+        ComponentModelEntity saved = componentModelRepository.save(component);
+        metadataCache.invalidateComponent(saved.getId());
+        return saved;
     }
 
     @PutMapping("/{id}")
@@ -43,7 +56,9 @@ public class ComponentModelController {
             return ResponseEntity.notFound().build();
         }
         component.setId(id);
-        return ResponseEntity.ok(componentModelRepository.save(component));
+        ComponentModelEntity saved = componentModelRepository.save(component);
+        metadataCache.invalidateComponent(id);
+        return ResponseEntity.ok(saved);
     }
 
     @DeleteMapping("/{id}")
@@ -52,6 +67,9 @@ public class ComponentModelController {
             return ResponseEntity.notFound().build();
         }
         componentModelRepository.deleteById(id);
+        stateTable.evictComponent(id);
+        metadataCache.invalidateComponent(id);
+        clusterClient.broadcast("/api/cluster/components/{id}/evict", null, id);
         return ResponseEntity.noContent().build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package org.consistency.megamodel.controller;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a listing ordered by id. {@code nextCursor} is the id to pass as {@code after}
+ * for the following page and is null on the last page.
+ */
+public record CursorPage<T>(List<T> items, String nextCursor) {
+    static final int MAX_LIMIT = 1000;
+
+    static int clamp(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    // Rows must have been queried with limit + 1, the extra row only tells whether there is a next page
+    static <T> CursorPage<T> of(List<T> rows, int limit, Function<T, Object> id) {
+        if (rows.size() <= limit) {
+            return new CursorPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new CursorPage<>(List.copyOf(items), String.valueOf(id.apply(items.get(limit - 1))));
+    }
+}
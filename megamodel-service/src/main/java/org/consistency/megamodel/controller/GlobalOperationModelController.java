@@ -3,11 +3,17 @@ package org.consistency.megamodel.controller;
 import lombok.RequiredArgsConstructor;
 import org.consistency.megamodel.model.GlobalOperationModelEntity;
 import org.consistency.megamodel.model.GlobalOperationModelRepository;
+import org.consistency.megamodel.model.GomInstanceEntity;
+import org.consistency.megamodel.model.GomSummary;
 import org.consistency.megamodel.service.GlobalOperationModelService;
+import org.consistency.megamodel.service.GomValidationResult;
+import org.consistency.megamodel.service.MetadataCache;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.net.URI;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
@@ -17,15 +23,20 @@ import java.util.UUID;
 public class GlobalOperationModelController {
     private final GlobalOperationModelRepository gomRepository;
     private final GlobalOperationModelService gomService;
+    private final MetadataCache metadataCache;
 
     @GetMapping
-    public List<GlobalOperationModelEntity> getAllGoms() {
-        return gomRepository.findAll();
+    public CursorPage<GomSummary> getAllGoms(
+            @RequestParam(defaultValue = "") String after,
+            @RequestParam(defaultValue = "100") int limit) {
+        int pageSize = CursorPage.clamp(limit);
+        return CursorPage.of(gomRepository.findSummariesAfter(after, PageRequest.ofSize(pageSize + 1)),
+                pageSize, GomSummary::id);
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<GlobalOperationModelEntity> getGomById(@PathVariable String id) {
-        return gomRepository.findById(id)
+        return metadataCache.findGom(id)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -35,7 +46,10 @@ public class GlobalOperationModelController {
         if (gom.getId() == null) {
             gom.setId(UUID.randomUUID().toString());
         }
-        return gomRepository.save(gom);
+        gomService.checkConditions(gom);
+        GlobalOperationModelEntity saved = gomRepository.save(gom);
+        gomService.invalidatePlan(saved.getId());
+        return saved;
     }
 
     @PutMapping("/{id}")
@@ -46,7 +60,10 @@ public class GlobalOperationModelController {
             return ResponseEntity.notFound().build();
         }
         gom.setId(id);
-        return ResponseEntity.ok(gomRepository.save(gom));
+        gomService.checkConditions(gom);
+        GlobalOperationModelEntity saved = gomRepository.save(gom);
+        gomService.invalidatePlan(id);
+        return ResponseEntity.ok(saved);
     }
 
     @DeleteMapping("/{id}")
@@ -55,14 +72,27 @@ public class GlobalOperationModelController {
             return ResponseEntity.notFound().build();
         }
         gomRepository.deleteById(id);
+        gomService.invalidatePlan(id);
         return ResponseEntity.noContent().build();
     }
 
+    @GetMapping("/{id}/validate")
+    public GomValidationResult validateGom(@PathVariable String id) {
+        return gomService.validateGom(id);
+    }
+
     @PostMapping("/{id}/execute")
-    public ResponseEntity<Void> executeGom(
+    public ResponseEntity<Map<String, Object>> executeGom(
             @PathVariable String id,
-            @RequestBody Map<String, Object> inputs) {
-        gomService.executeGom(id, inputs);
-        return ResponseEntity.ok().build();
+            @RequestParam(defaultValue = "false") boolean wait) {
+        GomInstanceEntity instance = wait
+                ? gomService.executeGom(id)
+                : gomService.submitGom(id);
+        Map<String, Object> body = new HashMap<>();
+        body.put("instanceId", instance.getId());
+        body.put("status", instance.getStatus());
+        return wait
+                ? ResponseEntity.ok(body)
+                : ResponseEntity.accepted().location(URI.create("/api/gom-instances/" + instance.getId())).body(body);
     }
-}
\ No newline at end of file
+}
@@ -2,7 +2,9 @@ package org.consistency.megamodel.controller;
 
 import lombok.RequiredArgsConstructor;
 import org.consistency.megamodel.model.GomInstanceEntity;
+import org.consistency.megamodel.service.GlobalOperationModelService;
 import org.consistency.megamodel.service.GomInstanceService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -14,6 +16,7 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class GomInstanceController {
     private final GomInstanceService gomInstanceService;
+    private final GlobalOperationModelService gomService;
 
     @GetMapping("/goms/{gomId}/instances")
     public List<GomInstanceEntity> getInstancesByGomId(@PathVariable String gomId) {
@@ -34,6 +37,13 @@ public class GomInstanceController {
         return gomInstanceService.createInstance(gomId, request.getName());
     }
 
+    @PostMapping("/gom-instances/{instanceId}/cancel")
+    public ResponseEntity<Void> cancelInstance(@PathVariable String instanceId) {
+        return gomService.cancelExecution(instanceId)
+                ? ResponseEntity.accepted().build()
+                : ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
     @DeleteMapping("/gom-instances/{instanceId}")
     public ResponseEntity<Void> deleteInstance(@PathVariable String instanceId) {
         gomInstanceService.deleteInstance(instanceId);
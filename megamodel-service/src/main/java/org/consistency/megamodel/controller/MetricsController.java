@@ -2,9 +2,13 @@ package org.consistency.megamodel.controller;
 
 import lombok.RequiredArgsConstructor;
 import org.consistency.megamodel.model.ComponentState;
+import org.consistency.megamodel.model.ConsistencyType;
+import org.consistency.megamodel.service.MetadataCache;
 import org.consistency.megamodel.service.MetricsService;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
@@ -15,11 +19,27 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class MetricsController {
     private final MetricsService metricsService;
+    private final MetadataCache metadataCache;
     
     @GetMapping("/state-distribution")
     public Map<ComponentState, Long> getStateDistribution() {
         return metricsService.getCurrentStateDistribution();
     }
+
+    @GetMapping("/state-distribution/consistency-types")
+    public Map<ConsistencyType, Map<ComponentState, Long>> getStateDistributionByConsistencyType() {
+        return metricsService.getStateDistributionByConsistencyType();
+    }
+
+    @GetMapping("/state-distribution/components")
+    public Map<String, Map<ComponentState, Long>> getStateDistributionByComponent() {
+        return metricsService.getStateDistributionByComponent();
+    }
+
+    @GetMapping("/state-distribution/components/{componentId}")
+    public Map<ComponentState, Long> getComponentStateDistribution(@PathVariable String componentId) {
+        return metricsService.getStateDistribution(componentId);
+    }
     
     @GetMapping("/total-operations")
     public long getTotalOperations() {
@@ -32,12 +52,17 @@ public class MetricsController {
     }
 
     @GetMapping("/recent-transitions")
-    public List<Map<String, Object>> getRecentTransitions() {
-        return metricsService.getRecentTransitions();
+    public List<Map<String, Object>> getRecentTransitions(@RequestParam(defaultValue = "50") int limit) {
+        return metricsService.getRecentTransitions(limit);
     }
 
     @GetMapping("/component-logs")
-    public List<Map<String, Object>> getComponentLogs() {
-        return metricsService.getComponentLogs();
+    public List<Map<String, Object>> getComponentLogs(@RequestParam(defaultValue = "50") int limit) {
+        return metricsService.getComponentLogs(limit);
+    }
+
+    @GetMapping("/caches")
+    public Map<String, Map<String, Object>> getCacheStats() {
+        return metadataCache.getStats();
     }
-}
\ No newline at end of file
+}
@@ -1,12 +1,16 @@
 package org.consistency.megamodel.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.consistency.megamodel.cluster.ClusterClient;
 import org.consistency.megamodel.model.MicroserviceEntity;
 import org.consistency.megamodel.model.MicroserviceRepository;
+import org.consistency.megamodel.model.MicroserviceSummary;
+import org.consistency.megamodel.service.MetadataCache;
+import org.consistency.megamodel.state.StateTable;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -14,15 +18,22 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class MicroserviceController {
     private final MicroserviceRepository microserviceRepository;
+    private final StateTable stateTable;
+    private final ClusterClient clusterClient;
+    private final MetadataCache metadataCache;
 
     @GetMapping
-    public List<MicroserviceEntity> getAllMicroservices() {
-        return microserviceRepository.findAll();
+    public CursorPage<MicroserviceSummary> getAllMicroservices(
+            @RequestParam(defaultValue = "") String after,
+            @RequestParam(defaultValue = "100") int limit) {
+        int pageSize = CursorPage.clamp(limit);
+        return CursorPage.of(microserviceRepository.findSummariesAfter(after, PageRequest.ofSize(pageSize + 1)),
+                pageSize, MicroserviceSummary::id);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<MicroserviceEntity> getMicroserviceById(@PathVariable String id) {
-        return microserviceRepository.findById(id)
+    public ResponseEntity<MicroserviceSummary> getMicroserviceById(@PathVariable String id) {
+        return metadataCache.findMicroservice(id)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -32,7 +43,9 @@ public class MicroserviceController {
         if (microservice.getId() == null) {
             microservice.setId(UUID.randomUUID().toString());
         }
-        return microserviceRepository.save(microservice);
+        MicroserviceEntity saved = microserviceRepository.save(microservice);
+        metadataCache.invalidateMicroservice(saved.getId());
+        return saved;
     }
 
     @PutMapping("/{id}")
@@ -43,7 +56,9 @@ public class MicroserviceController {
             return ResponseEntity.notFound().build();
         }
         microservice.setId(id);
-        return ResponseEntity.ok(microserviceRepository.save(microservice));
+        MicroserviceEntity saved = microserviceRepository.save(microservice);
+        metadataCache.invalidateMicroservice(id);
+        return ResponseEntity.ok(saved);
     }
 
     @DeleteMapping("/{id}")
@@ -52,6 +67,9 @@ public class MicroserviceController {
             return ResponseEntity.notFound().build();
         }
         microserviceRepository.deleteById(id);
+        stateTable.evictMicroservice(id);
+        metadataCache.invalidateMicroservice(id);
+        clusterClient.broadcast("/api/cluster/microservices/{id}/evict", null, id);
         return ResponseEntity.noContent().build();
     }
 }
\ No newline at end of file
@@ -1,14 +1,25 @@
 package org.consistency.megamodel.controller;
 
 import lombok.RequiredArgsConstructor;
-import org.consistency.megamodel.model.ComponentModelServiceEntity;
+import org.consistency.megamodel.cluster.ClusterClient;
+import org.consistency.megamodel.cluster.RoutedByComponent;
+import org.consistency.megamodel.model.ComponentState;
 import org.consistency.megamodel.model.ConsistencyType;
+import org.consistency.megamodel.model.StateOperation;
 import org.consistency.megamodel.model.ComponentModelServiceRepository;
+import org.consistency.megamodel.service.StateStreamService;
 import org.consistency.megamodel.service.StateTransitionService;
+import org.consistency.megamodel.state.ComponentStateEntry;
+import org.consistency.megamodel.state.StateDurabilityException;
+import org.consistency.megamodel.state.StateFlusher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/states")
@@ -16,37 +27,63 @@ import java.util.List;
 public class StateController {
     private final ComponentModelServiceRepository componentModelServiceRepository;
     private final StateTransitionService stateTransitionService;
+    private final StateStreamService stateStreamService;
+    private final StateFlusher stateFlusher;
+    private final ClusterClient clusterClient;
 
     @GetMapping
-    public List<ComponentModelServiceEntity> getAllStates() {
-        return componentModelServiceRepository.findAll();
+    public CursorPage<ComponentStateEntry> getAllStates(
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String componentId,
+            @RequestParam(required = false) String microserviceId,
+            @RequestParam(required = false) ComponentState state,
+            @RequestParam(required = false) ConsistencyType consistencyType) {
+        int pageSize = CursorPage.clamp(limit);
+        // States are written behind; every node writes its pending changes so the page is current
+        if (!stateFlusher.flush()) {
+            throw new StateDurabilityException("Component states could not be flushed");
+        }
+        clusterClient.broadcast("/api/cluster/states/flush", null);
+        return CursorPage.of(componentModelServiceRepository.findEntriesAfter(
+                after, componentId, microserviceId, state, consistencyType, PageRequest.ofSize(pageSize + 1)),
+                pageSize, ComponentStateEntry::getId);
     }
 
     @GetMapping("/{microserviceId}/{componentId}")
-    public ResponseEntity<ComponentModelServiceEntity> getState(
+    @RoutedByComponent("componentId")
+    public ResponseEntity<ComponentStateEntry> getState(
             @PathVariable String microserviceId,
             @PathVariable String componentId) {
-        return componentModelServiceRepository
-                .findByMicroserviceIdAndComponentModelId(microserviceId, componentId)
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+        ComponentStateEntry state = stateTransitionService.getComponentState(microserviceId, componentId);
+        return state != null ? ResponseEntity.ok(state) : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/owners")
+    public Map<String, ComponentStateEntry> getOwners(@RequestParam List<String> componentIds) {
+        return stateTransitionService.findAuthoritativeSources(componentIds);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStateChanges(
+            @RequestParam(required = false) List<String> componentIds,
+            @RequestParam(required = false) List<String> microserviceIds) {
+        return stateStreamService.subscribe(componentIds, microserviceIds);
     }
 
     @PutMapping("/{microserviceId}/{componentId}")
-    public ResponseEntity<ComponentModelServiceEntity> updateState(
+    @RoutedByComponent("componentId")
+    public ResponseEntity<ComponentStateEntry> updateState(
             @PathVariable String microserviceId,
             @PathVariable String componentId,
             @RequestBody UpdateStateRequest request) {
-        return componentModelServiceRepository
-                .findByMicroserviceIdAndComponentModelId(microserviceId, componentId)
-                .map(entity -> {
-                    entity.setConsistencyType(request.getConsistencyType());
-                    return ResponseEntity.ok(componentModelServiceRepository.save(entity));
-                })
-                .orElse(ResponseEntity.notFound().build());
+        ComponentStateEntry state = stateTransitionService
+                .updateConsistencyType(microserviceId, componentId, request.getConsistencyType());
+        return state != null ? ResponseEntity.ok(state) : ResponseEntity.notFound().build();
     }
 
     @PostMapping("/operations/read")
+    @RoutedByComponent("componentId")
     public ResponseEntity<Void> handleReadOperation(
             @RequestParam String microserviceId,
             @RequestParam String componentId) {
@@ -55,12 +92,18 @@ public class StateController {
     }
 
     @PostMapping("/operations/write")
+    @RoutedByComponent("componentId")
     public ResponseEntity<Void> handleWriteOperation(
             @RequestParam String microserviceId,
             @RequestParam String componentId) {
         stateTransitionService.handleWriteOperation(microserviceId, componentId);
         return ResponseEntity.ok().build();
     }
+
+    @PostMapping("/operations/batch")
+    public List<ComponentStateEntry> handleBatchOperations(@RequestBody List<StateOperation> operations) {
+        return stateTransitionService.handleBatchOperations(operations);
+    }
 }
 
 class UpdateStateRequest {
@@ -0,0 +1,7 @@
+package org.consistency.megamodel.event;
+
+public enum BackpressurePolicy {
+    BLOCK,       // wait until the dispatcher frees a slot
+    DROP,        // discard the event and count it
+    CALLER_RUNS  // deliver the queued events and then this one on the publishing thread
+}
@@ -0,0 +1,74 @@
+package org.consistency.megamodel.event;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free ring buffer for many producers and a single consumer. Producers claim
+ * a sequence with a CAS on the cursor and publish the slot by storing its sequence, so the
+ * consumer never sees a claimed slot before its element is written.
+ */
+class EventRingBuffer<T> {
+    private final Object[] elements;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong producerCursor = new AtomicLong();
+    private volatile long consumerCursor;
+
+    EventRingBuffer(int requestedCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        elements = new Object[capacity];
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        mask = capacity - 1;
+    }
+
+    int capacity() {
+        return elements.length;
+    }
+
+    boolean offer(T element) {
+        while (true) {
+            long sequence = producerCursor.get();
+            if (sequence - consumerCursor >= elements.length) {
+                return false;
+            }
+            if (producerCursor.compareAndSet(sequence, sequence + 1)) {
+                int index = (int) sequence & mask;
+                elements[index] = element;
+                published.lazySet(index, sequence);
+                return true;
+            }
+        }
+    }
+
+    // Only called by one consumer at a time
+    @SuppressWarnings("unchecked")
+    int drainTo(List<T> target, int max) {
+        long next = consumerCursor;
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) next & mask;
+            if (published.get(index) != next) {
+                break;
+            }
+            target.add((T) elements[index]);
+            elements[index] = null;
+            next++;
+            drained++;
+        }
+        consumerCursor = next;
+        return drained;
+    }
+
+    boolean isEmpty() {
+        return producerCursor.get() == consumerCursor;
+    }
+
+    int size() {
+        return (int) (producerCursor.get() - consumerCursor);
+    }
+}
@@ -0,0 +1,10 @@
+package org.consistency.megamodel.event;
+
+import java.util.List;
+
+/**
+ * Receives committed state changes from {@link StateEventBus} in batches, on the dispatcher thread.
+ */
+public interface StateChangeBatchListener {
+    void onStateChanges(List<StateChangeEvent> events);
+}
@@ -11,14 +11,16 @@ public class StateChangeEvent extends ApplicationEvent {
     private final ComponentState oldState;
     private final ComponentState newState;
     private final Long version;
+    private final String operation;
 
     public StateChangeEvent(Object source, String microserviceId, String componentId, 
-                          ComponentState oldState, ComponentState newState, Long version) {
+                          ComponentState oldState, ComponentState newState, Long version, String operation) {
         super(source);
         this.microserviceId = microserviceId;
         this.componentId = componentId;
         this.oldState = oldState;
         this.newState = newState;
         this.version = version;
+        this.operation = operation;
     }
 }
\ No newline at end of file
@@ -0,0 +1,246 @@
+package org.consistency.megamodel.event;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Delivers {@link StateChangeEvent}s off the request thread. Events raised inside a
+ * transaction are held until it completes. The state table does not roll back, so they are
+ * delivered whether it commits or not. Events go through a bounded ring buffer to a
+ * dispatcher thread that hands them in batches to every {@link StateChangeBatchListener}
+ * and then to the regular Spring event listeners.
+ * <p>
+ * Events are delivered in the order they were published, under every backpressure policy:
+ * with CALLER_RUNS the publishing thread first delivers everything queued before its event.
+ * Publishers do not hold the component lock, so the events of two operations running
+ * concurrently on one component may be published in either order; their versions tell
+ * which write came first.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StateEventBus implements SmartLifecycle {
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectProvider<StateChangeBatchListener> listenerProvider;
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong deliveredEvents = new AtomicLong();
+    // Held by whoever consumes the ring buffer, the dispatcher or a CALLER_RUNS publisher
+    private final ReentrantLock deliveryLock = new ReentrantLock();
+    // Publishers waiting for space under BLOCK, woken by the dispatcher after every drain
+    private final Queue<Thread> blockedPublishers = new ConcurrentLinkedQueue<>();
+
+    @Value("${megamodel.events.buffer-size:65536}")
+    private int bufferSize;
+
+    @Value("${megamodel.events.batch-size:256}")
+    private int batchSize;
+
+    @Value("${megamodel.events.backpressure:BLOCK}")
+    private BackpressurePolicy backpressurePolicy;
+
+    private EventRingBuffer<StateChangeEvent> ringBuffer;
+    private List<StateChangeBatchListener> listeners = List.of();
+    private volatile Thread dispatcher;
+    private volatile boolean running;
+    private volatile boolean dispatcherIdle;
+
+    public void publish(StateChangeEvent event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingEventsOfCurrentTransaction().add(event);
+        } else {
+            enqueue(event);
+        }
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    public long getDeliveredEvents() {
+        return deliveredEvents.get();
+    }
+
+    public int getQueuedEvents() {
+        return ringBuffer != null ? ringBuffer.size() : 0;
+    }
+
+    private List<StateChangeEvent> pendingEventsOfCurrentTransaction() {
+        @SuppressWarnings("unchecked")
+        List<StateChangeEvent> pending = (List<StateChangeEvent>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<StateChangeEvent> events = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, events);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(StateEventBus.this);
+                    if (status != STATUS_COMMITTED) {
+                        log.debug("Delivering {} state change events of a rolled back transaction", events.size());
+                    }
+                    events.forEach(StateEventBus.this::enqueue);
+                }
+            });
+            pending = events;
+        }
+        return pending;
+    }
+
+    private void enqueue(StateChangeEvent event) {
+        if (!running) {
+            deliver(List.of(event));
+            return;
+        }
+        if (!ringBuffer.offer(event)) {
+            switch (backpressurePolicy) {
+                case BLOCK:
+                    if (!awaitSpace(event)) {
+                        deliver(List.of(event));
+                        return;
+                    }
+                    break;
+                case DROP:
+                    if (droppedEvents.incrementAndGet() % 1000 == 1) {
+                        log.warn("State event buffer full, {} events dropped so far", droppedEvents.get());
+                    }
+                    return;
+                case CALLER_RUNS:
+                    deliverQueuedAndThen(event);
+                    return;
+            }
+        }
+        if (dispatcherIdle) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    // False if the bus stopped while waiting, the caller then delivers the event itself
+    private boolean awaitSpace(StateChangeEvent event) {
+        Thread current = Thread.currentThread();
+        // Registered before offering again, so a drain that frees space after the offer sees it
+        blockedPublishers.add(current);
+        try {
+            while (!ringBuffer.offer(event)) {
+                if (!running) {
+                    return false;
+                }
+                LockSupport.unpark(dispatcher);
+                LockSupport.park(this);
+            }
+            return true;
+        } finally {
+            blockedPublishers.remove(current);
+        }
+    }
+
+    // Takes over from the dispatcher, so the event does not overtake the ones queued before it
+    private void deliverQueuedAndThen(StateChangeEvent event) {
+        List<StateChangeEvent> batch = new ArrayList<>(batchSize);
+        deliveryLock.lock();
+        try {
+            for (int remaining = ringBuffer.size(); remaining > 0 && ringBuffer.drainTo(batch, batchSize) > 0;
+                 remaining -= batch.size()) {
+                deliver(batch);
+                batch.clear();
+            }
+            wakeBlockedPublishers();
+            deliver(List.of(event));
+        } finally {
+            deliveryLock.unlock();
+        }
+    }
+
+    private void dispatchLoop() {
+        List<StateChangeEvent> batch = new ArrayList<>(batchSize);
+        while (running || !ringBuffer.isEmpty()) {
+            deliveryLock.lock();
+            try {
+                if (ringBuffer.drainTo(batch, batchSize) > 0) {
+                    wakeBlockedPublishers();
+                    deliver(batch);
+                    batch.clear();
+                    continue;
+                }
+            } finally {
+                deliveryLock.unlock();
+            }
+            // Publishers unpark the dispatcher when they see this flag, checked after they offered
+            dispatcherIdle = true;
+            if (ringBuffer.isEmpty() && running) {
+                LockSupport.park(this);
+            }
+            dispatcherIdle = false;
+        }
+    }
+
+    private void wakeBlockedPublishers() {
+        for (Thread publisher : blockedPublishers) {
+            LockSupport.unpark(publisher);
+        }
+    }
+
+    private void deliver(List<StateChangeEvent> batch) {
+        for (StateChangeBatchListener listener : listeners) {
+            try {
+                listener.onStateChanges(batch);
+            } catch (Exception e) {
+                log.error("State change listener {} failed", listener.getClass().getSimpleName(), e);
+            }
+        }
+        for (StateChangeEvent event : batch) {
+            try {
+                eventPublisher.publishEvent(event);
+            } catch (Exception e) {
+                log.error("Error publishing state change event for component {}", event.getComponentId(), e);
+            }
+        }
+        deliveredEvents.addAndGet(batch.size());
+    }
+
+    @Override
+    public void start() {
+        ringBuffer = new EventRingBuffer<>(bufferSize);
+        listeners = listenerProvider.orderedStream().toList();
+        running = true;
+        dispatcher = new Thread(this::dispatchLoop, "state-event-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        log.info("Started state event bus with capacity {} and {} policy, {} batch listeners",
+            ringBuffer.capacity(), backpressurePolicy, listeners.size());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = dispatcher;
+        wakeBlockedPublishers();
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,50 @@
+package org.consistency.megamodel.expression;
+
+import java.util.Set;
+
+/**
+ * A parsed condition over component states, such as
+ * {@code state(orders, order-db) == MODIFIED && version(orders, order-db) >= version(billing, order-db)}.
+ * Parsing and type checking happen once in {@link #compile}; evaluation walks a tree of
+ * small nodes that compare primitive values, without re-parsing or reflection.
+ *
+ * <p>References are {@code state(ms, c)}, {@code version(ms, c)}, {@code consistency(ms, c)}
+ * and {@code exists(ms, c)}; ids are bare words or quoted strings. States and consistency
+ * types compare with {@code ==}/{@code !=} against their constants or {@code null}, versions
+ * with all comparison operators. A missing entry or value only equals {@code null}; ordering
+ * comparisons with it are false, so {@code version(a, c) < 5} does not hold for a non-holder. Conditions combine with {@code &&}, {@code ||}, {@code !}
+ * (or {@code and}, {@code or}, {@code not}) and parentheses.
+ */
+public final class ConditionExpression {
+    private final String source;
+    private final ExpressionParser.BooleanNode root;
+    private final Set<String> componentIds;
+
+    ConditionExpression(String source, ExpressionParser.BooleanNode root, Set<String> componentIds) {
+        this.source = source;
+        this.root = root;
+        this.componentIds = componentIds;
+    }
+
+    public static ConditionExpression compile(String source) {
+        return new ExpressionParser(source).parse();
+    }
+
+    public boolean evaluate(StateLookup states) {
+        return root.test(states);
+    }
+
+    // Components referenced by the expression, so callers can load them before evaluating
+    public Set<String> componentIds() {
+        return componentIds;
+    }
+
+    public String source() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
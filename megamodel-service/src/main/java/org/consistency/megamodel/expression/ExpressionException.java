@@ -0,0 +1,11 @@
+package org.consistency.megamodel.expression;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class ExpressionException extends IllegalArgumentException {
+    public ExpressionException(String expression, int position, String message) {
+        super(String.format("%s at position %d in '%s'", message, position, expression));
+    }
+}
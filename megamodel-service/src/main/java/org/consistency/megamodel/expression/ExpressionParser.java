@@ -0,0 +1,405 @@
+package org.consistency.megamodel.expression;
+
+import org.consistency.megamodel.model.ComponentState;
+import org.consistency.megamodel.model.ConsistencyType;
+import org.consistency.megamodel.state.ComponentStateEntry;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Recursive descent parser that type checks a condition and builds its evaluation tree.
+ * States and consistency types are compared by ordinal and a missing entry or value
+ * evaluates to {@link #NULL}, so every comparison works on longs. As in SQL, an ordering
+ * comparison with a missing value is false; {@code ==} and {@code !=} treat it as null.
+ */
+final class ExpressionParser {
+    interface BooleanNode {
+        boolean test(StateLookup states);
+    }
+
+    interface ValueNode {
+        long eval(StateLookup states);
+    }
+
+    private interface Ordering {
+        boolean holds(long x, long y);
+    }
+
+    private enum Type { NUMBER, STATE, CONSISTENCY }
+
+    private enum TokenKind { WORD, NUMBER, STRING, SYMBOL, END }
+
+    private static final long NULL = -1;
+    private static final String[] SYMBOLS = {"==", "!=", "<=", ">=", "&&", "||", "<", ">", "!", "(", ")", ","};
+
+    private final String source;
+    private final Set<String> componentIds = new LinkedHashSet<>();
+
+    private int position;
+    private TokenKind kind;
+    private String text;
+    private int start;
+
+    ExpressionParser(String source) {
+        this.source = source;
+    }
+
+    ConditionExpression parse() {
+        if (source == null || source.isBlank()) {
+            throw new ExpressionException(String.valueOf(source), 0, "Empty expression");
+        }
+        advance();
+        BooleanNode root = parseOr();
+        if (kind != TokenKind.END) {
+            throw error("Unexpected '" + text + "'");
+        }
+        return new ConditionExpression(source, root, Set.copyOf(componentIds));
+    }
+
+    private BooleanNode parseOr() {
+        BooleanNode node = parseAnd();
+        while (acceptSymbol("||") || acceptWord("or")) {
+            BooleanNode left = node;
+            BooleanNode right = parseAnd();
+            node = states -> left.test(states) || right.test(states);
+        }
+        return node;
+    }
+
+    private BooleanNode parseAnd() {
+        BooleanNode node = parseNot();
+        while (acceptSymbol("&&") || acceptWord("and")) {
+            BooleanNode left = node;
+            BooleanNode right = parseNot();
+            node = states -> left.test(states) && right.test(states);
+        }
+        return node;
+    }
+
+    private BooleanNode parseNot() {
+        if (acceptSymbol("!") || acceptWord("not")) {
+            BooleanNode operand = parseNot();
+            return states -> !operand.test(states);
+        }
+        return parseComparison();
+    }
+
+    private BooleanNode parseComparison() {
+        // Values need no grouping, so a parenthesis always opens a nested condition
+        if (acceptSymbol("(")) {
+            BooleanNode nested = parseOr();
+            expectSymbol(")");
+            return nested;
+        }
+
+        int leftStart = start;
+        Operand left = parseOperand();
+        if (kind != TokenKind.SYMBOL || !isComparison(text)) {
+            if (left.condition() == null) {
+                throw new ExpressionException(source, leftStart, "Expected a condition");
+            }
+            return left.condition();
+        }
+        String operator = text;
+        int operatorStart = start;
+        advance();
+        Operand right = parseOperand();
+        return compare(left, operator, right, operatorStart);
+    }
+
+    private Operand parseOperand() {
+        int operandStart = start;
+        if (kind == TokenKind.NUMBER) {
+            long number;
+            try {
+                number = Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                throw error("Number '" + text + "' is out of range");
+            }
+            advance();
+            return Operand.value(Type.NUMBER, constant(number), number);
+        }
+        if (kind != TokenKind.WORD) {
+            throw error(kind == TokenKind.END ? "Unexpected end of expression" : "Unexpected '" + text + "'");
+        }
+
+        String word = text;
+        advance();
+        switch (word) {
+            case "true":
+                return Operand.condition(states -> true);
+            case "false":
+                return Operand.condition(states -> false);
+            case "null":
+                return Operand.nullLiteral();
+            default:
+                break;
+        }
+        if (kind == TokenKind.SYMBOL && text.equals("(")) {
+            return parseReference(word, operandStart);
+        }
+        return Operand.symbol(word, operandStart);
+    }
+
+    private Operand parseReference(String function, int functionStart) {
+        expectSymbol("(");
+        String microserviceId = expectId();
+        expectSymbol(",");
+        String componentId = expectId();
+        expectSymbol(")");
+        componentIds.add(componentId);
+
+        switch (function) {
+            case "state":
+                return Operand.value(Type.STATE, states -> {
+                    ComponentStateEntry entry = states.get(microserviceId, componentId);
+                    return entry == null || entry.getState() == null ? NULL : entry.getState().ordinal();
+                }, null);
+            case "consistency":
+                return Operand.value(Type.CONSISTENCY, states -> {
+                    ComponentStateEntry entry = states.get(microserviceId, componentId);
+                    return entry == null || entry.getConsistencyType() == null
+                        ? NULL : entry.getConsistencyType().ordinal();
+                }, null);
+            case "version":
+                return Operand.value(Type.NUMBER, states -> {
+                    ComponentStateEntry entry = states.get(microserviceId, componentId);
+                    return entry == null || entry.getVersion() == null ? NULL : entry.getVersion();
+                }, null);
+            case "exists":
+                return Operand.condition(states -> states.get(microserviceId, componentId) != null);
+            default:
+                throw new ExpressionException(source, functionStart, "Unknown function '" + function + "'");
+        }
+    }
+
+    private BooleanNode compare(Operand left, String operator, Operand right, int operatorStart) {
+        if (left.condition() != null || right.condition() != null) {
+            if (left.condition() == null || right.condition() == null || !isEquality(operator)) {
+                throw new ExpressionException(source, operatorStart, "Conditions can only be compared with == or !=");
+            }
+            BooleanNode a = left.condition();
+            BooleanNode b = right.condition();
+            return operator.equals("==")
+                ? states -> a.test(states) == b.test(states)
+                : states -> a.test(states) != b.test(states);
+        }
+
+        Type type = left.type() != null ? left.type() : right.type();
+        if (type == null) {
+            throw new ExpressionException(source, operatorStart, "At least one side must reference a component");
+        }
+        Operand resolvedLeft = resolve(left, type);
+        Operand resolvedRight = resolve(right, type);
+        if (resolvedLeft.type() != resolvedRight.type()) {
+            throw new ExpressionException(source, operatorStart,
+                "Cannot compare " + resolvedLeft.type() + " with " + resolvedRight.type());
+        }
+        boolean nullCompared = resolvedLeft.isNull() || resolvedRight.isNull();
+        if ((type != Type.NUMBER || nullCompared) && !isEquality(operator)) {
+            throw new ExpressionException(source, operatorStart,
+                "Operator " + operator + " is not defined for " + (nullCompared ? "null" : type.name()));
+        }
+
+        // Most conditions compare a reference with a constant, which skips one node per evaluation
+        if (resolvedRight.constant() != null) {
+            return compareWithConstant(resolvedLeft.value(), operator, resolvedRight.constant());
+        }
+        if (resolvedLeft.constant() != null) {
+            return compareWithConstant(resolvedRight.value(), mirror(operator), resolvedLeft.constant());
+        }
+        ValueNode a = resolvedLeft.value();
+        ValueNode b = resolvedRight.value();
+        switch (operator) {
+            case "==": return states -> a.eval(states) == b.eval(states);
+            case "!=": return states -> a.eval(states) != b.eval(states);
+            default:
+                Ordering ordering = ordering(operator);
+                return states -> {
+                    long x = a.eval(states);
+                    long y = b.eval(states);
+                    return x != NULL && y != NULL && ordering.holds(x, y);
+                };
+        }
+    }
+
+    // Constants in an ordering comparison are numbers, which are never NULL
+    private static BooleanNode compareWithConstant(ValueNode value, String operator, long constant) {
+        switch (operator) {
+            case "==": return states -> value.eval(states) == constant;
+            case "!=": return states -> value.eval(states) != constant;
+            default:
+                Ordering ordering = ordering(operator);
+                return states -> {
+                    long x = value.eval(states);
+                    return x != NULL && ordering.holds(x, constant);
+                };
+        }
+    }
+
+    private static Ordering ordering(String operator) {
+        switch (operator) {
+            case "<": return (x, y) -> x < y;
+            case "<=": return (x, y) -> x <= y;
+            case ">": return (x, y) -> x > y;
+            default: return (x, y) -> x >= y;
+        }
+    }
+
+    private Operand resolve(Operand operand, Type type) {
+        if (operand.isNull()) {
+            return Operand.value(type, constant(NULL), NULL, true);
+        }
+        if (operand.symbol() == null) {
+            return operand;
+        }
+        long ordinal;
+        try {
+            if (type == Type.STATE) {
+                ordinal = ComponentState.valueOf(operand.symbol()).ordinal();
+            } else if (type == Type.CONSISTENCY) {
+                ordinal = ConsistencyType.valueOf(operand.symbol()).ordinal();
+            } else {
+                throw new IllegalArgumentException();
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ExpressionException(source, operand.position(),
+                "'" + operand.symbol() + "' is not a " + type.name().toLowerCase() + " constant");
+        }
+        return Operand.value(type, constant(ordinal), ordinal);
+    }
+
+    private static ValueNode constant(long value) {
+        return states -> value;
+    }
+
+    private static String mirror(String operator) {
+        switch (operator) {
+            case "<": return ">";
+            case "<=": return ">=";
+            case ">": return "<";
+            case ">=": return "<=";
+            default: return operator;
+        }
+    }
+
+    private static boolean isComparison(String symbol) {
+        return isEquality(symbol) || symbol.equals("<") || symbol.equals("<=")
+            || symbol.equals(">") || symbol.equals(">=");
+    }
+
+    private static boolean isEquality(String symbol) {
+        return symbol.equals("==") || symbol.equals("!=");
+    }
+
+    private String expectId() {
+        if (kind != TokenKind.WORD && kind != TokenKind.STRING && kind != TokenKind.NUMBER) {
+            throw error("Expected an id");
+        }
+        String id = text;
+        advance();
+        return id;
+    }
+
+    private void expectSymbol(String symbol) {
+        if (!acceptSymbol(symbol)) {
+            throw error("Expected '" + symbol + "'");
+        }
+    }
+
+    private boolean acceptSymbol(String symbol) {
+        if (kind == TokenKind.SYMBOL && text.equals(symbol)) {
+            advance();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean acceptWord(String word) {
+        if (kind == TokenKind.WORD && text.equals(word)) {
+            advance();
+            return true;
+        }
+        return false;
+    }
+
+    private ExpressionException error(String message) {
+        return new ExpressionException(source, start, message);
+    }
+
+    private void advance() {
+        while (position < source.length() && Character.isWhitespace(source.charAt(position))) {
+            position++;
+        }
+        start = position;
+        if (position == source.length()) {
+            kind = TokenKind.END;
+            text = "";
+            return;
+        }
+
+        char c = source.charAt(position);
+        if (c == '\'' || c == '"') {
+            int end = source.indexOf(c, position + 1);
+            if (end < 0) {
+                throw error("Unterminated string");
+            }
+            kind = TokenKind.STRING;
+            text = source.substring(position + 1, end);
+            position = end + 1;
+            return;
+        }
+        if (isWordChar(c)) {
+            while (position < source.length() && isWordChar(source.charAt(position))) {
+                position++;
+            }
+            text = source.substring(start, position);
+            kind = text.chars().allMatch(Character::isDigit) ? TokenKind.NUMBER : TokenKind.WORD;
+            return;
+        }
+        for (String symbol : SYMBOLS) {
+            if (source.startsWith(symbol, position)) {
+                kind = TokenKind.SYMBOL;
+                text = symbol;
+                position += symbol.length();
+                return;
+            }
+        }
+        throw error("Unexpected character '" + c + "'");
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' || c == ':';
+    }
+
+    private record Operand(
+        BooleanNode condition,
+        Type type,
+        ValueNode value,
+        Long constant,
+        String symbol,
+        int position,
+        boolean isNull
+    ) {
+        static Operand condition(BooleanNode condition) {
+            return new Operand(condition, null, null, null, null, -1, false);
+        }
+
+        static Operand value(Type type, ValueNode value, Long constant) {
+            return value(type, value, constant, false);
+        }
+
+        static Operand value(Type type, ValueNode value, Long constant, boolean isNull) {
+            return new Operand(null, type, value, constant, null, -1, isNull);
+        }
+
+        static Operand symbol(String symbol, int position) {
+            return new Operand(null, null, null, null, symbol, position, false);
+        }
+
+        static Operand nullLiteral() {
+            return new Operand(null, null, null, null, null, -1, true);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.consistency.megamodel.expression;
+
+import org.consistency.megamodel.state.ComponentStateEntry;
+
+/**
+ * Source of the component states an expression refers to. Returns null when the
+ * microservice has no access to the component.
+ */
+@FunctionalInterface
+public interface StateLookup {
+    ComponentStateEntry get(String microserviceId, String componentId);
+}
@@ -0,0 +1,27 @@
+package org.consistency.megamodel.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "cluster_nodes")
+@Data
+@NoArgsConstructor
+public class ClusterNodeEntity {
+    @Id
+    private String nodeId;
+
+    @Column(nullable = false)
+    private String url;
+
+    @Column(nullable = false)
+    private LocalDateTime heartbeatAt;
+
+    public ClusterNodeEntity(String nodeId, String url, LocalDateTime heartbeatAt) {
+        this.nodeId = nodeId;
+        this.url = url;
+        this.heartbeatAt = heartbeatAt;
+    }
+}
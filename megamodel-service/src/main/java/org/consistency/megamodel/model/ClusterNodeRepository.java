@@ -0,0 +1,20 @@
+package org.consistency.megamodel.model;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ClusterNodeRepository extends JpaRepository<ClusterNodeEntity, String> {
+    List<ClusterNodeEntity> findByHeartbeatAtAfter(LocalDateTime since);
+
+    @Transactional
+    @Modifying
+    @Query("delete from ClusterNodeEntity n where n.heartbeatAt < :before")
+    int deleteByHeartbeatBefore(@Param("before") LocalDateTime before);
+}
@@ -1,8 +1,24 @@
 package org.consistency.megamodel.model;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ComponentModelRepository extends JpaRepository<ComponentModelEntity, String> {
-}
\ No newline at end of file
+    @Query("select new org.consistency.megamodel.model.ComponentModelSummary(c.id, c.name, c.metamodel, c.description) " +
+           "from ComponentModelEntity c where c.id > :after order by c.id")
+    List<ComponentModelSummary> findSummariesAfter(@Param("after") String after, Pageable page);
+
+    @Query("select new org.consistency.megamodel.model.ComponentModelSummary(c.id, c.name, c.metamodel, c.description) " +
+           "from ComponentModelEntity c where c.id = :id")
+    Optional<ComponentModelSummary> findSummaryById(@Param("id") String id);
+
+    @Query("select c.id from ComponentModelEntity c where c.id in :ids")
+    List<String> findExistingIds(@Param("ids") Collection<String> ids);
+}
@@ -5,6 +5,7 @@ import lombok.Data;
 import java.time.LocalDateTime;
 
 @Entity
+// Indexes are created by the migrations in db/migration
 @Table(name = "component_model_services")
 @Data
 public class ComponentModelServiceEntity {
@@ -1,7 +1,13 @@
 package org.consistency.megamodel.model;
 
+import org.consistency.megamodel.state.ComponentStateEntry;
+import org.consistency.megamodel.state.StateCount;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,4 +17,43 @@ public interface ComponentModelServiceRepository extends JpaRepository<Component
     List<ComponentModelServiceEntity> findByComponentModelIdAndMicroserviceIdNot(String componentId, String microserviceId);
     List<ComponentModelServiceEntity> findByComponentModelIdAndState(String componentId, ComponentState state);
     List<ComponentModelServiceEntity> findByState(ComponentState state);
-}
\ No newline at end of file
+
+    @Query("select new org.consistency.megamodel.state.ComponentStateEntry(" +
+           "e.id, e.microservice.id, e.componentModel.id, e.state, e.consistencyType, e.version, e.timestamp, e.stalenessBound) " +
+           "from ComponentModelServiceEntity e where e.componentModel.id = :componentId")
+    List<ComponentStateEntry> findEntriesByComponentId(@Param("componentId") String componentId);
+
+    @Query("select new org.consistency.megamodel.state.ComponentStateEntry(" +
+           "e.id, e.microservice.id, e.componentModel.id, e.state, e.consistencyType, e.version, e.timestamp, e.stalenessBound) " +
+           "from ComponentModelServiceEntity e where e.componentModel.id in :componentIds")
+    List<ComponentStateEntry> findEntriesByComponentIds(@Param("componentIds") Collection<String> componentIds);
+
+    // Reads the foreign key columns only, neither association is joined or loaded
+    @Query("select new org.consistency.megamodel.state.ComponentStateEntry(" +
+           "e.id, e.microservice.id, e.componentModel.id, e.state, e.consistencyType, e.version, e.timestamp, e.stalenessBound) " +
+           "from ComponentModelServiceEntity e where e.id > :after " +
+           "and (:componentId is null or e.componentModel.id = :componentId) " +
+           "and (:microserviceId is null or e.microservice.id = :microserviceId) " +
+           "and (:state is null or e.state = :state) " +
+           "and (:consistencyType is null or e.consistencyType = :consistencyType) " +
+           "order by e.id")
+    List<ComponentStateEntry> findEntriesAfter(
+        @Param("after") long after,
+        @Param("componentId") String componentId,
+        @Param("microserviceId") String microserviceId,
+        @Param("state") ComponentState state,
+        @Param("consistencyType") ConsistencyType consistencyType,
+        Pageable page);
+
+    @Query("select distinct e.componentModel.id from ComponentModelServiceEntity e " +
+           "where e.stalenessBound is not null and e.state <> :expiredState")
+    List<String> findComponentIdsWithStalenessBound(@Param("expiredState") ComponentState expiredState);
+
+    @Query("select distinct e.componentModel.id from ComponentModelServiceEntity e where e.state = :state")
+    List<String> findComponentIdsByState(@Param("state") ComponentState state);
+
+    @Query("select new org.consistency.megamodel.state.StateCount(" +
+           "e.componentModel.id, e.consistencyType, e.state, count(e)) " +
+           "from ComponentModelServiceEntity e group by e.componentModel.id, e.consistencyType, e.state")
+    List<StateCount> countByComponentAndConsistencyTypeAndState();
+}
@@ -0,0 +1,4 @@
+package org.consistency.megamodel.model;
+
+public record ComponentModelSummary(String id, String name, String metamodel, String description) {
+}
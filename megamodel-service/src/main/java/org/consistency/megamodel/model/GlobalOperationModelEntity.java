@@ -13,6 +13,8 @@ public class GlobalOperationModelEntity {
     private String id;
     private String name;
     private String description;
+    // Name of the coherence protocol its operations follow, the configured default when empty
+    private String coherenceProtocol;
     
     @OneToMany(mappedBy = "gom", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<GomRequirementEntity> requirements = new ArrayList<>();
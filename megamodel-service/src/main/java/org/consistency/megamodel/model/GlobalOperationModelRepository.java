@@ -1,9 +1,15 @@
 package org.consistency.megamodel.model;
 
-
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.List;
 
 @Repository
 public interface GlobalOperationModelRepository extends JpaRepository<GlobalOperationModelEntity, String> {
+    @Query("select new org.consistency.megamodel.model.GomSummary(g.id, g.name, g.description, g.coherenceProtocol) " +
+           "from GlobalOperationModelEntity g where g.id > :after order by g.id")
+    List<GomSummary> findSummariesAfter(@Param("after") String after, Pageable page);
 }
\ No newline at end of file
@@ -22,6 +22,10 @@ public class GomInstanceEntity {
     @Enumerated(EnumType.STRING)
     private GomInstanceStatus status;
     
+    private int totalSteps;
+    private int completedSteps;
+    private String errorMessage;
+    
     @OneToMany(cascade = CascadeType.ALL, orphanRemoval = true)
     @JoinColumn(name = "instance_id")
     private List<MicroserviceComponentStateEntity> microserviceStates = new ArrayList<>();
@@ -1,10 +1,20 @@
 package org.consistency.megamodel.model;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface GomInstanceRepository extends JpaRepository<GomInstanceEntity, String> {
     List<GomInstanceEntity> findByGomId(String gomId);
+
+    @Transactional
+    @Modifying
+    @Query("update GomInstanceEntity i set i.completedSteps = i.completedSteps + 1, i.updatedAt = :now where i.id = :id")
+    int incrementCompletedSteps(@Param("id") String id, @Param("now") LocalDateTime now);
 }
\ No newline at end of file
@@ -1,7 +1,9 @@
 package org.consistency.megamodel.model;
 
 public enum GomInstanceStatus {
+    QUEUED,
     RUNNING,
     COMPLETED,
-    FAILED
+    FAILED,
+    CANCELLED
 }
\ No newline at end of file
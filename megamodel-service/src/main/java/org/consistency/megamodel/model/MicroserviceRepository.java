@@ -1,8 +1,20 @@
 package org.consistency.megamodel.model;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface MicroserviceRepository extends JpaRepository<MicroserviceEntity, String> {
-}
\ No newline at end of file
+    @Query("select new org.consistency.megamodel.model.MicroserviceSummary(m.id, m.name, m.description) " +
+           "from MicroserviceEntity m where m.id > :after order by m.id")
+    List<MicroserviceSummary> findSummariesAfter(@Param("after") String after, Pageable page);
+
+    @Query("select new org.consistency.megamodel.model.MicroserviceSummary(m.id, m.name, m.description) " +
+           "from MicroserviceEntity m where m.id = :id")
+    Optional<MicroserviceSummary> findSummaryById(@Param("id") String id);
+}
@@ -0,0 +1,4 @@
+package org.consistency.megamodel.model;
+
+public record MicroserviceSummary(String id, String name, String description) {
+}
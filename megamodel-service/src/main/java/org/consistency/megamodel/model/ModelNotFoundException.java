@@ -0,0 +1,12 @@
+package org.consistency.megamodel.model;
+
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class ModelNotFoundException extends EntityNotFoundException {
+    public ModelNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,27 @@
+package org.consistency.megamodel.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "partition_leases")
+@Data
+@NoArgsConstructor
+public class PartitionLeaseEntity {
+    @Id
+    private int partitionId;
+
+    private String ownerNode;
+    private String ownerUrl;
+    private LocalDateTime leaseUntil;
+
+    // Incremented whenever the partition changes owner
+    @Column(nullable = false)
+    private long epoch;
+
+    public PartitionLeaseEntity(int partitionId) {
+        this.partitionId = partitionId;
+    }
+}
@@ -0,0 +1,49 @@
+package org.consistency.megamodel.model;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+
+/**
+ * Leases are only changed by conditional updates, so two nodes racing for a partition
+ * cannot both win it. All times are database times.
+ */
+@Repository
+public interface PartitionLeaseRepository extends JpaRepository<PartitionLeaseEntity, Integer> {
+    @Query("select local datetime")
+    LocalDateTime databaseTime();
+
+    @Transactional
+    @Modifying
+    @Query("update PartitionLeaseEntity l set l.leaseUntil = :until where l.ownerNode = :node")
+    int renew(@Param("node") String node, @Param("until") LocalDateTime until);
+
+    // Succeeds only for a partition nobody holds or whose lease has run out
+    @Transactional
+    @Modifying
+    @Query("update PartitionLeaseEntity l set l.ownerNode = :node, l.ownerUrl = :url, l.leaseUntil = :until, "
+        + "l.epoch = l.epoch + 1 "
+        + "where l.partitionId = :partition and (l.ownerNode is null or l.leaseUntil < :now)")
+    int acquire(
+        @Param("partition") int partition,
+        @Param("node") String node,
+        @Param("url") String url,
+        @Param("now") LocalDateTime now,
+        @Param("until") LocalDateTime until);
+
+    @Transactional
+    @Modifying
+    @Query("update PartitionLeaseEntity l set l.ownerNode = null, l.ownerUrl = null, l.leaseUntil = null "
+        + "where l.partitionId = :partition and l.ownerNode = :node")
+    int release(@Param("partition") int partition, @Param("node") String node);
+
+    @Transactional
+    @Modifying
+    @Query("update PartitionLeaseEntity l set l.ownerNode = null, l.ownerUrl = null, l.leaseUntil = null "
+        + "where l.ownerNode = :node")
+    int releaseAll(@Param("node") String node);
+}
@@ -0,0 +1,10 @@
+package org.consistency.megamodel.model;
+
+import lombok.Data;
+
+@Data
+public class StateOperation {
+    private OperationType operation;
+    private String microserviceId;
+    private String componentId;
+}
@@ -1,70 +1,139 @@
 package org.consistency.megamodel.service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.consistency.megamodel.model.ComponentModelServiceEntity;
+import org.consistency.megamodel.cluster.PartitionTable;
+import org.consistency.megamodel.event.StateChangeBatchListener;
+import org.consistency.megamodel.event.StateChangeEvent;
 import org.consistency.megamodel.model.ComponentState;
 import org.consistency.megamodel.model.ComponentModelServiceRepository;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.consistency.megamodel.state.StalenessTimer;
+import org.consistency.megamodel.state.StateTable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class BackgroundSyncService {
+public class BackgroundSyncService implements StateChangeBatchListener {
     private final ComponentModelServiceRepository componentModelServiceRepo;
     private final StateTransitionService stateTransitionService;
-    
-    @Scheduled(fixedRate = 10000) // Execute every 10 seconds
-    @Transactional
-    public void synchronizeSharedMinusComponents() {
-        log.debug("Starting background synchronization of SHARED_MINUS components");
-        
-        List<ComponentModelServiceEntity> sharedMinusComponents = 
-            componentModelServiceRepo.findByState(ComponentState.SHARED_MINUS);
-        
-        for (ComponentModelServiceEntity entity : sharedMinusComponents) {
-            try {
-                synchronizeComponent(entity);
-            } catch (Exception e) {
-                log.error("Error synchronizing component: {}", entity.getId(), e);
+    private final StateTable stateTable;
+    private final StalenessTimer stalenessTimer;
+    private final PartitionTable partitions;
+
+    // Components with a new MODIFIED version whose SHARED_MINUS sharers still need a refresh
+    private final Set<String> pendingComponents = ConcurrentHashMap.newKeySet();
+    private final Queue<String> syncQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private final ScheduledExecutorService syncExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "shared-minus-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${megamodel.sync.propagation-delay-ms:50}")
+    private long propagationDelayMs;
+
+    @Value("${megamodel.sync.batch-size:100}")
+    private int batchSize;
+
+    @PostConstruct
+    void registerStalenessExpiry() {
+        stalenessTimer.onExpiry(stateTransitionService::expireStalenessBound);
+    }
+
+    @Override
+    public void onStateChanges(List<StateChangeEvent> events) {
+        for (StateChangeEvent event : events) {
+            if (event.getNewState() == ComponentState.MODIFIED) {
+                scheduleSynchronization(event.getComponentId());
             }
         }
     }
-    
-    @Scheduled(fixedRate = 30000) // Execute every 30 seconds
-    @Transactional
-    public void checkStalenessBounds() {
-        log.debug("Checking staleness bounds for components");
-        
-        List<ComponentModelServiceEntity> components = componentModelServiceRepo.findAll();
-        LocalDateTime now = LocalDateTime.now();
-        
-        for (ComponentModelServiceEntity entity : components) {
-            if (entity.getStalenessBound() != null && now.isAfter(entity.getStalenessBound())) {
-                log.debug("Component {} has exceeded staleness bound, marking as INVALID", entity.getId());
-                entity.setState(ComponentState.INVALID);
-                componentModelServiceRepo.save(entity);
+
+    public void scheduleSynchronization(String componentId) {
+        if (pendingComponents.add(componentId)) {
+            syncQueue.offer(componentId);
+            scheduleDrain();
+        }
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            syncExecutor.schedule(this::synchronizeSharedMinusComponents, propagationDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void synchronizeSharedMinusComponents() {
+        int components = 0;
+        int refreshed = 0;
+        String componentId;
+        while (components < batchSize && (componentId = syncQueue.poll()) != null) {
+            // Removed before syncing so a write arriving meanwhile queues the component again
+            pendingComponents.remove(componentId);
+            components++;
+            if (!partitions.isLocal(componentId)) {
+                // Moved to another node, which synchronizes it when it restores the partition
+                continue;
+            }
+            try {
+                refreshed += stateTransitionService.synchronizeSharedMinusSharers(componentId);
+            } catch (Exception e) {
+                log.error("Error synchronizing SHARED_MINUS sharers of component: {}", componentId, e);
             }
         }
+        if (components > 0) {
+            log.debug("Synchronized {} SHARED_MINUS sharers across {} components", refreshed, components);
+        }
+
+        drainScheduled.set(false);
+        if (!syncQueue.isEmpty()) {
+            scheduleDrain();
+        }
     }
-    
-    private void synchronizeComponent(ComponentModelServiceEntity entity) {
-        ComponentModelServiceEntity authoritativeSource = 
-            stateTransitionService.findAuthoritativeSource(entity.getComponentModel().getId());
-        
-        if (authoritativeSource != null && authoritativeSource.getVersion() > entity.getVersion()) {
-            log.debug("Updating component {} from version {} to {}", 
-                entity.getId(), entity.getVersion(), authoritativeSource.getVersion());
-            
-            entity.setVersion(authoritativeSource.getVersion());
-            entity.setState(ComponentState.SHARED_PLUS);
-            entity.setTimestamp(LocalDateTime.now());
-            componentModelServiceRepo.save(entity);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void restoreBackgroundWork() {
+        // In a cluster each node restores the work of a partition when it acquires it
+        if (!partitions.isEnabled()) {
+            restoreBackgroundWork(componentId -> true);
         }
     }
-}
\ No newline at end of file
+
+    // Also run by PartitionLeaseManager for the components of newly acquired partitions
+    public void restoreBackgroundWork(Predicate<String> componentIds) {
+        // Loading a component into the state table registers the deadlines of its rows, one query loads them all
+        List<String> staleComponentIds = componentModelServiceRepo.findComponentIdsWithStalenessBound(ComponentState.INVALID)
+            .stream().filter(componentIds).toList();
+        stateTable.preload(staleComponentIds);
+        log.info("Restored {} staleness deadlines across {} components",
+            stalenessTimer.pendingDeadlines(), staleComponentIds.size());
+
+        // SHARED_MINUS rows left behind by a previous run get one synchronization pass
+        List<String> sharedMinusComponentIds = componentModelServiceRepo.findComponentIdsByState(ComponentState.SHARED_MINUS)
+            .stream().filter(componentIds).toList();
+        sharedMinusComponentIds.forEach(this::scheduleSynchronization);
+        log.info("Queued {} components with SHARED_MINUS sharers for synchronization", sharedMinusComponentIds.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        syncExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,11 @@
+package org.consistency.megamodel.service;
+
+/**
+ * A named set of state transitions. Every protocol bean is picked up by the
+ * {@link CoherenceProtocolRegistry}; GOMs select one by name.
+ */
+public interface CoherenceProtocol {
+    String name();
+
+    TransitionTable transitionTable();
+}
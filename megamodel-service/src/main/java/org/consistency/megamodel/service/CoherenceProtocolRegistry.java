@@ -0,0 +1,57 @@
+package org.consistency.megamodel.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coherence protocols by name. Operations outside a GOM, and GOMs that do not name a
+ * protocol, use the one configured with {@code megamodel.transitions.protocol}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CoherenceProtocolRegistry {
+    private final List<CoherenceProtocol> protocols;
+    private final Map<String, CoherenceProtocol> byName = new HashMap<>();
+    private CoherenceProtocol defaultProtocol;
+
+    @Value("${megamodel.transitions.protocol:" + DefaultCoherenceProtocol.NAME + "}")
+    private String defaultProtocolName;
+
+    @PostConstruct
+    void init() {
+        for (CoherenceProtocol protocol : protocols) {
+            if (byName.putIfAbsent(protocol.name(), protocol) != null) {
+                throw new IllegalStateException("Duplicate coherence protocol: " + protocol.name());
+            }
+            if (!protocol.transitionTable().keepsSingleWriter()) {
+                throw new IllegalStateException("Coherence protocol " + protocol.name()
+                    + " can leave more than one holder of a component MODIFIED");
+            }
+        }
+        defaultProtocol = get(defaultProtocolName);
+        log.info("Registered coherence protocols {}, default is {}", byName.keySet(), defaultProtocolName);
+    }
+
+    public CoherenceProtocol get(String name) {
+        if (name == null || name.isBlank()) {
+            return defaultProtocol;
+        }
+        CoherenceProtocol protocol = byName.get(name);
+        if (protocol == null) {
+            throw new UnknownCoherenceProtocolException(name);
+        }
+        return protocol;
+    }
+
+    public TransitionTable defaultTable() {
+        return defaultProtocol.transitionTable();
+    }
+}
@@ -0,0 +1,57 @@
+package org.consistency.megamodel.service;
+
+import org.consistency.megamodel.model.ComponentState;
+import org.consistency.megamodel.model.ConsistencyType;
+import org.consistency.megamodel.model.OperationType;
+import org.springframework.stereotype.Component;
+
+/**
+ * The built-in protocol. A writer always ends in MODIFIED; a write invalidates STRONG
+ * holders and demotes SHARED_PLUS holders of the weaker types to SHARED_MINUS, while
+ * MONOTONIC_READS holders keep their state. A previous writer of a weaker type drops to
+ * SHARED_MINUS, so only one holder is ever MODIFIED. An INVALID reader refreshes from the
+ * authoritative source into SHARED_PLUS under STRONG and into SHARED_MINUS otherwise.
+ */
+@Component
+public class DefaultCoherenceProtocol implements CoherenceProtocol {
+    public static final String NAME = "default";
+
+    private final TransitionTable table = buildTable();
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public TransitionTable transitionTable() {
+        return table;
+    }
+
+    private static TransitionTable buildTable() {
+        TransitionTable.Builder builder = TransitionTable.builder();
+        for (ConsistencyType type : ConsistencyType.values()) {
+            for (ComponentState state : ComponentState.values()) {
+                builder.set(type, state, OperationType.WRITE, TransitionTable.Role.ACTOR, ComponentState.MODIFIED);
+                builder.set(type, state, OperationType.WRITE, TransitionTable.Role.PEER, writtenByPeer(type, state));
+            }
+            builder.set(type, ComponentState.INVALID, OperationType.READ, TransitionTable.Role.ACTOR,
+                type == ConsistencyType.STRONG ? ComponentState.SHARED_PLUS : ComponentState.SHARED_MINUS);
+        }
+        return builder.build();
+    }
+
+    private static ComponentState writtenByPeer(ConsistencyType type, ComponentState state) {
+        if (state == ComponentState.MODIFIED && type != ConsistencyType.STRONG) {
+            return ComponentState.SHARED_MINUS;
+        }
+        switch (type) {
+            case STRONG:
+                return ComponentState.INVALID;
+            case MONOTONIC_READS:
+                return state;
+            default:
+                return state == ComponentState.SHARED_PLUS ? ComponentState.SHARED_MINUS : state;
+        }
+    }
+}
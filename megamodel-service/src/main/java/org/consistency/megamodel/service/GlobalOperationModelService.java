@@ -1,21 +1,85 @@
 package org.consistency.megamodel.service;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.consistency.megamodel.cluster.ClusterClient;
+import org.consistency.megamodel.cluster.ComponentRouter;
+import org.consistency.megamodel.expression.ConditionExpression;
+import org.consistency.megamodel.expression.StateLookup;
 import org.consistency.megamodel.model.*;
+import org.consistency.megamodel.state.ComponentStateEntry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Service
+// Shut down before the flusher, whose final flush then writes the states of the last executions
+@DependsOn("stateFlusher")
 @RequiredArgsConstructor
 public class GlobalOperationModelService {
+    private static final ParameterizedTypeReference<ComponentStateEntry> ENTRY = new ParameterizedTypeReference<>() { };
+
     private final GlobalOperationModelRepository gomRepository;
     private final StateTransitionService stateTransitionService;
     private final GomInstanceService gomInstanceService;
+    private final GomStepExecutor gomStepExecutor;
+    private final PlatformTransactionManager transactionManager;
+    private final CoherenceProtocolRegistry coherenceProtocols;
+    private final ComponentRouter componentRouter;
+    private final ClusterClient clusterClient;
+    private final MetadataCache metadataCache;
+    private final Map<String, Execution> executions = new ConcurrentHashMap<>();
+    private final Map<String, GomExecutionPlan> plans = new ConcurrentHashMap<>();
+    private TransactionTemplate readTransaction;
+    private ThreadPoolExecutor executionPool;
+
+    @Value("${megamodel.gom.execution.concurrency:4}")
+    private int executionConcurrency;
+
+    @Value("${megamodel.gom.execution.queue-capacity:100}")
+    private int executionQueueCapacity;
+
+    @Value("${megamodel.gom.execution.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    @PostConstruct
+    void init() {
+        readTransaction = new TransactionTemplate(transactionManager);
+        readTransaction.setReadOnly(true);
+        AtomicInteger threadCount = new AtomicInteger();
+        executionPool = new ThreadPoolExecutor(
+            executionConcurrency, executionConcurrency, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(executionQueueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "gom-execution-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
     
     @Transactional
     public GlobalOperationModelEntity createGom(GlobalOperationModelEntity gom) {
@@ -23,123 +87,301 @@ public class GlobalOperationModelService {
             gom.setId(UUID.randomUUID().toString());
         }
         log.info("Creating new GOM: {}", gom.getName());
-        return gomRepository.save(gom);
+        checkConditions(gom);
+        GlobalOperationModelEntity saved = gomRepository.save(gom);
+        invalidatePlan(saved.getId());
+        return saved;
+    }
+
+    // Rejects malformed conditions when a GOM is saved rather than when it is first executed
+    public void checkConditions(GlobalOperationModelEntity gom) {
+        GomExecutionPlan.checkConditions(gom);
+    }
+
+    // Compiled once per GOM and reused until the GOM is saved or deleted again
+    GomExecutionPlan getPlan(String gomId) {
+        // The bin lock held during compilation makes a concurrent invalidation wait for it, so
+        // a plan compiled from the previous version of the GOM is never left in the cache
+        return plans.computeIfAbsent(gomId, id -> readTransaction.execute(txStatus -> {
+            GlobalOperationModelEntity gom = gomRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("GOM not found: " + id));
+            log.debug("Compiling execution plan for GOM: {}", gom.getName());
+            return GomExecutionPlan.compile(gom, coherenceProtocols);
+        }));
+    }
+
+    // Every node caches its own plans, so the other nodes drop theirs as well
+    public void invalidatePlan(String gomId) {
+        invalidateLocalPlan(gomId);
+        clusterClient.broadcast("/api/cluster/goms/{gomId}/invalidate", null, gomId);
+    }
+
+    public void invalidateLocalPlan(String gomId) {
+        metadataCache.invalidateLocalGom(gomId);
+        if (plans.remove(gomId) != null) {
+            log.debug("Invalidated execution plan for GOM {}", gomId);
+        }
     }
     
-    @Transactional
-    public void executeGom(String gomId, Map<String, Object> inputs) {
-        GlobalOperationModelEntity gom = gomRepository.findById(gomId)
-            .orElseThrow(() -> new EntityNotFoundException("GOM not found: " + gomId));
-        
-        log.info("Starting execution of GOM: {} (ID: {})", gom.getName(), gomId);
-        
-        // Create a new instance for this execution
-        GomInstanceEntity instance = gomInstanceService.createInstance(gomId, "Execution-" + UUID.randomUUID());
-        log.info("Created new instance: {} for GOM: {}", instance.getId(), gom.getName());
-        
+    // Queues an execution and returns its instance right away; progress is tracked on the instance
+    public GomInstanceEntity submitGom(String gomId) {
+        return submit(gomId).instance;
+    }
+
+    // Runs an execution to completion on the execution pool and waits for it; the returned
+    // instance carries the final status, which is CANCELLED if it was cancelled meanwhile
+    public GomInstanceEntity executeGom(String gomId) {
+        Execution execution = submit(gomId);
+        if (execution.done.join() == GomInstanceStatus.FAILED) {
+            throw new IllegalStateException("GOM execution failed: " + execution.error);
+        }
+        return execution.instance;
+    }
+
+    private Execution submit(String gomId) {
+        GomExecutionPlan plan = getPlan(gomId);
+        GomInstanceEntity instance = gomInstanceService.createInstance(
+            gomId, "Execution-" + UUID.randomUUID(), GomInstanceStatus.QUEUED);
+        Execution execution = new Execution(instance);
+        execution.task = new FutureTask<>(() -> runExecution(plan, execution), null);
+        executions.put(instance.getId(), execution);
+
         try {
-            // Validate microservice requirements
-            validateMicroserviceRequirements(gom);
-            log.info("Validated microservice requirements for GOM: {}", gom.getName());
-            
-            // Execute operations and let state transitions happen automatically
-            for (MicroserviceRequirementEntity requirement : gom.getMicroserviceRequirements()) {
-                for (ComponentRequirementEntity componentReq : requirement.getRequiredComponents()) {
-                    executeComponentOperation(requirement.getMicroserviceId(), componentReq, instance);
-                }
+            executionPool.execute(execution.task);
+        } catch (RejectedExecutionException e) {
+            String error = String.format("Execution queue is full (%d waiting)", executionQueueCapacity);
+            finishExecution(execution, GomInstanceStatus.FAILED, List.of(), error);
+            throw new GomExecutionRejectedException(error);
+        }
+        log.info("Queued instance {} for GOM {}", instance.getId(), gomId);
+        return execution;
+    }
+
+    // The execution may run on any node of the cluster; false if the instance already finished
+    public boolean cancelExecution(String instanceId) {
+        if (cancelLocalExecution(instanceId)
+            || clusterClient.broadcast("/api/cluster/gom-instances/{instanceId}/cancel", null, instanceId) > 0) {
+            return true;
+        }
+        if (gomInstanceService.getInstance(instanceId).isEmpty()) {
+            throw new ModelNotFoundException("Instance not found: " + instanceId);
+        }
+        return false;
+    }
+
+    public boolean cancelLocalExecution(String instanceId) {
+        Execution execution = executions.get(instanceId);
+        if (execution == null) {
+            return false;
+        }
+        execution.cancelled = true;
+        // FutureTask.cancel also succeeds once the task runs, so only the side that claims the start finishes it
+        if (execution.started.compareAndSet(false, true)) {
+            // Still queued, it will never run
+            execution.task.cancel(false);
+            finishExecution(execution, GomInstanceStatus.CANCELLED, List.of(), "Cancelled before start");
+        }
+        log.info("Cancellation requested for instance {}", instanceId);
+        return true;
+    }
+
+    private void runExecution(GomExecutionPlan plan, Execution execution) {
+        if (!execution.started.compareAndSet(false, true)) {
+            return;
+        }
+        String gomId = plan.gomId();
+        String instanceId = execution.instance.getId();
+        GomInstanceStatus status = GomInstanceStatus.FAILED;
+        String error = null;
+        MicroserviceComponentStateEntity[] stateRecords = new MicroserviceComponentStateEntity[0];
+        try {
+            log.info("Starting execution of GOM: {} (ID: {}) as instance {}", plan.name(), gomId, instanceId);
+            GomValidationResult validation = validateMicroserviceRequirements(plan);
+            if (!validation.isValid()) {
+                log.error("GOM {} has {} unmet requirements: {}",
+                    plan.name(), validation.violations().size(), validation.describe());
+                throw new IllegalStateException(validation.describe());
             }
-            
-            instance.setStatus(GomInstanceStatus.COMPLETED);
-            log.info("GOM execution completed successfully: {}", gom.getName());
-            
+            log.info("Validated microservice requirements and preconditions for GOM: {}", plan.name());
+
+            GomOperationGraph graph = plan.graph();
+            gomInstanceService.startInstance(instanceId, graph.steps().size());
+
+            // Execute operations and let state transitions happen automatically; independent
+            // components run concurrently, operations on one component stay in order
+            MicroserviceComponentStateEntity[] records = new MicroserviceComponentStateEntity[graph.steps().size()];
+            stateRecords = records;
+            gomStepExecutor.execute(graph, step -> {
+                records[step.index()] = executeComponentOperation(plan, step);
+                gomInstanceService.recordStepCompleted(instanceId);
+            }, () -> execution.cancelled);
+
+            List<String> unmetPostconditions = unmetConditions(plan.postconditions());
+            if (!unmetPostconditions.isEmpty()) {
+                throw new IllegalStateException("Postconditions not met: " + String.join("; ", unmetPostconditions));
+            }
+
+            status = GomInstanceStatus.COMPLETED;
+            log.info("GOM execution completed successfully: {} (instance {})", gomId, instanceId);
+        } catch (CancellationException e) {
+            status = GomInstanceStatus.CANCELLED;
+            error = "Cancelled";
+            log.info("GOM execution cancelled: {} (instance {})", gomId, instanceId);
         } catch (Exception e) {
-            instance.setStatus(GomInstanceStatus.FAILED);
-            log.error("GOM execution failed: {} - {}", gom.getName(), e.getMessage(), e);
-            throw e;
+            error = e.getMessage();
+            log.error("GOM execution failed: {} - {}", gomId, e.getMessage(), e);
         } finally {
-            gomInstanceService.updateInstance(instance);
+            List<MicroserviceComponentStateEntity> completed = new ArrayList<>();
+            for (MicroserviceComponentStateEntity stateRecord : stateRecords) {
+                if (stateRecord != null) {
+                    completed.add(stateRecord);
+                }
+            }
+            finishExecution(execution, status, completed, error);
         }
     }
-    
-    private void validateMicroserviceRequirements(GlobalOperationModelEntity gom) {
-        for (MicroserviceRequirementEntity requirement : gom.getMicroserviceRequirements()) {
-            log.debug("Validating requirements for microservice: {}", requirement.getMicroserviceId());
-            
-            for (ComponentRequirementEntity componentReq : requirement.getRequiredComponents()) {
-                validateComponentRequirement(requirement.getMicroserviceId(), componentReq);
+
+    private void finishExecution(
+        Execution execution,
+        GomInstanceStatus status,
+        List<MicroserviceComponentStateEntity> stateRecords,
+        String error
+    ) {
+        String instanceId = execution.instance.getId();
+        try {
+            gomInstanceService.finishInstance(instanceId, status, stateRecords, error);
+        } finally {
+            executions.remove(instanceId);
+            execution.error = error;
+            execution.instance.setStatus(status);
+            execution.instance.setErrorMessage(error);
+            execution.done.complete(status);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executions.values().forEach(execution -> execution.cancelled = true);
+        executionPool.shutdown();
+        try {
+            if (!executionPool.awaitTermination(shutdownTimeoutMs, TimeUnit.MILLISECONDS)) {
+                log.warn("GOM executions still running after {} ms, shutting down without them", shutdownTimeoutMs);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
-    
-    private void validateComponentRequirement(String microserviceId, ComponentRequirementEntity requirement) {
-        log.debug("Validating component {} for microservice {} with consistency type {}",
-            requirement.getComponentId(),
-            microserviceId,
-            requirement.getConsistencyType());
-            
-        ComponentModelServiceEntity componentState = stateTransitionService
-            .getComponentState(microserviceId, requirement.getComponentId());
-            
-        if (componentState == null) {
-            String error = String.format("Microservice %s does not have access to component %s",
-                microserviceId, requirement.getComponentId());
-            log.error(error);
-            throw new IllegalStateException(error);
+
+    public GomValidationResult validateGom(String gomId) {
+        return validateMicroserviceRequirements(getPlan(gomId));
+    }
+
+    // All required states come from the state table, which loads the components it misses with one query
+    private GomValidationResult validateMicroserviceRequirements(GomExecutionPlan plan) {
+        Map<String, Map<String, ComponentStateEntry>> states =
+            stateTransitionService.getComponentStates(plan.componentsReadBeforeExecution());
+
+        List<GomValidationResult.Violation> violations = new ArrayList<>();
+        plan.requirementsByComponent().forEach((componentId, requirements) -> {
+            Map<String, ComponentStateEntry> componentStates = states.get(componentId);
+            for (GomExecutionPlan.Requirement requirement : requirements) {
+                GomValidationResult.Violation violation = checkComponentRequirement(
+                    componentId, requirement, componentStates.get(requirement.microserviceId()));
+                if (violation != null) {
+                    violations.add(violation);
+                }
+            }
+        });
+        for (ConditionExpression precondition : plan.preconditions()) {
+            if (!precondition.evaluate(lookup(states))) {
+                violations.add(new GomValidationResult.Violation(null, null, null, null,
+                    "Precondition not met: " + precondition.source()));
+            }
+        }
+        return new GomValidationResult(plan.gomId(), List.copyOf(violations));
+    }
+
+    private List<String> unmetConditions(List<ConditionExpression> conditions) {
+        if (conditions.isEmpty()) {
+            return List.of();
         }
-        
-        if (componentState.getConsistencyType() != requirement.getConsistencyType()) {
-            String error = String.format("Component %s requires %s consistency but has %s",
-                requirement.getComponentId(),
-                requirement.getConsistencyType(),
-                componentState.getConsistencyType());
-            log.error(error);
-            throw new IllegalStateException(error);
+        Set<String> componentIds = new HashSet<>();
+        conditions.forEach(condition -> componentIds.addAll(condition.componentIds()));
+        StateLookup states = lookup(stateTransitionService.getComponentStates(componentIds));
+
+        List<String> unmet = new ArrayList<>();
+        for (ConditionExpression condition : conditions) {
+            if (!condition.evaluate(states)) {
+                unmet.add(condition.source());
+            }
         }
+        return unmet;
     }
-    
-    private void executeComponentOperation(
-        String microserviceId,
-        ComponentRequirementEntity requirement,
-        GomInstanceEntity instance
+
+    private static StateLookup lookup(Map<String, Map<String, ComponentStateEntry>> states) {
+        return (microserviceId, componentId) -> {
+            Map<String, ComponentStateEntry> componentStates = states.get(componentId);
+            return componentStates != null ? componentStates.get(microserviceId) : null;
+        };
+    }
+
+    private GomValidationResult.Violation checkComponentRequirement(
+        String componentId,
+        GomExecutionPlan.Requirement requirement,
+        ComponentStateEntry componentState
     ) {
+        if (componentState == null) {
+            return new GomValidationResult.Violation(requirement.microserviceId(), componentId,
+                requirement.consistencyType(), null,
+                String.format("Microservice %s does not have access to component %s",
+                    requirement.microserviceId(), componentId));
+        }
+
+        if (componentState.getConsistencyType() != requirement.consistencyType()) {
+            return new GomValidationResult.Violation(requirement.microserviceId(), componentId,
+                requirement.consistencyType(), componentState.getConsistencyType(),
+                String.format("Component %s requires %s consistency but has %s",
+                    componentId,
+                    requirement.consistencyType(),
+                    componentState.getConsistencyType()));
+        }
+        return null;
+    }
+
+    private MicroserviceComponentStateEntity executeComponentOperation(GomExecutionPlan plan, GomOperationGraph.Step step) {
+        String microserviceId = step.microserviceId();
+        String componentId = step.componentId();
         try {
             log.debug("Executing operation for component {} in microservice {}",
-                requirement.getComponentId(),
+                componentId,
                 microserviceId);
             
-            // Determine operation type based on consistency requirements
-            boolean isWrite = requirement.getConsistencyType() == ConsistencyType.STRONG ||
-                            requirement.getConsistencyType() == ConsistencyType.READ_MY_WRITES;
-            
-            if (isWrite) {
-                stateTransitionService.handleWriteOperation(
-                    microserviceId,
-                    requirement.getComponentId()
-                );
-            } else {
-                stateTransitionService.handleReadOperation(
-                    microserviceId,
-                    requirement.getComponentId()
-                );
+            StateOperation operation = new StateOperation();
+            operation.setOperation(step.write() ? OperationType.WRITE : OperationType.READ);
+            operation.setMicroserviceId(microserviceId);
+            operation.setComponentId(componentId);
+            ComponentStateEntry currentState = componentRouter.route(componentId,
+                () -> applyStep(plan, step),
+                nodeUrl -> clusterClient.post(nodeUrl, "/api/cluster/goms/{gomId}/steps/{step}",
+                    operation, ENTRY, plan.gomId(), step.index()));
+            if (currentState == null) {
+                log.info("Skipping operation for component {} in microservice {}, condition not met: {}",
+                    componentId, microserviceId, plan.guard(step).source());
+                return null;
             }
-            
+
             // Record the operation in the instance
-            ComponentModelServiceEntity currentState = stateTransitionService
-                .getComponentState(microserviceId, requirement.getComponentId());
-            
-            if (currentState != null) {
-                MicroserviceComponentStateEntity stateRecord = new MicroserviceComponentStateEntity();
-                stateRecord.setMicroserviceId(microserviceId);
-                stateRecord.setComponentId(requirement.getComponentId());
-                stateRecord.setState(currentState.getState());
-                stateRecord.setConsistencyType(currentState.getConsistencyType());
-                stateRecord.setVersion(currentState.getVersion());
-                instance.getMicroserviceStates().add(stateRecord);
-            }
+            MicroserviceComponentStateEntity stateRecord = new MicroserviceComponentStateEntity();
+            stateRecord.setMicroserviceId(microserviceId);
+            stateRecord.setComponentId(componentId);
+            stateRecord.setState(currentState.getState());
+            stateRecord.setConsistencyType(currentState.getConsistencyType());
+            stateRecord.setVersion(currentState.getVersion());
             
             log.info("Successfully executed operation for component {} in microservice {}",
-                requirement.getComponentId(),
+                componentId,
                 microserviceId);
+            return stateRecord;
                 
         } catch (Exception e) {
             String error = String.format("Failed to execute operation: %s", e.getMessage());
@@ -147,4 +389,64 @@ public class GlobalOperationModelService {
             throw new RuntimeException(error, e);
         }
     }
-}
\ No newline at end of file
+
+    // Null if the step's guard does not hold. The guard is checked under the lock that applies
+    // the step; the other components it refers to are read just before, one lock at a time.
+    private ComponentStateEntry applyStep(GomExecutionPlan plan, GomOperationGraph.Step step) {
+        TransitionTable transitions = plan.transitions(step);
+        ConditionExpression guard = plan.guard(step);
+        if (guard == null) {
+            return step.write()
+                ? stateTransitionService.handleWriteOperation(step.microserviceId(), step.componentId(), transitions)
+                : stateTransitionService.handleReadOperation(step.microserviceId(), step.componentId(), transitions);
+        }
+        Set<String> otherComponentIds = new HashSet<>(guard.componentIds());
+        otherComponentIds.remove(step.componentId());
+        StateLookup otherComponents = lookup(otherComponentIds.isEmpty()
+            ? Map.of()
+            : stateTransitionService.getComponentStates(otherComponentIds));
+        return stateTransitionService.handleGuardedOperation(step.microserviceId(), step.componentId(),
+            step.write() ? OperationType.WRITE : OperationType.READ, transitions, guard, otherComponents);
+    }
+
+    /**
+     * Applies a step of a GOM executing on another node to a component served here. The
+     * operation names what the executing node expects the step to be; a cached plan that
+     * disagrees predates a change of the GOM and is compiled again.
+     */
+    public ComponentStateEntry applyStepLocally(String gomId, int stepIndex, StateOperation operation) {
+        GomExecutionPlan plan = getPlan(gomId);
+        if (!matches(plan, stepIndex, operation)) {
+            invalidateLocalPlan(gomId);
+            plan = getPlan(gomId);
+            if (!matches(plan, stepIndex, operation)) {
+                throw new IllegalStateException(String.format("Step %d of GOM %s is not a %s of %s on %s",
+                    stepIndex, gomId, operation.getOperation(), operation.getMicroserviceId(), operation.getComponentId()));
+            }
+        }
+        return applyStep(plan, plan.graph().steps().get(stepIndex));
+    }
+
+    private static boolean matches(GomExecutionPlan plan, int stepIndex, StateOperation operation) {
+        if (stepIndex < 0 || stepIndex >= plan.graph().steps().size()) {
+            return false;
+        }
+        GomOperationGraph.Step step = plan.graph().steps().get(stepIndex);
+        return step.microserviceId().equals(operation.getMicroserviceId())
+            && step.componentId().equals(operation.getComponentId())
+            && step.write() == (operation.getOperation() == OperationType.WRITE);
+    }
+
+    private static class Execution {
+        private final GomInstanceEntity instance;
+        private final CompletableFuture<GomInstanceStatus> done = new CompletableFuture<>();
+        private final AtomicBoolean started = new AtomicBoolean();
+        private volatile boolean cancelled;
+        private FutureTask<Void> task;
+        private String error;
+
+        Execution(GomInstanceEntity instance) {
+            this.instance = instance;
+        }
+    }
+}
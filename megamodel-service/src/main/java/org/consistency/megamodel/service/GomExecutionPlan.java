@@ -0,0 +1,200 @@
+package org.consistency.megamodel.service;
+
+import org.consistency.megamodel.expression.ConditionExpression;
+import org.consistency.megamodel.model.ComponentRequirementEntity;
+import org.consistency.megamodel.model.ConsistencyType;
+import org.consistency.megamodel.model.GlobalOperationModelEntity;
+import org.consistency.megamodel.model.MicroserviceRequirementEntity;
+import org.consistency.megamodel.model.OperationType;
+import org.consistency.megamodel.model.StateTransitionRule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, compiled form of a GOM: the operation graph with every step's read/write
+ * classification resolved, and the microservice requirements grouped by component so they
+ * can be validated with one state table lookup per component. Pre/postconditions and the
+ * condition expressions of the state transition rules are compiled here, once per plan, and
+ * every step gets the transition table of the GOM's protocol with the target states of its
+ * rules applied.
+ * Holds no reference to the entity, so it can be cached and shared between executions.
+ */
+class GomExecutionPlan {
+    private final String gomId;
+    private final String name;
+    private final GomOperationGraph graph;
+    private final Map<String, List<Requirement>> requirementsByComponent;
+    private final List<ConditionExpression> preconditions;
+    private final List<ConditionExpression> postconditions;
+    // Indexed by step; null for steps without a conditional transition rule
+    private final ConditionExpression[] stepGuards;
+    // Indexed by step
+    private final TransitionTable[] stepTransitions;
+
+    private GomExecutionPlan(
+        String gomId,
+        String name,
+        GomOperationGraph graph,
+        Map<String, List<Requirement>> requirementsByComponent,
+        List<ConditionExpression> preconditions,
+        List<ConditionExpression> postconditions,
+        ConditionExpression[] stepGuards,
+        TransitionTable[] stepTransitions
+    ) {
+        this.gomId = gomId;
+        this.name = name;
+        this.graph = graph;
+        this.requirementsByComponent = requirementsByComponent;
+        this.preconditions = preconditions;
+        this.postconditions = postconditions;
+        this.stepGuards = stepGuards;
+        this.stepTransitions = stepTransitions;
+    }
+
+    static GomExecutionPlan compile(GlobalOperationModelEntity gom, CoherenceProtocolRegistry protocols) {
+        Map<String, List<Requirement>> requirements = new LinkedHashMap<>();
+        for (MicroserviceRequirementEntity requirement : gom.getMicroserviceRequirements()) {
+            for (ComponentRequirementEntity componentReq : requirement.getRequiredComponents()) {
+                requirements.computeIfAbsent(componentReq.getComponentId(), id -> new ArrayList<>())
+                    .add(new Requirement(requirement.getMicroserviceId(), componentReq.getConsistencyType()));
+            }
+        }
+
+        Map<String, List<Requirement>> frozen = new LinkedHashMap<>();
+        requirements.forEach((componentId, componentRequirements) ->
+            frozen.put(componentId, List.copyOf(componentRequirements)));
+        GomOperationGraph graph = GomOperationGraph.of(gom);
+        return new GomExecutionPlan(gom.getId(), gom.getName(), graph,
+            Collections.unmodifiableMap(frozen),
+            compileAll(gom.getPreconditions()),
+            compileAll(gom.getPostconditions()),
+            compileGuards(gom, graph),
+            compileTransitions(gom, graph, protocols.get(gom.getCoherenceProtocol()).transitionTable()));
+    }
+
+    // A rule with a target state moves its source service there whenever it performs the rule's operation
+    private static TransitionTable[] compileTransitions(
+        GlobalOperationModelEntity gom,
+        GomOperationGraph graph,
+        TransitionTable protocolTable
+    ) {
+        Map<String, TransitionTable> derived = new LinkedHashMap<>();
+        TransitionTable[] stepTransitions = new TransitionTable[graph.steps().size()];
+        for (GomOperationGraph.Step step : graph.steps()) {
+            OperationType operation = step.write() ? OperationType.WRITE : OperationType.READ;
+            TransitionTable table = protocolTable;
+            for (StateTransitionRule rule : gom.getStateTransitions()) {
+                if (rule.getTargetState() != null && rule.getOperationType() == operation
+                    && step.microserviceId().equals(rule.getSourceServiceId())
+                    && step.componentId().equals(rule.getComponentModelId())) {
+                    // Steps with the same override share one table
+                    table = derived.computeIfAbsent(operation + "/" + rule.getTargetState(),
+                        key -> protocolTable.withActorTarget(operation, rule.getTargetState()));
+                    if (!table.keepsSingleWriter()) {
+                        throw new InvalidGomException(String.format(
+                            "Rule for %s on %s: only a write can move a service to %s",
+                            rule.getSourceServiceId(), rule.getComponentModelId(), rule.getTargetState()));
+                    }
+                }
+            }
+            stepTransitions[step.index()] = table;
+        }
+        return stepTransitions;
+    }
+
+    // Throws ExpressionException for the first condition of the GOM that does not parse
+    static void checkConditions(GlobalOperationModelEntity gom) {
+        compileAll(gom.getPreconditions());
+        compileAll(gom.getPostconditions());
+        if (gom.getStateTransitions() != null) {
+            for (StateTransitionRule rule : gom.getStateTransitions()) {
+                if (rule != null && rule.getConditionExpression() != null && !rule.getConditionExpression().isBlank()) {
+                    ConditionExpression.compile(rule.getConditionExpression());
+                }
+            }
+        }
+    }
+
+    private static List<ConditionExpression> compileAll(List<String> sources) {
+        if (sources == null) {
+            return List.of();
+        }
+        List<ConditionExpression> expressions = new ArrayList<>();
+        for (String source : sources) {
+            if (source != null && !source.isBlank()) {
+                expressions.add(ConditionExpression.compile(source));
+            }
+        }
+        return List.copyOf(expressions);
+    }
+
+    // A rule's condition guards the operations of its source service on its component
+    private static ConditionExpression[] compileGuards(GlobalOperationModelEntity gom, GomOperationGraph graph) {
+        Map<String, ConditionExpression> guards = new LinkedHashMap<>();
+        for (StateTransitionRule rule : gom.getStateTransitions()) {
+            String condition = rule.getConditionExpression();
+            if (condition == null || condition.isBlank()) {
+                continue;
+            }
+            String key = rule.getSourceServiceId() + '/' + rule.getComponentModelId();
+            String existing = guards.containsKey(key) ? guards.get(key).source() : null;
+            // Several conditional rules for one operation must all hold
+            guards.put(key, ConditionExpression.compile(
+                existing != null ? "(" + existing + ") && (" + condition + ")" : condition));
+        }
+
+        ConditionExpression[] stepGuards = new ConditionExpression[graph.steps().size()];
+        for (GomOperationGraph.Step step : graph.steps()) {
+            stepGuards[step.index()] = guards.get(step.microserviceId() + '/' + step.componentId());
+        }
+        return stepGuards;
+    }
+
+    String gomId() {
+        return gomId;
+    }
+
+    String name() {
+        return name;
+    }
+
+    GomOperationGraph graph() {
+        return graph;
+    }
+
+    Map<String, List<Requirement>> requirementsByComponent() {
+        return requirementsByComponent;
+    }
+
+    List<ConditionExpression> preconditions() {
+        return preconditions;
+    }
+
+    List<ConditionExpression> postconditions() {
+        return postconditions;
+    }
+
+    ConditionExpression guard(GomOperationGraph.Step step) {
+        return stepGuards[step.index()];
+    }
+
+    TransitionTable transitions(GomOperationGraph.Step step) {
+        return stepTransitions[step.index()];
+    }
+
+    // Components whose states validation and the preconditions read before the first step
+    Set<String> componentsReadBeforeExecution() {
+        Set<String> componentIds = new LinkedHashSet<>(requirementsByComponent.keySet());
+        preconditions.forEach(condition -> componentIds.addAll(condition.componentIds()));
+        return componentIds;
+    }
+
+    record Requirement(String microserviceId, ConsistencyType consistencyType) {
+    }
+}
@@ -0,0 +1,11 @@
+package org.consistency.megamodel.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class GomExecutionRejectedException extends RuntimeException {
+    public GomExecutionRejectedException(String message) {
+        super(message);
+    }
+}
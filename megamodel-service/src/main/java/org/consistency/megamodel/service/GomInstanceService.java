@@ -38,6 +38,9 @@ public class GomInstanceService {
                 details.put("status", instance.getStatus());
                 details.put("createdAt", instance.getCreatedAt());
                 details.put("updatedAt", instance.getUpdatedAt());
+                details.put("totalSteps", instance.getTotalSteps());
+                details.put("completedSteps", instance.getCompletedSteps());
+                details.put("errorMessage", instance.getErrorMessage());
                 
                 // Add GOM information
                 GlobalOperationModelEntity gom = instance.getGom();
@@ -75,6 +78,11 @@ public class GomInstanceService {
 
     @Transactional
     public GomInstanceEntity createInstance(String gomId, String name) {
+        return createInstance(gomId, name, GomInstanceStatus.RUNNING);
+    }
+
+    @Transactional
+    public GomInstanceEntity createInstance(String gomId, String name, GomInstanceStatus status) {
         GlobalOperationModelEntity gom = gomRepository.findById(gomId)
                 .orElseThrow(() -> new EntityNotFoundException("GOM not found: " + gomId));
 
@@ -84,7 +92,7 @@ public class GomInstanceService {
         instance.setId(UUID.randomUUID().toString());
         instance.setGom(gom);
         instance.setName(name);
-        instance.setStatus(GomInstanceStatus.RUNNING);
+        instance.setStatus(status);
         instance.setCreatedAt(LocalDateTime.now());
         instance.setUpdatedAt(LocalDateTime.now());
 
@@ -128,4 +136,35 @@ public class GomInstanceService {
         log.debug("Updating instance {} of GOM {}", instance.getId(), instance.getGom().getName());
         return gomInstanceRepository.save(instance);
     }
-}
\ No newline at end of file
+
+    @Transactional
+    public void startInstance(String instanceId, int totalSteps) {
+        GomInstanceEntity instance = gomInstanceRepository.findById(instanceId)
+                .orElseThrow(() -> new EntityNotFoundException("Instance not found: " + instanceId));
+        instance.setStatus(GomInstanceStatus.RUNNING);
+        instance.setTotalSteps(totalSteps);
+        instance.setCompletedSteps(0);
+        gomInstanceRepository.save(instance);
+    }
+
+    public void recordStepCompleted(String instanceId) {
+        gomInstanceRepository.incrementCompletedSteps(instanceId, LocalDateTime.now());
+    }
+
+    @Transactional
+    public void finishInstance(
+        String instanceId,
+        GomInstanceStatus status,
+        List<MicroserviceComponentStateEntity> stateRecords,
+        String errorMessage
+    ) {
+        gomInstanceRepository.findById(instanceId).ifPresent(instance -> {
+            instance.setStatus(status);
+            instance.setErrorMessage(errorMessage);
+            instance.getMicroserviceStates().addAll(stateRecords);
+            instance.setUpdatedAt(LocalDateTime.now());
+            gomInstanceRepository.save(instance);
+            log.debug("Instance {} of GOM {} finished as {}", instanceId, instance.getGom().getName(), status);
+        });
+    }
+}
@@ -0,0 +1,119 @@
+package org.consistency.megamodel.service;
+
+import org.consistency.megamodel.model.ComponentRequirementEntity;
+import org.consistency.megamodel.model.ConsistencyType;
+import org.consistency.megamodel.model.GlobalOperationModelEntity;
+import org.consistency.megamodel.model.GomComponentRef;
+import org.consistency.megamodel.model.MicroserviceRequirementEntity;
+import org.consistency.megamodel.model.StateTransitionRule;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The component operations of a GOM as a dependency graph. Operations on the same component
+ * form a chain in which the source services of the GOM's state transition rules go first;
+ * chains of output components start only after every input component chain has finished.
+ * Steps are listed in topological order, so every dependency has a lower index.
+ */
+class GomOperationGraph {
+    private final List<Step> steps;
+
+    private GomOperationGraph(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    static GomOperationGraph of(GlobalOperationModelEntity gom) {
+        Set<String> transitionSources = new HashSet<>();
+        for (StateTransitionRule rule : gom.getStateTransitions()) {
+            transitionSources.add(rule.getSourceServiceId() + '/' + rule.getComponentModelId());
+        }
+        Set<String> outputComponents = new HashSet<>();
+        for (GomComponentRef output : gom.getOutputs()) {
+            outputComponents.add(output.getComponentModelId());
+        }
+        Set<String> inputComponents = new HashSet<>();
+        for (GomComponentRef input : gom.getInputs()) {
+            if (!outputComponents.contains(input.getComponentModelId())) {
+                inputComponents.add(input.getComponentModelId());
+            }
+        }
+
+        Map<String, List<Operation>> chains = new LinkedHashMap<>();
+        for (MicroserviceRequirementEntity requirement : gom.getMicroserviceRequirements()) {
+            for (ComponentRequirementEntity componentReq : requirement.getRequiredComponents()) {
+                boolean source = transitionSources.contains(requirement.getMicroserviceId() + '/' + componentReq.getComponentId());
+                chains.computeIfAbsent(componentReq.getComponentId(), id -> new ArrayList<>())
+                    .add(new Operation(requirement.getMicroserviceId(), componentReq.getComponentId(),
+                        componentReq.getConsistencyType(), source));
+            }
+        }
+
+        List<Step> steps = new ArrayList<>();
+        List<Integer> inputChainEnds = new ArrayList<>();
+        List<Map.Entry<String, List<Operation>>> outputChains = new ArrayList<>();
+        for (Map.Entry<String, List<Operation>> chain : chains.entrySet()) {
+            if (outputComponents.contains(chain.getKey())) {
+                outputChains.add(chain);
+                continue;
+            }
+            int last = appendChain(steps, chain.getValue(), List.of());
+            if (inputComponents.contains(chain.getKey())) {
+                inputChainEnds.add(last);
+            }
+        }
+        for (Map.Entry<String, List<Operation>> chain : outputChains) {
+            appendChain(steps, chain.getValue(), inputChainEnds);
+        }
+        return new GomOperationGraph(List.copyOf(steps));
+    }
+
+    private static int appendChain(List<Step> steps, List<Operation> operations, List<Integer> firstDependencies) {
+        List<Operation> ordered = new ArrayList<>(operations);
+        // Stable, so operations keep their declared order within each group
+        ordered.sort(Comparator.comparing(operation -> !operation.transitionSource()));
+
+        int previous = -1;
+        for (Operation operation : ordered) {
+            int[] dependencies = previous < 0
+                ? firstDependencies.stream().mapToInt(Integer::intValue).toArray()
+                : new int[] {previous};
+            previous = steps.size();
+            steps.add(new Step(previous, operation.microserviceId(), operation.componentId(),
+                operation.consistencyType(), isWrite(operation.consistencyType()), dependencies));
+        }
+        return previous;
+    }
+
+    // Components requiring STRONG or READ_MY_WRITES consistency are written, all others are read
+    private static boolean isWrite(ConsistencyType consistencyType) {
+        return consistencyType == ConsistencyType.STRONG || consistencyType == ConsistencyType.READ_MY_WRITES;
+    }
+
+    List<Step> steps() {
+        return steps;
+    }
+
+    record Step(
+        int index,
+        String microserviceId,
+        String componentId,
+        ConsistencyType consistencyType,
+        boolean write,
+        int[] dependencies
+    ) {
+    }
+
+    private record Operation(
+        String microserviceId,
+        String componentId,
+        ConsistencyType consistencyType,
+        boolean transitionSource
+    ) {
+    }
+}
@@ -0,0 +1,82 @@
+package org.consistency.megamodel.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Runs the steps of a {@link GomOperationGraph} on a bounded pool, starting each step as soon
+ * as its dependencies have completed. After the first failure or a cancellation no further
+ * step is started.
+ */
+@Slf4j
+@Component
+public class GomStepExecutor {
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private ExecutorService executor;
+
+    @Value("${megamodel.gom.parallelism:8}")
+    private int parallelism;
+
+    @PostConstruct
+    void init() {
+        executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "gom-step-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void execute(GomOperationGraph graph, Consumer<GomOperationGraph.Step> operation, BooleanSupplier cancelled) {
+        List<GomOperationGraph.Step> steps = graph.steps();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(steps.size());
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        for (GomOperationGraph.Step step : steps) {
+            CompletableFuture<?>[] dependencies = new CompletableFuture<?>[step.dependencies().length];
+            for (int i = 0; i < dependencies.length; i++) {
+                dependencies[i] = futures.get(step.dependencies()[i]);
+            }
+            futures.add(CompletableFuture.allOf(dependencies).thenRunAsync(() -> {
+                if (failure.get() != null || cancelled.getAsBoolean()) {
+                    throw new CancellationException("GOM execution stopped");
+                }
+                try {
+                    operation.accept(step);
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                    throw e;
+                }
+            }, executor));
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException | CancellationException e) {
+            RuntimeException cause = failure.get();
+            if (cause != null) {
+                throw cause;
+            }
+            throw new CancellationException("GOM execution cancelled");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,37 @@
+package org.consistency.megamodel.service;
+
+import org.consistency.megamodel.model.ConsistencyType;
+
+import java.util.List;
+
+/**
+ * Outcome of checking a GOM's microservice requirements and preconditions against the
+ * current component states. Every unmet requirement is listed, not only the first one;
+ * unmet preconditions carry only a message.
+ */
+public record GomValidationResult(String gomId, List<Violation> violations) {
+
+    public boolean isValid() {
+        return violations.isEmpty();
+    }
+
+    public String describe() {
+        StringBuilder description = new StringBuilder();
+        for (Violation violation : violations) {
+            if (description.length() > 0) {
+                description.append("; ");
+            }
+            description.append(violation.message());
+        }
+        return description.toString();
+    }
+
+    public record Violation(
+        String microserviceId,
+        String componentId,
+        ConsistencyType requiredConsistencyType,
+        ConsistencyType actualConsistencyType,
+        String message
+    ) {
+    }
+}
@@ -0,0 +1,11 @@
+package org.consistency.megamodel.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidGomException extends IllegalArgumentException {
+    public InvalidGomException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,169 @@
+package org.consistency.megamodel.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.consistency.megamodel.cluster.ClusterClient;
+import org.consistency.megamodel.model.ComponentModelRepository;
+import org.consistency.megamodel.model.ComponentModelSummary;
+import org.consistency.megamodel.model.GlobalOperationModelEntity;
+import org.consistency.megamodel.model.GlobalOperationModelRepository;
+import org.consistency.megamodel.model.MicroserviceRepository;
+import org.consistency.megamodel.model.MicroserviceSummary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Bounded caches in front of the single-entity reads of microservices, components and GOMs,
+ * which change far less often than they are read. Entries are dropped by every save or
+ * delete through the API, on this node and on its peers, and expire after a while in case
+ * an invalidation from another node was lost. Eviction is Caffeine's W-TinyLFU, so a scan
+ * over many ids cannot push out the entries that are read all the time.
+ * <p>
+ * Misses are not cached, so creating an entity never has to invalidate anything to become
+ * visible. Loads and invalidations of the same id are serialized by the cache, so a load
+ * that read the previous version is removed by the invalidation that follows the save.
+ * <p>
+ * Microservices and components are cached as immutable summary records. A GOM is cached
+ * serialized and every read gets its own entity, so callers can never change a cached one.
+ */
+@Slf4j
+@Component
+public class MetadataCache {
+    private final MicroserviceRepository microserviceRepository;
+    private final ComponentModelRepository componentModelRepository;
+    private final GlobalOperationModelRepository gomRepository;
+    private final ClusterClient clusterClient;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readTransaction;
+
+    @Value("${megamodel.cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${megamodel.cache.expire-after-write-ms:600000}")
+    private long expireAfterWriteMs;
+
+    private Cache<String, MicroserviceSummary> microservices;
+    private Cache<String, ComponentModelSummary> components;
+    private Cache<String, byte[]> goms;
+
+    public MetadataCache(
+        MicroserviceRepository microserviceRepository,
+        ComponentModelRepository componentModelRepository,
+        GlobalOperationModelRepository gomRepository,
+        ClusterClient clusterClient,
+        ObjectMapper objectMapper,
+        PlatformTransactionManager transactionManager
+    ) {
+        this.microserviceRepository = microserviceRepository;
+        this.componentModelRepository = componentModelRepository;
+        this.gomRepository = gomRepository;
+        this.clusterClient = clusterClient;
+        this.objectMapper = objectMapper;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    @PostConstruct
+    void init() {
+        microservices = newCache();
+        components = newCache();
+        goms = newCache();
+        log.info("Metadata caches hold up to {} entries each for {} ms", maximumSize, expireAfterWriteMs);
+    }
+
+    private <V> Cache<String, V> newCache() {
+        return Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(Duration.ofMillis(expireAfterWriteMs))
+            .recordStats()
+            .build();
+    }
+
+    public Optional<MicroserviceSummary> findMicroservice(String id) {
+        return Optional.ofNullable(microservices.get(id,
+            key -> microserviceRepository.findSummaryById(key).orElse(null)));
+    }
+
+    public Optional<ComponentModelSummary> findComponent(String id) {
+        return Optional.ofNullable(components.get(id,
+            key -> componentModelRepository.findSummaryById(key).orElse(null)));
+    }
+
+    // Serialized inside the read transaction, so everything the response contains is loaded
+    public Optional<GlobalOperationModelEntity> findGom(String id) {
+        byte[] gom = goms.get(id, key -> readTransaction.execute(status ->
+            gomRepository.findById(key).map(this::serialize).orElse(null)));
+        return Optional.ofNullable(gom).map(this::deserialize);
+    }
+
+    private byte[] serialize(GlobalOperationModelEntity gom) {
+        try {
+            return objectMapper.writeValueAsBytes(gom);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not serialize GOM " + gom.getId(), e);
+        }
+    }
+
+    private GlobalOperationModelEntity deserialize(byte[] gom) {
+        try {
+            return objectMapper.readValue(gom, GlobalOperationModelEntity.class);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read a cached GOM", e);
+        }
+    }
+
+    public void invalidateMicroservice(String id) {
+        invalidateLocalMicroservice(id);
+        clusterClient.broadcast("/api/cluster/microservices/{id}/invalidate", null, id);
+    }
+
+    public void invalidateLocalMicroservice(String id) {
+        microservices.invalidate(id);
+    }
+
+    public void invalidateComponent(String id) {
+        invalidateLocalComponent(id);
+        clusterClient.broadcast("/api/cluster/components/{id}/invalidate", null, id);
+    }
+
+    public void invalidateLocalComponent(String id) {
+        components.invalidate(id);
+    }
+
+    // Called with the GOM's plan invalidation, which already reaches every node
+    void invalidateLocalGom(String id) {
+        goms.invalidate(id);
+    }
+
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        stats.put("microservices", statsOf(microservices));
+        stats.put("components", statsOf(components));
+        stats.put("goms", statsOf(goms));
+        return stats;
+    }
+
+    private static Map<String, Object> statsOf(Cache<String, ?> cache) {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        result.put("averageLoadMillis", stats.averageLoadPenalty() / 1_000_000.0);
+        return result;
+    }
+}
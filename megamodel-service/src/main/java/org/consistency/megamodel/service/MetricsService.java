@@ -1,62 +1,69 @@
 package org.consistency.megamodel.service;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.consistency.megamodel.cluster.ClusterClient;
+import org.consistency.megamodel.cluster.PartitionTable;
 import org.consistency.megamodel.model.ComponentState;
 import org.consistency.megamodel.model.ComponentModelServiceRepository;
+import org.consistency.megamodel.model.ConsistencyType;
+import org.consistency.megamodel.state.IdRegistry;
+import org.consistency.megamodel.state.StateCount;
+import org.consistency.megamodel.state.StateFlusher;
+import org.consistency.megamodel.state.StateGauges;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicLong;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class MetricsService {
+    private static final int MAX_RECONCILE_ATTEMPTS = 3;
+    private static final String REPORT_JOB = "metrics-report";
+    private static final String RECONCILE_JOB = "state-gauge-reconciliation";
+
     private final ComponentModelServiceRepository componentModelServiceRepo;
+    private final StateGauges stateGauges;
+    private final StateFlusher stateFlusher;
+    private final IdRegistry ids;
+    private final PartitionTable partitions;
+    private final ClusterClient clusterClient;
     private final Map<ComponentState, AtomicLong> stateTransitionCounts = new EnumMap<>(ComponentState.class);
     private final AtomicLong totalOperations = new AtomicLong(0);
-    private final Queue<Map<String, Object>> recentTransitions = new ConcurrentLinkedQueue<>();
-    private final Queue<Map<String, Object>> componentLogs = new ConcurrentLinkedQueue<>();
-    private static final int MAX_RECENT_ITEMS = 50;
-    
+    private TransitionLog transitionLog;
+    private volatile boolean gaugesReconciled;
+    private volatile PreparedCount preparedCount;
+
+    @Value("${megamodel.metrics.transition-log-capacity:4096}")
+    private int transitionLogCapacity;
+
     {
         for (ComponentState state : ComponentState.values()) {
             stateTransitionCounts.put(state, new AtomicLong(0));
         }
     }
-    
+
+    @PostConstruct
+    void init() {
+        transitionLog = new TransitionLog(transitionLogCapacity, ids);
+    }
+
+    // Takes IdRegistry keys, the entries being transitioned already carry them
     public void recordStateTransition(
-        String componentId,
-        String microserviceId,
+        int componentKey,
+        int microserviceKey,
         ComponentState fromState,
         ComponentState toState,
         String operation
     ) {
         stateTransitionCounts.get(toState).incrementAndGet();
         totalOperations.incrementAndGet();
-
-        Map<String, Object> transition = new HashMap<>();
-        transition.put("componentId", componentId);
-        transition.put("microserviceId", microserviceId);
-        transition.put("fromState", fromState);
-        transition.put("toState", toState);
-        transition.put("operation", operation);
-        transition.put("timestamp", LocalDateTime.now());
-
-        recentTransitions.offer(transition);
-        while (recentTransitions.size() > MAX_RECENT_ITEMS) {
-            recentTransitions.poll();
-        }
-
-        // Add to component logs
-        Map<String, Object> log = new HashMap<>(transition);
-        log.put("type", "STATE_TRANSITION");
-        componentLogs.offer(log);
-        while (componentLogs.size() > MAX_RECENT_ITEMS) {
-            componentLogs.poll();
-        }
+        transitionLog.recordTransition(componentKey, microserviceKey, fromState, toState, operation);
     }
 
     public void logComponentOperation(
@@ -65,26 +72,16 @@ public class MetricsService {
         String operation,
         String details
     ) {
-        Map<String, Object> log = new HashMap<>();
-        log.put("componentId", componentId);
-        log.put("microserviceId", microserviceId);
-        log.put("operation", operation);
-        log.put("details", details);
-        log.put("timestamp", LocalDateTime.now());
-        log.put("type", "OPERATION");
-
-        componentLogs.offer(log);
-        while (componentLogs.size() > MAX_RECENT_ITEMS) {
-            componentLogs.poll();
-        }
+        transitionLog.recordOperation(componentId, microserviceId, operation, details);
     }
-    
+
     @Scheduled(fixedRate = 60000)
     public void logMetrics() {
-        Map<ComponentState, Long> currentCounts = new EnumMap<>(ComponentState.class);
-        componentModelServiceRepo.findAll().forEach(entity -> 
-            currentCounts.merge(entity.getState(), 1L, Long::sum));
-            
+        if (!partitions.isJobLeader(REPORT_JOB)) {
+            return;
+        }
+        Map<ComponentState, Long> currentCounts = stateGauges.byState();
+
         StringBuilder report = new StringBuilder("\nSystem Metrics Report:\n");
         report.append("Total operations: ").append(totalOperations.get()).append("\n");
         report.append("Current state distribution:\n");
@@ -99,11 +96,76 @@ public class MetricsService {
         System.out.println(report);
     }
     
+    // Counts rows in the database and corrects the live gauges by the drift. The state table is
+    // flushed first so the count sees every change the gauges already reflect; if anything
+    // changes while counting the attempt is repeated. In a cluster every node counts once at
+    // startup, after that only the job's leader counts and hands the result to the others,
+    // which flush their own changes before it counts.
+    @Scheduled(initialDelay = 0, fixedDelayString = "${megamodel.metrics.reconcile-interval-ms:300000}")
+    public void reconcileStateGauges() {
+        if (gaugesReconciled && !partitions.isJobLeader(RECONCILE_JOB)) {
+            return;
+        }
+        for (int attempt = 1; attempt <= MAX_RECONCILE_ATTEMPTS; attempt++) {
+            long modifications = stateGauges.modificationCount();
+            StateGauges.Snapshot observed = stateGauges.snapshot();
+            if (!stateFlusher.flush()) {
+                log.debug("State table could not be flushed, retrying the gauge reconciliation on the next run");
+                return;
+            }
+            if (gaugesReconciled) {
+                clusterClient.broadcast("/api/cluster/state-counts/prepare", null);
+            }
+            List<StateCount> counted = componentModelServiceRepo.countByComponentAndConsistencyTypeAndState();
+            if (stateGauges.modificationCount() == modifications) {
+                stateGauges.reconcile(observed, counted);
+                if (gaugesReconciled) {
+                    clusterClient.broadcast("/api/cluster/state-counts", counted);
+                }
+                gaugesReconciled = true;
+                return;
+            }
+        }
+        log.debug("State gauges changed during {} reconciliation attempts, retrying on the next run",
+            MAX_RECONCILE_ATTEMPTS);
+    }
+
+    // Called by the reconciliation leader before it counts, so the count sees every change this node's gauges reflect
+    public void prepareStateCounts() {
+        long modifications = stateGauges.modificationCount();
+        StateGauges.Snapshot observed = stateGauges.snapshot();
+        preparedCount = stateFlusher.flush() ? new PreparedCount(modifications, observed) : null;
+    }
+
+    /**
+     * Takes the gauge counts of the node leading the reconciliation. They are only applied if
+     * this node's gauges have not changed since it prepared for the count; otherwise the count
+     * may miss changes of this node and the gauges are left until the next reconciliation.
+     */
+    public void applyStateCounts(List<StateCount> counted) {
+        PreparedCount prepared = preparedCount;
+        preparedCount = null;
+        if (prepared == null || stateGauges.modificationCount() != prepared.modifications()) {
+            log.debug("State gauges changed since the reconciliation count was prepared, skipping it");
+            return;
+        }
+        stateGauges.reconcile(prepared.observed(), counted);
+    }
+
     public Map<ComponentState, Long> getCurrentStateDistribution() {
-        Map<ComponentState, Long> distribution = new EnumMap<>(ComponentState.class);
-        componentModelServiceRepo.findAll().forEach(entity -> 
-            distribution.merge(entity.getState(), 1L, Long::sum));
-        return distribution;
+        return stateGauges.byState();
+    }
+
+    public Map<ConsistencyType, Map<ComponentState, Long>> getStateDistributionByConsistencyType() {
+        return stateGauges.byConsistencyType();
+    }
+
+    public Map<ComponentState, Long> getStateDistribution(String componentId) {
+        return stateGauges.byComponent(componentId);
+    }
+
+    public Map<String, Map<ComponentState, Long>> getStateDistributionByComponent() {
+        return stateGauges.byComponent();
     }
     
     public long getTotalOperations() {
@@ -117,11 +179,46 @@ public class MetricsService {
         return counts;
     }
 
-    public List<Map<String, Object>> getRecentTransitions() {
-        return new ArrayList<>(recentTransitions);
+    public List<Map<String, Object>> getRecentTransitions(int limit) {
+        List<Map<String, Object>> transitions = new ArrayList<>();
+        for (TransitionLog.Entry entry : transitionLog.snapshot(limit, true)) {
+            transitions.add(toTransition(entry));
+        }
+        return transitions;
+    }
+
+    public List<Map<String, Object>> getComponentLogs(int limit) {
+        List<Map<String, Object>> logs = new ArrayList<>();
+        for (TransitionLog.Entry entry : transitionLog.snapshot(limit, false)) {
+            Map<String, Object> log;
+            if (entry.type() == TransitionLog.TRANSITION) {
+                log = toTransition(entry);
+                log.put("type", "STATE_TRANSITION");
+            } else {
+                log = new HashMap<>();
+                log.put("componentId", entry.componentId());
+                log.put("microserviceId", entry.microserviceId());
+                log.put("operation", entry.operation());
+                log.put("details", entry.details());
+                log.put("timestamp", entry.timestamp());
+                log.put("type", "OPERATION");
+            }
+            logs.add(log);
+        }
+        return logs;
+    }
+
+    private static Map<String, Object> toTransition(TransitionLog.Entry entry) {
+        Map<String, Object> transition = new HashMap<>();
+        transition.put("componentId", entry.componentId());
+        transition.put("microserviceId", entry.microserviceId());
+        transition.put("fromState", entry.fromState());
+        transition.put("toState", entry.toState());
+        transition.put("operation", entry.operation());
+        transition.put("timestamp", entry.timestamp());
+        return transition;
     }
 
-    public List<Map<String, Object>> getComponentLogs() {
-        return new ArrayList<>(componentLogs);
+    private record PreparedCount(long modifications, StateGauges.Snapshot observed) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,258 @@
+package org.consistency.megamodel.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.consistency.megamodel.event.StateChangeBatchListener;
+import org.consistency.megamodel.event.StateChangeEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes committed state changes and periodic metric deltas to dashboard clients over SSE.
+ * Each client has its own pending buffer in which state changes are coalesced per
+ * (microservice, component) pair, so a slow client receives the latest state of every
+ * pair instead of an ever growing backlog.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StateStreamService implements StateChangeBatchListener {
+    private final MetricsService metricsService;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicInteger senderThreadCount = new AtomicInteger();
+    private final ExecutorService sender = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "state-stream-" + senderThreadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Map<String, Object> lastMetrics;
+
+    @Value("${megamodel.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    public SseEmitter subscribe(Collection<String> componentIds, Collection<String> microserviceIds) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscription subscription = new Subscription(emitter, toFilter(componentIds), toFilter(microserviceIds));
+        emitter.onCompletion(() -> subscriptions.remove(subscription));
+        emitter.onTimeout(() -> subscriptions.remove(subscription));
+        emitter.onError(error -> subscriptions.remove(subscription));
+        subscriptions.add(subscription);
+
+        subscription.enqueueMetrics(currentMetrics());
+        log.debug("Stream subscriber added, {} active", subscriptions.size());
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    @Override
+    public void onStateChanges(List<StateChangeEvent> events) {
+        for (Subscription subscription : subscriptions) {
+            boolean matched = false;
+            for (StateChangeEvent event : events) {
+                if (subscription.matches(event)) {
+                    subscription.enqueueState(event);
+                    matched = true;
+                }
+            }
+            if (matched) {
+                subscription.scheduleSend(false);
+            }
+        }
+    }
+
+    @Scheduled(fixedRateString = "${megamodel.stream.metrics-interval-ms:5000}")
+    public void publishMetricDeltas() {
+        Map<String, Object> delta;
+        synchronized (this) {
+            if (subscriptions.isEmpty()) {
+                lastMetrics = null;
+                return;
+            }
+            Map<String, Object> previous = lastMetrics;
+            lastMetrics = computeMetrics();
+            delta = previous != null ? diff(previous, lastMetrics) : lastMetrics;
+        }
+
+        for (Subscription subscription : subscriptions) {
+            if (delta.isEmpty()) {
+                // Keeps idle connections alive and detects clients that went away
+                subscription.scheduleSend(true);
+            } else {
+                subscription.enqueueMetrics(delta);
+            }
+        }
+    }
+
+    private synchronized Map<String, Object> currentMetrics() {
+        if (lastMetrics == null) {
+            lastMetrics = computeMetrics();
+        }
+        return lastMetrics;
+    }
+
+    private Map<String, Object> computeMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("totalOperations", metricsService.getTotalOperations());
+        metrics.put("transitionCounts", metricsService.getStateTransitionCounts());
+        metrics.put("stateDistribution", metricsService.getCurrentStateDistribution());
+        return metrics;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> diff(Map<String, Object> previous, Map<String, Object> current) {
+        Map<String, Object> delta = new LinkedHashMap<>();
+        current.forEach((key, value) -> {
+            Object old = previous.get(key);
+            if (value instanceof Map && old instanceof Map) {
+                Map<Object, Object> changed = new LinkedHashMap<>();
+                ((Map<Object, Object>) value).forEach((k, v) -> {
+                    if (!Objects.equals(((Map<Object, Object>) old).get(k), v)) {
+                        changed.put(k, v);
+                    }
+                });
+                if (!changed.isEmpty()) {
+                    delta.put(key, changed);
+                }
+            } else if (!Objects.equals(old, value)) {
+                delta.put(key, value);
+            }
+        });
+        return delta;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void mergeMetrics(Map<String, Object> target, Map<String, Object> delta) {
+        delta.forEach((key, value) -> {
+            if (value instanceof Map && target.get(key) instanceof Map) {
+                ((Map<Object, Object>) target.get(key)).putAll((Map<Object, Object>) value);
+            } else if (value instanceof Map) {
+                target.put(key, new LinkedHashMap<>((Map<Object, Object>) value));
+            } else {
+                target.put(key, value);
+            }
+        });
+    }
+
+    private static Set<String> toFilter(Collection<String> ids) {
+        return ids == null || ids.isEmpty() ? null : Set.copyOf(ids);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscriptions.forEach(subscription -> subscription.emitter.complete());
+        sender.shutdownNow();
+    }
+
+    private class Subscription {
+        private final SseEmitter emitter;
+        private final Set<String> componentIds;
+        private final Set<String> microserviceIds;
+
+        // Guarded by this; drained by at most one sender task at a time
+        private final Map<String, StateChangeEvent> pendingStates = new LinkedHashMap<>();
+        private final Map<String, Object> pendingMetrics = new LinkedHashMap<>();
+        private boolean sending;
+        private boolean heartbeatDue;
+
+        Subscription(SseEmitter emitter, Set<String> componentIds, Set<String> microserviceIds) {
+            this.emitter = emitter;
+            this.componentIds = componentIds;
+            this.microserviceIds = microserviceIds;
+        }
+
+        boolean matches(StateChangeEvent event) {
+            return (componentIds == null || componentIds.contains(event.getComponentId()))
+                && (microserviceIds == null || microserviceIds.contains(event.getMicroserviceId()));
+        }
+
+        synchronized void enqueueState(StateChangeEvent event) {
+            String key = event.getMicroserviceId() + '\u0000' + event.getComponentId();
+            StateChangeEvent pending = pendingStates.remove(key);
+            if (pending != null) {
+                // Keep the state the client last saw as the origin of the coalesced change
+                event = new StateChangeEvent(event.getSource(), event.getMicroserviceId(), event.getComponentId(),
+                    pending.getOldState(), event.getNewState(), event.getVersion(), event.getOperation());
+            }
+            pendingStates.put(key, event);
+        }
+
+        synchronized void enqueueMetrics(Map<String, Object> delta) {
+            mergeMetrics(pendingMetrics, delta);
+            scheduleSend(false);
+        }
+
+        synchronized void scheduleSend(boolean heartbeat) {
+            heartbeatDue |= heartbeat;
+            if (!sending) {
+                sending = true;
+                sender.execute(this::send);
+            }
+        }
+
+        private void send() {
+            try {
+                while (true) {
+                    List<StateChangeEvent> states;
+                    Map<String, Object> metrics;
+                    synchronized (this) {
+                        if (pendingStates.isEmpty() && pendingMetrics.isEmpty() && !heartbeatDue) {
+                            sending = false;
+                            return;
+                        }
+                        states = new ArrayList<>(pendingStates.values());
+                        metrics = pendingMetrics.isEmpty() ? null : new LinkedHashMap<>(pendingMetrics);
+                        pendingStates.clear();
+                        pendingMetrics.clear();
+                        heartbeatDue = false;
+                    }
+
+                    for (StateChangeEvent event : states) {
+                        emitter.send(SseEmitter.event().name("state").data(toPayload(event)));
+                    }
+                    if (metrics != null) {
+                        emitter.send(SseEmitter.event().name("metrics").data(metrics));
+                    } else if (states.isEmpty()) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Dropping stream subscriber: {}", e.getMessage());
+                subscriptions.remove(this);
+                synchronized (this) {
+                    pendingStates.clear();
+                    pendingMetrics.clear();
+                    sending = false;
+                }
+                emitter.completeWithError(e);
+            }
+        }
+
+        private Map<String, Object> toPayload(StateChangeEvent event) {
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("componentId", event.getComponentId());
+            payload.put("microserviceId", event.getMicroserviceId());
+            payload.put("fromState", event.getOldState());
+            payload.put("toState", event.getNewState());
+            payload.put("version", event.getVersion());
+            payload.put("operation", event.getOperation());
+            payload.put("timestamp", Instant.ofEpochMilli(event.getTimestamp()));
+            return payload;
+        }
+    }
+}
@@ -1,246 +1,715 @@
 package org.consistency.megamodel.service;
 
-import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.consistency.megamodel.cluster.ClusterClient;
+import org.consistency.megamodel.cluster.ComponentRouter;
+import org.consistency.megamodel.cluster.PartitionUnavailableException;
 import org.consistency.megamodel.event.StateChangeEvent;
+import org.consistency.megamodel.event.StateEventBus;
+import org.consistency.megamodel.expression.ConditionExpression;
+import org.consistency.megamodel.expression.StateLookup;
 import org.consistency.megamodel.model.*;
-import org.springframework.context.ApplicationEventPublisher;
+import org.consistency.megamodel.state.ComponentSlot;
+import org.consistency.megamodel.state.ComponentStateEntry;
+import org.consistency.megamodel.state.IdRegistry;
+import org.consistency.megamodel.state.StalenessTimer;
+import org.consistency.megamodel.state.StateTable;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class StateTransitionService {
-    private final ComponentModelServiceRepository componentModelServiceRepo;
+    private static final ConsistencyType[] CONSISTENCY_TYPES = ConsistencyType.values();
+    private static final ParameterizedTypeReference<Map<String, ComponentStateEntry>> SOURCES =
+        new ParameterizedTypeReference<>() { };
+    private static final ParameterizedTypeReference<Map<String, Map<String, ComponentStateEntry>>> STATES =
+        new ParameterizedTypeReference<>() { };
+    private static final ParameterizedTypeReference<Map<String, List<ComponentStateEntry>>> BATCH_RESULTS =
+        new ParameterizedTypeReference<>() { };
+
+    private final StateTable stateTable;
+    private final IdRegistry ids;
+    private final StalenessTimer stalenessTimer;
     private final MicroserviceRepository microserviceRepo;
     private final ComponentModelRepository componentModelRepo;
-    private final ApplicationEventPublisher eventPublisher;
+    private final StateEventBus stateEventBus;
     private final MetricsService metricsService;
-    
-    @Transactional
-    public void handleWriteOperation(String microserviceId, String componentId) {
-        ComponentModelServiceEntity entity = getOrCreateComponentModelService(microserviceId, componentId);
-        ComponentState oldState = entity.getState();
-        
-        // Writing service always transitions to MODIFIED state
-        transitionToModified(entity, "WRITE");
-        
-        // Find all other services that have this component
-        List<ComponentModelServiceEntity> otherServices = componentModelServiceRepo
-            .findByComponentModelIdAndMicroserviceIdNot(componentId, microserviceId);
-        
+    private final CoherenceProtocolRegistry coherenceProtocols;
+    private final ComponentRouter componentRouter;
+    private final ClusterClient clusterClient;
+    private final ThreadLocal<BatchChanges> currentBatch = new ThreadLocal<>();
+    private final ThreadLocal<List<PendingStateChange>> currentChanges = new ThreadLocal<>();
+
+    // Returns a snapshot of the writer's entry after the write
+    public ComponentStateEntry handleWriteOperation(String microserviceId, String componentId) {
+        return handleWriteOperation(microserviceId, componentId, coherenceProtocols.defaultTable());
+    }
+
+    ComponentStateEntry handleWriteOperation(String microserviceId, String componentId, TransitionTable transitions) {
+        return onHolder(microserviceId, componentId, null, (slot, entry) -> write(slot, entry, transitions));
+    }
+
+    private ComponentStateEntry write(ComponentSlot slot, ComponentStateEntry entry, TransitionTable transitions) {
+        applyWrite(slot, entry, transitions, "WRITE");
+
         // Apply state transitions based on consistency requirements
-        for (ComponentModelServiceEntity otherService : otherServices) {
-            applyConsistencyBasedTransition(otherService, entity, "WRITE");
-        }
-    }
-    
-    private void transitionToModified(ComponentModelServiceEntity entity, String operation) {
-        ComponentState oldState = entity.getState();
-        entity.setState(ComponentState.MODIFIED);
-        entity.setVersion(entity.getVersion() + 1);
-        entity.setTimestamp(LocalDateTime.now());
-        componentModelServiceRepo.save(entity);
-        publishStateChange(entity, oldState, operation);
-    }
-    
-    private void applyConsistencyBasedTransition(
-        ComponentModelServiceEntity service,
-        ComponentModelServiceEntity modifiedEntity,
+        invalidateSharers(slot, entry, Set.of(entry), transitions);
+        return entry.snapshot();
+    }
+
+    private void invalidateSharers(
+        ComponentSlot slot,
+        ComponentStateEntry modifiedEntry,
+        Set<ComponentStateEntry> writers,
+        TransitionTable transitions
+    ) {
+        // Groups whose states a write cannot change are not visited
+        for (ConsistencyType consistencyType : CONSISTENCY_TYPES) {
+            if (!transitions.peersChangeOnWrite(consistencyType)) {
+                continue;
+            }
+            for (ComponentStateEntry otherService : slot.sharers(consistencyType)) {
+                if (!writers.contains(otherService)) {
+                    applyPeerTransition(otherService, modifiedEntry, OperationType.WRITE, transitions, "WRITE");
+                }
+            }
+        }
+    }
+
+    // Must run under the component's lock, which is what orders concurrent writers of one component
+    private void applyWrite(ComponentSlot slot, ComponentStateEntry entry, TransitionTable transitions, String operation) {
+        ComponentState oldState = entry.getState();
+        entry.setState(transitions.next(
+            entry.getConsistencyType(), oldState, OperationType.WRITE, TransitionTable.Role.ACTOR));
+        // Versions count writes to the component, so no two writes ever produce the same version
+        entry.setVersion(slot.getMaxVersion() + 1);
+        entry.setTimestamp(LocalDateTime.now());
+        // The writer holds the latest version, a staleness bound no longer applies to it
+        entry.setStalenessBound(null);
+        stalenessTimer.cancel(entry);
+        stateTable.markDirty(entry);
+        publishStateChange(entry, oldState, operation);
+    }
+
+    private void applyPeerTransition(
+        ComponentStateEntry service,
+        ComponentStateEntry modifiedEntry,
+        OperationType operationType,
+        TransitionTable transitions,
         String operation
     ) {
         ComponentState oldState = service.getState();
-        ComponentState newState = determineNewState(service.getConsistencyType(), service.getState());
-        
+        ComponentState newState = transitions.next(
+            service.getConsistencyType(), oldState, operationType, TransitionTable.Role.PEER);
+
         if (oldState != newState) {
             service.setState(newState);
-            service.setTimestamp(LocalDateTime.now());
-            
+            service.setTimestamp(modifiedEntry.getTimestamp());
+
             if (service.getConsistencyType() == ConsistencyType.BOUNDED_STALENESS) {
-                service.setStalenessBound(LocalDateTime.now().plusSeconds(30));
+                service.setStalenessBound(modifiedEntry.getTimestamp().plusSeconds(30));
+                stalenessTimer.schedule(service);
             }
-            
-            componentModelServiceRepo.save(service);
+
+            stateTable.markDirty(service);
             publishStateChange(service, oldState, operation);
         }
     }
-    
-    private ComponentState determineNewState(ConsistencyType consistencyType, ComponentState currentState) {
-        switch (consistencyType) {
-            case STRONG:
-                return ComponentState.INVALID;
-                
-            case EVENTUAL:
-            case BOUNDED_STALENESS:
-            case READ_MY_WRITES:
-                if (currentState == ComponentState.SHARED_PLUS) {
-                    return ComponentState.SHARED_MINUS;
+
+    // Returns a snapshot of the reader's entry after the read
+    public ComponentStateEntry handleReadOperation(String microserviceId, String componentId) {
+        return handleReadOperation(microserviceId, componentId, coherenceProtocols.defaultTable());
+    }
+
+    ComponentStateEntry handleReadOperation(String microserviceId, String componentId, TransitionTable transitions) {
+        return onHolder(microserviceId, componentId, null, (slot, entry) -> {
+            applyRead(slot, entry, transitions);
+            return entry.snapshot();
+        });
+    }
+
+    /**
+     * Applies a GOM step if its guard holds, evaluated under the same lock as the operation.
+     * The guard reads the step's component from the locked slot and other components from
+     * the given lookup. Returns null if the step was skipped.
+     */
+    ComponentStateEntry handleGuardedOperation(
+        String microserviceId,
+        String componentId,
+        OperationType operation,
+        TransitionTable transitions,
+        ConditionExpression guard,
+        StateLookup otherComponents
+    ) {
+        Predicate<ComponentSlot> holds = slot -> guard.evaluate((guardMicroserviceId, guardComponentId) ->
+            guardComponentId.equals(componentId)
+                ? slot.get(ids.existingMicroserviceKey(guardMicroserviceId))
+                : otherComponents.get(guardMicroserviceId, guardComponentId));
+        return onHolder(microserviceId, componentId, holds, (slot, entry) -> {
+            if (operation == OperationType.WRITE) {
+                return write(slot, entry, transitions);
+            }
+            applyRead(slot, entry, transitions);
+            return entry.snapshot();
+        });
+    }
+
+    /**
+     * Runs the operation on the microservice's entry under the component's lock. A first
+     * operation finds no entry: the lock is released, the row is inserted and the operation
+     * runs again with the new entry. Returns null without running it if the guard fails.
+     */
+    private ComponentStateEntry onHolder(
+        String microserviceId,
+        String componentId,
+        Predicate<ComponentSlot> guard,
+        BiFunction<ComponentSlot, ComponentStateEntry, ComponentStateEntry> operation
+    ) {
+        ComponentStateEntry created = null;
+        boolean[] skipped = new boolean[1];
+        while (true) {
+            ComponentStateEntry inserted = created;
+            ComponentStateEntry result = publishingChanges(() -> stateTable.query(componentId, slot -> {
+                if (guard != null && !guard.test(slot)) {
+                    skipped[0] = true;
+                    return null;
+                }
+                ComponentStateEntry entry = slot.get(ids.existingMicroserviceKey(microserviceId));
+                if (entry == null && inserted != null) {
+                    entry = stateTable.adopt(slot, inserted);
+                }
+                return entry != null ? operation.apply(slot, entry) : null;
+            }));
+            if (result != null || skipped[0]) {
+                return result;
+            }
+            created = createComponentModelService(microserviceId, componentId);
+        }
+    }
+
+    private void applyRead(ComponentSlot slot, ComponentStateEntry entry, TransitionTable transitions) {
+        expireStaleRead(entry);
+
+        ComponentState newState = transitions.next(
+            entry.getConsistencyType(), entry.getState(), OperationType.READ, TransitionTable.Role.ACTOR);
+        if (newState != entry.getState()) {
+            // A reader changes state by refreshing from the authoritative source, it stays put without one
+            ComponentStateEntry authoritativeSource = findAuthoritativeSource(slot);
+            if (authoritativeSource != null) {
+                updateFromAuthoritativeSource(entry, authoritativeSource, newState);
+            }
+        }
+
+        // Only visited when the protocol lets a read change other holders
+        if (transitions.peersChangeOnRead()) {
+            for (ComponentStateEntry otherService : List.copyOf(slot.entries())) {
+                if (otherService != entry) {
+                    applyPeerTransition(otherService, entry, OperationType.READ, transitions, "READ");
                 }
-                return currentState;
-                
-            case MONOTONIC_READS:
-                return currentState;
-                
-            default:
-                return currentState;
+            }
         }
     }
-    
+
+    @Transactional
+    public List<ComponentStateEntry> handleBatchOperations(List<StateOperation> operations) {
+        Map<String, List<StateOperation>> operationsByComponent = groupByComponent(operations);
+        // Resolve every referenced entity up front so a bad id rejects the batch before anything is applied
+        BatchEntities entities = resolveEntities(operationsByComponent);
+        Map<String, List<ComponentStateEntry>> applied = componentRouter.routeAll(operationsByComponent.keySet(),
+            componentIds -> applyLocalBatch(select(operationsByComponent, componentIds), entities),
+            (nodeUrl, componentIds) -> clusterClient.post(nodeUrl, "/api/cluster/batches",
+                operationsOf(operationsByComponent, componentIds), BATCH_RESULTS));
+
+        List<ComponentStateEntry> results = new ArrayList<>();
+        operationsByComponent.keySet().forEach(componentId -> results.addAll(applied.get(componentId)));
+        return results;
+    }
+
+    // The share of a batch served by this node; components it does not serve are left out of the result
     @Transactional
-    public void handleReadOperation(String microserviceId, String componentId) {
-        ComponentModelServiceEntity entity = getOrCreateComponentModelService(microserviceId, componentId);
-        ComponentState oldState = entity.getState();
-        
-        switch (entity.getState()) {
-            case INVALID:
-                handleInvalidState(entity);
-                break;
-                
-            case SHARED_MINUS:
-                handleSharedMinusState(entity);
-                break;
-                
-            case MODIFIED:
-            case SHARED_PLUS:
-                // No state change needed
-                break;
-        }
-    }
-    
-    private void handleInvalidState(ComponentModelServiceEntity entity) {
-        ComponentModelServiceEntity authoritativeSource = findAuthoritativeSource(entity.getComponentModel().getId());
-        if (authoritativeSource != null) {
-            ComponentState newState = determineReadState(entity.getConsistencyType());
-            updateFromAuthoritativeSource(entity, authoritativeSource, newState);
-        }
-    }
-    
-    private void handleSharedMinusState(ComponentModelServiceEntity entity) {
-        if (entity.getConsistencyType() == ConsistencyType.BOUNDED_STALENESS && 
-            entity.getStalenessBound() != null && 
-            LocalDateTime.now().isAfter(entity.getStalenessBound())) {
-            
-            ComponentState oldState = entity.getState();
-            entity.setState(ComponentState.INVALID);
-            componentModelServiceRepo.save(entity);
-            publishStateChange(entity, oldState, "READ");
-            handleInvalidState(entity);
-        }
-    }
-    
-    private ComponentState determineReadState(ConsistencyType consistencyType) {
-        switch (consistencyType) {
-            case STRONG:
-                return ComponentState.SHARED_PLUS;
-            case EVENTUAL:
-            case BOUNDED_STALENESS:
-            case READ_MY_WRITES:
-            case MONOTONIC_READS:
-                return ComponentState.SHARED_MINUS;
-            default:
-                return ComponentState.SHARED_MINUS;
-        }
-    }
-    
+    public Map<String, List<ComponentStateEntry>> handleLocalBatchOperations(List<StateOperation> operations) {
+        Map<String, List<StateOperation>> operationsByComponent = groupByComponent(operations);
+        return applyLocalBatch(operationsByComponent, resolveEntities(operationsByComponent));
+    }
+
+    private static Map<String, List<StateOperation>> groupByComponent(List<StateOperation> operations) {
+        Map<String, List<StateOperation>> operationsByComponent = new LinkedHashMap<>();
+        for (StateOperation operation : operations) {
+            if (operation.getOperation() == null || operation.getMicroserviceId() == null
+                || operation.getComponentId() == null) {
+                throw new IllegalArgumentException("Batch operation requires operation, microserviceId and componentId");
+            }
+            operationsByComponent.computeIfAbsent(operation.getComponentId(), id -> new ArrayList<>()).add(operation);
+        }
+        return operationsByComponent;
+    }
+
+    private static Map<String, List<StateOperation>> select(
+        Map<String, List<StateOperation>> operationsByComponent,
+        Collection<String> componentIds
+    ) {
+        Map<String, List<StateOperation>> selected = new LinkedHashMap<>();
+        componentIds.forEach(componentId -> selected.put(componentId, operationsByComponent.get(componentId)));
+        return selected;
+    }
+
+    private static List<StateOperation> operationsOf(
+        Map<String, List<StateOperation>> operationsByComponent,
+        Collection<String> componentIds
+    ) {
+        List<StateOperation> selected = new ArrayList<>();
+        componentIds.forEach(componentId -> selected.addAll(operationsByComponent.get(componentId)));
+        return selected;
+    }
+
+    private BatchEntities resolveEntities(Map<String, List<StateOperation>> operationsByComponent) {
+        Map<String, MicroserviceEntity> microservices = new HashMap<>();
+        Map<String, ComponentModelEntity> componentModels = new HashMap<>();
+        operationsByComponent.forEach((componentId, componentOperations) -> {
+            componentModels.put(componentId, null);
+            componentOperations.forEach(operation -> microservices.put(operation.getMicroserviceId(), null));
+        });
+
+        microserviceRepo.findAllById(microservices.keySet()).forEach(ms -> microservices.put(ms.getId(), ms));
+        componentModelRepo.findAllById(componentModels.keySet()).forEach(cm -> componentModels.put(cm.getId(), cm));
+        microservices.forEach((id, ms) -> {
+            if (ms == null) {
+                throw new ModelNotFoundException("Microservice not found: " + id);
+            }
+        });
+        componentModels.forEach((id, cm) -> {
+            if (cm == null) {
+                throw new ModelNotFoundException("Component model not found: " + id);
+            }
+        });
+        return new BatchEntities(microservices, componentModels);
+    }
+
+    private Map<String, List<ComponentStateEntry>> applyLocalBatch(
+        Map<String, List<StateOperation>> operationsByComponent,
+        BatchEntities entities
+    ) {
+        TransitionTable transitions = coherenceProtocols.defaultTable();
+        // Transitions of a component only depend on operations on that same component,
+        // so each component's operations are applied in order under a single lock
+        Map<String, List<ComponentStateEntry>> results = new LinkedHashMap<>();
+        List<PendingStateChange> changes = new ArrayList<>();
+        int operations = 0;
+        try {
+            for (Map.Entry<String, List<StateOperation>> componentOperations : operationsByComponent.entrySet()) {
+                String componentId = componentOperations.getKey();
+                try {
+                    Map<String, ComponentStateEntry> created = createMissingEntries(
+                        componentId, componentOperations.getValue(), entities);
+                    stateTable.execute(componentId, slot -> {
+                        BatchChanges batch = new BatchChanges();
+                        currentBatch.set(batch);
+                        try {
+                            results.put(componentId,
+                                applyBatch(slot, componentOperations.getValue(), created, transitions));
+                        } finally {
+                            currentBatch.remove();
+                            batch.collect(changes);
+                        }
+                    });
+                    operations += componentOperations.getValue().size();
+                } catch (PartitionUnavailableException e) {
+                    // Checked before anything is applied, the caller routes the component again
+                    log.debug("Skipping batch operations on component {}: {}", componentId, e.getMessage());
+                }
+            }
+        } finally {
+            // One event per pair whose state differs at the end of the batch. The table keeps
+            // what a failing batch applied before the failure, so those changes are published too.
+            for (PendingStateChange change : changes) {
+                dispatchStateChange(change.entry(), change.oldState(), change.operation());
+            }
+        }
+        log.debug("Applied batch of {} operations on {} components, {} state changes",
+            operations, results.size(), changes.size());
+        return results;
+    }
+
+    // Inserts the rows of the microservices that do not hold the component yet, outside its lock
+    private Map<String, ComponentStateEntry> createMissingEntries(
+        String componentId,
+        List<StateOperation> operations,
+        BatchEntities entities
+    ) {
+        Set<String> missing = stateTable.query(componentId, slot -> {
+            Set<String> microserviceIds = new LinkedHashSet<>();
+            for (StateOperation operation : operations) {
+                if (slot.get(ids.existingMicroserviceKey(operation.getMicroserviceId())) == null) {
+                    microserviceIds.add(operation.getMicroserviceId());
+                }
+            }
+            return microserviceIds;
+        });
+        Map<String, ComponentStateEntry> created = new HashMap<>();
+        for (String microserviceId : missing) {
+            created.put(microserviceId, stateTable.insert(newComponentModelService(
+                entities.microservices().get(microserviceId), entities.componentModels().get(componentId))));
+        }
+        return created;
+    }
+
+    private List<ComponentStateEntry> applyBatch(
+        ComponentSlot slot,
+        List<StateOperation> operations,
+        Map<String, ComponentStateEntry> created,
+        TransitionTable transitions
+    ) {
+        Map<String, ComponentStateEntry> touched = new LinkedHashMap<>();
+        // Consecutive writes are coalesced: writers only invalidate each other, the
+        // remaining sharers are invalidated once when the run of writes ends
+        Set<ComponentStateEntry> writers = new LinkedHashSet<>();
+        ComponentStateEntry lastWriter = null;
+
+        for (StateOperation operation : operations) {
+            ComponentStateEntry entry = slot.get(ids.existingMicroserviceKey(operation.getMicroserviceId()));
+            if (entry == null) {
+                ComponentStateEntry inserted = created.get(operation.getMicroserviceId());
+                if (inserted == null) {
+                    // Held the component when the batch started, removed since by deleting the microservice
+                    throw new ModelNotFoundException("Microservice not found: " + operation.getMicroserviceId());
+                }
+                entry = stateTable.adopt(slot, inserted);
+            }
+            touched.putIfAbsent(operation.getMicroserviceId(), entry);
+
+            if (operation.getOperation() == OperationType.WRITE) {
+                applyWrite(slot, entry, transitions, "WRITE");
+                for (ComponentStateEntry writer : writers) {
+                    if (writer != entry) {
+                        applyPeerTransition(writer, entry, OperationType.WRITE, transitions, "WRITE");
+                    }
+                }
+                writers.add(entry);
+                lastWriter = entry;
+            } else {
+                if (lastWriter != null) {
+                    invalidateSharers(slot, lastWriter, writers, transitions);
+                    writers.clear();
+                    lastWriter = null;
+                }
+                applyRead(slot, entry, transitions);
+            }
+        }
+        if (lastWriter != null) {
+            invalidateSharers(slot, lastWriter, writers, transitions);
+        }
+
+        List<ComponentStateEntry> results = new ArrayList<>(touched.size());
+        touched.values().forEach(entry -> results.add(entry.snapshot()));
+        return results;
+    }
+
+    // A bounded staleness reader whose bound has passed no longer counts as SHARED_MINUS
+    private void expireStaleRead(ComponentStateEntry entry) {
+        if (entry.getState() == ComponentState.SHARED_MINUS &&
+            entry.getConsistencyType() == ConsistencyType.BOUNDED_STALENESS &&
+            entry.getStalenessBound() != null &&
+            LocalDateTime.now().isAfter(entry.getStalenessBound())) {
+
+            ComponentState oldState = entry.getState();
+            entry.setState(ComponentState.INVALID);
+            stateTable.markDirty(entry);
+            publishStateChange(entry, oldState, "READ");
+        }
+    }
+
     private void updateFromAuthoritativeSource(
-        ComponentModelServiceEntity entity,
-        ComponentModelServiceEntity authSource,
+        ComponentStateEntry entry,
+        ComponentStateEntry authSource,
         ComponentState newState
     ) {
-        ComponentState oldState = entity.getState();
-        entity.setState(newState);
-        entity.setVersion(authSource.getVersion());
-        entity.setTimestamp(LocalDateTime.now());
-        
-        if (entity.getConsistencyType() == ConsistencyType.BOUNDED_STALENESS) {
-            entity.setStalenessBound(LocalDateTime.now().plusSeconds(30));
-        }
-        
-        componentModelServiceRepo.save(entity);
-        publishStateChange(entity, oldState, "READ");
-    }
-    
-    public ComponentModelServiceEntity findAuthoritativeSource(String componentId) {
-        // First try to find a MODIFIED version
-        Optional<ComponentModelServiceEntity> modified = componentModelServiceRepo
-            .findByComponentModelIdAndState(componentId, ComponentState.MODIFIED)
-            .stream()
-            .max(Comparator.comparing(ComponentModelServiceEntity::getVersion));
-        
-        if (modified.isPresent()) {
-            return modified.get();
-        }
-        
-        // If no MODIFIED version exists, look for SHARED_PLUS
-        return componentModelServiceRepo
-            .findByComponentModelIdAndState(componentId, ComponentState.SHARED_PLUS)
-            .stream()
-            .max(Comparator.comparing(ComponentModelServiceEntity::getVersion))
-            .orElse(null);
-    }
-    
+        ComponentState oldState = entry.getState();
+        entry.setState(newState);
+        entry.setVersion(authSource.getVersion());
+        entry.setTimestamp(LocalDateTime.now());
+
+        if (entry.getConsistencyType() == ConsistencyType.BOUNDED_STALENESS) {
+            entry.setStalenessBound(LocalDateTime.now().plusSeconds(30));
+            stalenessTimer.schedule(entry);
+        }
+
+        stateTable.markDirty(entry);
+        publishStateChange(entry, oldState, "READ");
+    }
+
+    // Null for a component without a source and for one that does not exist
+    public ComponentStateEntry findAuthoritativeSource(String componentId) {
+        return stateTable.queryIfExists(componentId, slot -> {
+            ComponentStateEntry source = findAuthoritativeSource(slot);
+            return source != null ? source.snapshot() : null;
+        });
+    }
+
+    public Map<String, ComponentStateEntry> findAuthoritativeSources(Collection<String> componentIds) {
+        Map<String, ComponentStateEntry> found = componentRouter.routeAll(componentIds,
+            this::findLocalAuthoritativeSources,
+            (nodeUrl, remoteIds) -> clusterClient.post(nodeUrl, "/api/cluster/authoritative-sources", remoteIds, SOURCES));
+        Map<String, ComponentStateEntry> sources = new LinkedHashMap<>();
+        for (String componentId : componentIds) {
+            ComponentStateEntry source = found.get(componentId);
+            if (source != null) {
+                sources.put(componentId, source);
+            }
+        }
+        return sources;
+    }
+
+    // Maps every component to its source, or to null if it has none
+    public Map<String, ComponentStateEntry> findLocalAuthoritativeSources(Collection<String> componentIds) {
+        stateTable.preload(componentIds);
+        Map<String, ComponentStateEntry> sources = new LinkedHashMap<>();
+        for (String componentId : componentIds) {
+            sources.put(componentId, findAuthoritativeSource(componentId));
+        }
+        return sources;
+    }
+
+    private ComponentStateEntry findAuthoritativeSource(ComponentSlot slot) {
+        // The slot tracks the highest MODIFIED version, falling back to SHARED_PLUS
+        return slot.getOwner();
+    }
+
+    public int synchronizeSharedMinusSharers(String componentId) {
+        return publishingChanges(() -> stateTable.query(componentId, slot -> {
+            ComponentStateEntry authoritativeSource = findAuthoritativeSource(slot);
+            if (authoritativeSource == null) {
+                return 0;
+            }
+
+            int refreshed = 0;
+            for (ComponentStateEntry entry : slot.entries()) {
+                if (entry.getState() == ComponentState.SHARED_MINUS
+                    && authoritativeSource.getVersion() > entry.getVersion()) {
+                    log.debug("Updating component {} in microservice {} from version {} to {}",
+                        componentId, entry.getMicroserviceId(), entry.getVersion(), authoritativeSource.getVersion());
+
+                    entry.setVersion(authoritativeSource.getVersion());
+                    entry.setState(ComponentState.SHARED_PLUS);
+                    entry.setTimestamp(LocalDateTime.now());
+                    stateTable.markDirty(entry);
+                    publishStateChange(entry, ComponentState.SHARED_MINUS, "SYNC");
+                    refreshed++;
+                }
+            }
+            return refreshed;
+        }));
+    }
+
+    public void expireStalenessBound(ComponentStateEntry expired) {
+        publishingChanges(() -> stateTable.query(expired.getComponentKey(), slot -> {
+            ComponentStateEntry entry = slot.get(expired.getMicroserviceKey());
+            if (entry != expired || entry.getStalenessBound() == null || entry.getState() == ComponentState.INVALID) {
+                return null;
+            }
+            if (LocalDateTime.now().isBefore(entry.getStalenessBound())) {
+                // The bound was extended after this deadline was queued
+                stalenessTimer.schedule(entry);
+                return null;
+            }
+
+            log.debug("Component {} in microservice {} has exceeded staleness bound, marking as INVALID",
+                entry.getComponentId(), entry.getMicroserviceId());
+            ComponentState oldState = entry.getState();
+            entry.setState(ComponentState.INVALID);
+            stateTable.markDirty(entry);
+            publishStateChange(entry, oldState, "STALENESS_EXPIRED");
+            return null;
+        }));
+    }
+
+    // Every write produces a new version, so it is published even when the writer already held MODIFIED
+    private static boolean isPublished(ComponentState oldState, ComponentStateEntry entry) {
+        return oldState != entry.getState() || entry.getState() == ComponentState.MODIFIED;
+    }
+
     private void publishStateChange(
-        ComponentModelServiceEntity entity,
+        ComponentStateEntry entry,
+        ComponentState oldState,
+        String operation
+    ) {
+        BatchChanges batch = currentBatch.get();
+        List<PendingStateChange> changes = currentChanges.get();
+        if (batch != null) {
+            batch.record(entry, oldState, operation);
+        } else if (changes != null) {
+            if (isPublished(oldState, entry)) {
+                changes.add(new PendingStateChange(entry.snapshot(), oldState, operation));
+            }
+        } else {
+            dispatchStateChange(entry, oldState, operation);
+        }
+    }
+
+    /**
+     * Runs an operation that changes states under a component's lock and publishes its
+     * changes once the lock is released, so a full event buffer never stalls the component.
+     */
+    private <T> T publishingChanges(Supplier<T> operation) {
+        List<PendingStateChange> outer = currentChanges.get();
+        List<PendingStateChange> changes = new ArrayList<>();
+        currentChanges.set(changes);
+        try {
+            return operation.get();
+        } finally {
+            if (outer != null) {
+                currentChanges.set(outer);
+            } else {
+                currentChanges.remove();
+            }
+            // Whatever was applied before a failure is in the table, so it is published as well
+            for (PendingStateChange change : changes) {
+                dispatchStateChange(change.entry(), change.oldState(), change.operation());
+            }
+        }
+    }
+
+    private void dispatchStateChange(
+        ComponentStateEntry entry,
         ComponentState oldState,
         String operation
     ) {
-        if (oldState != entity.getState()) {
+        if (isPublished(oldState, entry)) {
             log.debug("Publishing state change event: {} -> {} for component {} in microservice {}",
                 oldState,
-                entity.getState(),
-                entity.getComponentModel().getId(),
-                entity.getMicroservice().getId());
-                
-            eventPublisher.publishEvent(new StateChangeEvent(
+                entry.getState(),
+                entry.getComponentId(),
+                entry.getMicroserviceId());
+
+            stateEventBus.publish(new StateChangeEvent(
                 this,
-                entity.getMicroservice().getId(),
-                entity.getComponentModel().getId(),
+                entry.getMicroserviceId(),
+                entry.getComponentId(),
                 oldState,
-                entity.getState(),
-                entity.getVersion()
+                entry.getState(),
+                entry.getVersion(),
+                operation
             ));
 
             // Record the transition in metrics
             metricsService.recordStateTransition(
-                entity.getComponentModel().getId(),
-                entity.getMicroservice().getId(),
+                entry.getComponentKey(),
+                entry.getMicroserviceKey(),
                 oldState,
-                entity.getState(),
+                entry.getState(),
                 operation
             );
         }
     }
 
-    public ComponentModelServiceEntity getComponentState(String microserviceId, String componentId) {
-        return componentModelServiceRepo
-            .findByMicroserviceIdAndComponentModelId(microserviceId, componentId)
-            .orElse(null);
-    }
-    
-    private ComponentModelServiceEntity getOrCreateComponentModelService(String microserviceId, String componentId) {
-        return componentModelServiceRepo
-            .findByMicroserviceIdAndComponentModelId(microserviceId, componentId)
-            .orElseGet(() -> {
-                MicroserviceEntity microservice = microserviceRepo.findById(microserviceId)
-                    .orElseThrow(() -> new EntityNotFoundException("Microservice not found"));
-                ComponentModelEntity componentModel = componentModelRepo.findById(componentId)
-                    .orElseThrow(() -> new EntityNotFoundException("Component model not found"));
-                
-                ComponentModelServiceEntity newEntity = new ComponentModelServiceEntity();
-                newEntity.setMicroservice(microservice);
-                newEntity.setComponentModel(componentModel);
-                newEntity.setState(ComponentState.INVALID);
-                newEntity.setVersion(0L);
-                newEntity.setTimestamp(LocalDateTime.now());
-                newEntity.setConsistencyType(ConsistencyType.EVENTUAL);
-                
-                return componentModelServiceRepo.save(newEntity);
+    public ComponentStateEntry getComponentState(String microserviceId, String componentId) {
+        return componentRouter.route(componentId,
+            () -> stateTable.query(componentId, slot -> {
+                ComponentStateEntry entry = slot.get(ids.existingMicroserviceKey(microserviceId));
+                return entry != null ? entry.snapshot() : null;
+            }),
+            nodeUrl -> clusterClient.post(nodeUrl, "/api/cluster/component-states", List.of(componentId), STATES)
+                .get(componentId).get(microserviceId));
+    }
+
+    // Snapshots of every microservice's entry per component
+    public Map<String, Map<String, ComponentStateEntry>> getComponentStates(Collection<String> componentIds) {
+        return componentRouter.routeAll(componentIds, this::getLocalComponentStates,
+            (nodeUrl, remoteIds) -> clusterClient.post(nodeUrl, "/api/cluster/component-states", remoteIds, STATES));
+    }
+
+    // Loads the components this node has not loaded yet with one query; a component that
+    // does not exist has no holders
+    public Map<String, Map<String, ComponentStateEntry>> getLocalComponentStates(Collection<String> componentIds) {
+        stateTable.preload(componentIds);
+        Map<String, Map<String, ComponentStateEntry>> states = new HashMap<>();
+        for (String componentId : componentIds) {
+            Map<String, ComponentStateEntry> entries = stateTable.queryIfExists(componentId, slot -> {
+                Map<String, ComponentStateEntry> snapshots = new HashMap<>();
+                for (ComponentStateEntry entry : slot.entries()) {
+                    snapshots.put(entry.getMicroserviceId(), entry.snapshot());
+                }
+                return snapshots;
             });
+            states.put(componentId, entries != null ? entries : new HashMap<>());
+        }
+        return states;
+    }
+
+    public ComponentStateEntry updateConsistencyType(
+        String microserviceId,
+        String componentId,
+        ConsistencyType consistencyType
+    ) {
+        return stateTable.query(componentId, slot -> {
+            ComponentStateEntry entry = slot.get(ids.existingMicroserviceKey(microserviceId));
+            if (entry == null) {
+                return null;
+            }
+            slot.changeConsistencyType(entry, consistencyType);
+            stateTable.markDirty(entry);
+            return entry.snapshot();
+        });
+    }
+
+    // Must be called outside query/execute, the returned entry is not part of the table yet
+    private ComponentStateEntry createComponentModelService(String microserviceId, String componentId) {
+        MicroserviceEntity microservice = microserviceRepo.findById(microserviceId)
+            .orElseThrow(() -> new ModelNotFoundException("Microservice not found: " + microserviceId));
+        ComponentModelEntity componentModel = componentModelRepo.findById(componentId)
+            .orElseThrow(() -> new ModelNotFoundException("Component model not found: " + componentId));
+
+        return stateTable.insert(newComponentModelService(microservice, componentModel));
+    }
+
+    private static ComponentModelServiceEntity newComponentModelService(
+        MicroserviceEntity microservice,
+        ComponentModelEntity componentModel
+    ) {
+        ComponentModelServiceEntity newEntity = new ComponentModelServiceEntity();
+        newEntity.setMicroservice(microservice);
+        newEntity.setComponentModel(componentModel);
+        newEntity.setState(ComponentState.INVALID);
+        newEntity.setVersion(0L);
+        newEntity.setTimestamp(LocalDateTime.now());
+        newEntity.setConsistencyType(ConsistencyType.EVENTUAL);
+        return newEntity;
+    }
+
+    // Collects the transitions of one component during a batch, keeping the first
+    // old state and the last operation per pair
+    private static class BatchChanges {
+        private final Map<ComponentStateEntry, PendingStateChange> changes = new LinkedHashMap<>();
+
+        void record(ComponentStateEntry entry, ComponentState oldState, String operation) {
+            PendingStateChange previous = changes.get(entry);
+            changes.put(entry, new PendingStateChange(
+                entry, previous != null ? previous.oldState() : oldState, operation));
+        }
+
+        void collect(List<PendingStateChange> target) {
+            for (PendingStateChange change : changes.values()) {
+                if (isPublished(change.oldState(), change.entry())) {
+                    target.add(new PendingStateChange(change.entry().snapshot(), change.oldState(), change.operation()));
+                }
+            }
+        }
+    }
+
+    private record PendingStateChange(ComponentStateEntry entry, ComponentState oldState, String operation) {
+    }
+
+    private record BatchEntities(
+        Map<String, MicroserviceEntity> microservices,
+        Map<String, ComponentModelEntity> componentModels
+    ) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,194 @@
+package org.consistency.megamodel.service;
+
+import org.consistency.megamodel.model.ComponentState;
+import org.consistency.megamodel.state.IdRegistry;
+
+import java.lang.invoke.VarHandle;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-capacity log of recent transitions and operations kept in preallocated parallel arrays.
+ * Writers claim a sequence and publish their slot through a per-slot seqlock, so recording
+ * allocates nothing; components and microservices are stored as {@link IdRegistry} keys and
+ * only resolved to their ids when read. Operations may name ids that were never interned,
+ * those are kept as given instead of being interned. Readers copy the slots out and skip any slot that was
+ * overwritten while being copied.
+ */
+class TransitionLog {
+    static final byte TRANSITION = 0;
+    static final byte OPERATION = 1;
+
+    private static final ComponentState[] STATES = ComponentState.values();
+    private static final byte NO_STATE = -1;
+    private static final int NO_KEY = -1;
+
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong();
+    // 2 * sequence + 1 while the slot is written, 2 * sequence + 2 once it is complete
+    private final AtomicLongArray versions;
+    private final byte[] types;
+    private final IdRegistry ids;
+    private final int[] componentKeys;
+    private final int[] microserviceKeys;
+    private final String[] componentIds;
+    private final String[] microserviceIds;
+    private final String[] operations;
+    private final String[] details;
+    private final byte[] fromStates;
+    private final byte[] toStates;
+    private final long[] epochNanos;
+
+    private final long epochNanosOffset = System.currentTimeMillis() * 1_000_000L - System.nanoTime();
+
+    TransitionLog(int requestedCapacity, IdRegistry ids) {
+        this.ids = ids;
+        int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        mask = capacity - 1;
+        versions = new AtomicLongArray(capacity);
+        types = new byte[capacity];
+        componentKeys = new int[capacity];
+        microserviceKeys = new int[capacity];
+        componentIds = new String[capacity];
+        microserviceIds = new String[capacity];
+        operations = new String[capacity];
+        details = new String[capacity];
+        fromStates = new byte[capacity];
+        toStates = new byte[capacity];
+        epochNanos = new long[capacity];
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    void recordTransition(
+        int componentKey,
+        int microserviceKey,
+        ComponentState fromState,
+        ComponentState toState,
+        String operation
+    ) {
+        write(TRANSITION, componentKey, null, microserviceKey, null, operation, null,
+            ordinal(fromState), ordinal(toState));
+    }
+
+    void recordOperation(String componentId, String microserviceId, String operation, String detail) {
+        int componentKey = componentId != null ? ids.existingComponentKey(componentId) : NO_KEY;
+        int microserviceKey = microserviceId != null ? ids.existingMicroserviceKey(microserviceId) : NO_KEY;
+        write(OPERATION,
+            componentKey, componentKey == NO_KEY ? componentId : null,
+            microserviceKey, microserviceKey == NO_KEY ? microserviceId : null,
+            operation, detail, NO_STATE, NO_STATE);
+    }
+
+    private void write(
+        byte type,
+        int componentKey,
+        String componentId,
+        int microserviceKey,
+        String microserviceId,
+        String operation,
+        String detail,
+        byte fromState,
+        byte toState
+    ) {
+        long sequence = cursor.getAndIncrement();
+        int index = (int) sequence & mask;
+        versions.set(index, 2 * sequence + 1);
+        VarHandle.storeStoreFence();
+
+        types[index] = type;
+        componentKeys[index] = componentKey;
+        componentIds[index] = componentId;
+        microserviceKeys[index] = microserviceKey;
+        microserviceIds[index] = microserviceId;
+        operations[index] = operation;
+        details[index] = detail;
+        fromStates[index] = fromState;
+        toStates[index] = toState;
+        epochNanos[index] = epochNanosOffset + System.nanoTime();
+
+        versions.set(index, 2 * sequence + 2);
+    }
+
+    private static byte ordinal(ComponentState state) {
+        return state != null ? (byte) state.ordinal() : NO_STATE;
+    }
+
+    /**
+     * Copies up to {@code limit} of the most recent entries, oldest first. With
+     * {@code transitionsOnly} set, operation entries are skipped and do not count
+     * towards the limit.
+     */
+    List<Entry> snapshot(int limit, boolean transitionsOnly) {
+        // Requests pass the limit through unchecked, the log never holds more than its capacity
+        int max = Math.max(0, Math.min(limit, capacity()));
+        long end = cursor.get();
+        long start = Math.max(0, end - capacity());
+        List<Entry> newestFirst = new ArrayList<>(max);
+        for (long sequence = end - 1; sequence >= start && newestFirst.size() < max; sequence--) {
+            Entry entry = read(sequence);
+            if (entry != null && (!transitionsOnly || entry.type() == TRANSITION)) {
+                newestFirst.add(entry);
+            }
+        }
+        List<Entry> oldestFirst = new ArrayList<>(newestFirst.size());
+        for (int i = newestFirst.size() - 1; i >= 0; i--) {
+            oldestFirst.add(newestFirst.get(i));
+        }
+        return oldestFirst;
+    }
+
+    private Entry read(long sequence) {
+        int index = (int) sequence & mask;
+        long version = versions.get(index);
+        if (version != 2 * sequence + 2) {
+            // Still being written, or already reused for a later sequence
+            return null;
+        }
+        byte type = types[index];
+        int componentKey = componentKeys[index];
+        String componentId = componentIds[index];
+        int microserviceKey = microserviceKeys[index];
+        String microserviceId = microserviceIds[index];
+        String operation = operations[index];
+        String detail = details[index];
+        byte fromState = fromStates[index];
+        byte toState = toStates[index];
+        long nanos = epochNanos[index];
+        VarHandle.acquireFence();
+        if (versions.get(index) != version) {
+            return null;
+        }
+        return new Entry(type,
+            componentKey != NO_KEY ? ids.componentId(componentKey) : componentId,
+            microserviceKey != NO_KEY ? ids.microserviceId(microserviceKey) : microserviceId,
+            operation, detail, state(fromState), state(toState), nanos);
+    }
+
+    private static ComponentState state(byte ordinal) {
+        return ordinal >= 0 ? STATES[ordinal] : null;
+    }
+
+    record Entry(
+        byte type,
+        String componentId,
+        String microserviceId,
+        String operation,
+        String details,
+        ComponentState fromState,
+        ComponentState toState,
+        long epochNanos
+    ) {
+        LocalDateTime timestamp() {
+            Instant instant = Instant.ofEpochSecond(0, epochNanos);
+            return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.consistency.megamodel.service;
+
+import org.consistency.megamodel.model.ComponentState;
+import org.consistency.megamodel.model.ConsistencyType;
+import org.consistency.megamodel.model.OperationType;
+
+import java.util.Arrays;
+
+/**
+ * Immutable transition function of a coherence protocol, stored densely as
+ * {@code [ConsistencyType][ComponentState][OperationType][Role]} so a transition is a single
+ * array load. The actor is the microservice performing the operation, peers are the other
+ * holders of the component. Side effects that depend on time or on other entries (versions,
+ * staleness bounds, finding the authoritative source) stay in {@link StateTransitionService}.
+ */
+public final class TransitionTable {
+    public enum Role { ACTOR, PEER }
+
+    private static final ComponentState[] STATES = ComponentState.values();
+    private static final int STATE_COUNT = STATES.length;
+    private static final int OPERATION_COUNT = OperationType.values().length;
+    private static final int ROLE_COUNT = Role.values().length;
+    private static final int TYPE_COUNT = ConsistencyType.values().length;
+
+    private final byte[] next;
+    // Per consistency type, whether the operation can change a peer at all
+    private final boolean[] peersChangeOnWrite;
+    private final boolean peersChangeOnRead;
+
+    private TransitionTable(byte[] next) {
+        this.next = next;
+        peersChangeOnWrite = new boolean[TYPE_COUNT];
+        boolean onRead = false;
+        for (ConsistencyType type : ConsistencyType.values()) {
+            for (ComponentState state : STATES) {
+                peersChangeOnWrite[type.ordinal()] |= next[index(type, state, OperationType.WRITE, Role.PEER)] != state.ordinal();
+                onRead |= next[index(type, state, OperationType.READ, Role.PEER)] != state.ordinal();
+            }
+        }
+        peersChangeOnRead = onRead;
+    }
+
+    private static int index(ConsistencyType type, ComponentState state, OperationType operation, Role role) {
+        return ((type.ordinal() * STATE_COUNT + state.ordinal()) * OPERATION_COUNT + operation.ordinal()) * ROLE_COUNT
+            + role.ordinal();
+    }
+
+    public ComponentState next(ConsistencyType type, ComponentState state, OperationType operation, Role role) {
+        return STATES[next[index(type, state, operation, role)]];
+    }
+
+    public boolean peersChangeOnWrite(ConsistencyType type) {
+        return peersChangeOnWrite[type.ordinal()];
+    }
+
+    public boolean peersChangeOnRead() {
+        return peersChangeOnRead;
+    }
+
+    /**
+     * Whether at most one holder of a component can be MODIFIED: a write moves every MODIFIED
+     * peer out of MODIFIED, and a read never moves anybody into it.
+     */
+    public boolean keepsSingleWriter() {
+        for (ConsistencyType type : ConsistencyType.values()) {
+            if (next(type, ComponentState.MODIFIED, OperationType.WRITE, Role.PEER) == ComponentState.MODIFIED) {
+                return false;
+            }
+            for (ComponentState state : STATES) {
+                if (state != ComponentState.MODIFIED
+                    && (next(type, state, OperationType.READ, Role.ACTOR) == ComponentState.MODIFIED
+                        || next(type, state, OperationType.READ, Role.PEER) == ComponentState.MODIFIED
+                        || next(type, state, OperationType.WRITE, Role.PEER) == ComponentState.MODIFIED)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // The same table, except that the actor of the operation always ends in the target state
+    public TransitionTable withActorTarget(OperationType operation, ComponentState target) {
+        Builder builder = new Builder(next.clone());
+        for (ConsistencyType type : ConsistencyType.values()) {
+            for (ComponentState state : STATES) {
+                builder.set(type, state, operation, Role.ACTOR, target);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Starts from the identity table, in which no operation changes any state.
+     */
+    public static Builder builder() {
+        byte[] identity = new byte[TYPE_COUNT * STATE_COUNT * OPERATION_COUNT * ROLE_COUNT];
+        for (ConsistencyType type : ConsistencyType.values()) {
+            for (ComponentState state : STATES) {
+                for (OperationType operation : OperationType.values()) {
+                    for (Role role : Role.values()) {
+                        identity[index(type, state, operation, role)] = (byte) state.ordinal();
+                    }
+                }
+            }
+        }
+        return new Builder(identity);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof TransitionTable table && Arrays.equals(next, table.next);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(next);
+    }
+
+    public static final class Builder {
+        private final byte[] next;
+
+        private Builder(byte[] next) {
+            this.next = next;
+        }
+
+        public Builder set(
+            ConsistencyType type,
+            ComponentState state,
+            OperationType operation,
+            Role role,
+            ComponentState target
+        ) {
+            next[index(type, state, operation, role)] = (byte) target.ordinal();
+            return this;
+        }
+
+        public TransitionTable build() {
+            return new TransitionTable(next.clone());
+        }
+    }
+}
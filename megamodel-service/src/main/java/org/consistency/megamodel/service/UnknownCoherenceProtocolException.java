@@ -0,0 +1,11 @@
+package org.consistency.megamodel.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class UnknownCoherenceProtocolException extends IllegalArgumentException {
+    public UnknownCoherenceProtocolException(String name) {
+        super("Unknown coherence protocol: " + name);
+    }
+}
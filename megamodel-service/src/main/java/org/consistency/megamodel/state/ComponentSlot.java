@@ -0,0 +1,158 @@
+package org.consistency.megamodel.state;
+
+import org.consistency.megamodel.model.ComponentState;
+import org.consistency.megamodel.model.ConsistencyType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All in-memory state rows of one component, indexed by microservice key, together with
+ * a sharer directory grouping the holders of the component by consistency type and
+ * the current authoritative source. Only accessed while holding the lock of the owning shard.
+ */
+public class ComponentSlot {
+    private final String componentId;
+    private final int componentKey;
+    private final long fenceToken;
+    // Indexed by microservice key; the list keeps the entries in insertion order for iteration
+    private ComponentStateEntry[] byMicroservice = new ComponentStateEntry[8];
+    private final List<ComponentStateEntry> entries = new ArrayList<>();
+    private final Map<ConsistencyType, List<ComponentStateEntry>> sharers = new EnumMap<>(ConsistencyType.class);
+    // Highest-version MODIFIED holder, or highest-version SHARED_PLUS holder when nobody holds MODIFIED
+    private ComponentStateEntry owner;
+    private long maxVersion;
+
+    ComponentSlot(String componentId, int componentKey, long fenceToken) {
+        this.componentId = componentId;
+        this.componentKey = componentKey;
+        this.fenceToken = fenceToken;
+        for (ConsistencyType type : ConsistencyType.values()) {
+            sharers.put(type, new ArrayList<>());
+        }
+    }
+
+    public String getComponentId() {
+        return componentId;
+    }
+
+    public int getComponentKey() {
+        return componentKey;
+    }
+
+    public ComponentStateEntry get(int microserviceKey) {
+        return microserviceKey >= 0 && microserviceKey < byMicroservice.length ? byMicroservice[microserviceKey] : null;
+    }
+
+    public Collection<ComponentStateEntry> entries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public ComponentStateEntry getOwner() {
+        return owner;
+    }
+
+    public long getMaxVersion() {
+        return maxVersion;
+    }
+
+    public List<ComponentStateEntry> sharers(ConsistencyType consistencyType) {
+        return Collections.unmodifiableList(sharers.get(consistencyType));
+    }
+
+    public void changeConsistencyType(ComponentStateEntry entry, ConsistencyType consistencyType) {
+        if (entry.getConsistencyType() != null) {
+            sharers.get(entry.getConsistencyType()).remove(entry);
+        }
+        entry.setConsistencyType(consistencyType);
+        if (consistencyType != null) {
+            sharers.get(consistencyType).add(entry);
+        }
+    }
+
+    // The entry must be bound to the registry
+    void add(ComponentStateEntry entry) {
+        int microserviceKey = entry.getMicroserviceKey();
+        if (microserviceKey >= byMicroservice.length) {
+            byMicroservice = Arrays.copyOf(byMicroservice, Math.max(byMicroservice.length * 2, microserviceKey + 1));
+        }
+        ComponentStateEntry previous = byMicroservice[microserviceKey];
+        byMicroservice[microserviceKey] = entry;
+        if (previous != null) {
+            entries.set(entries.indexOf(previous), entry);
+        } else {
+            entries.add(entry);
+        }
+        if (previous != null && previous.getConsistencyType() != null) {
+            sharers.get(previous.getConsistencyType()).remove(previous);
+        }
+        if (entry.getConsistencyType() != null) {
+            sharers.get(entry.getConsistencyType()).add(entry);
+        }
+        entry.slot = this;
+        entry.fenceToken = fenceToken;
+        if (previous != null && previous == owner) {
+            recomputeOwner();
+        } else {
+            transitioned(entry);
+        }
+    }
+
+    ComponentStateEntry remove(int microserviceKey) {
+        ComponentStateEntry removed = get(microserviceKey);
+        if (removed != null) {
+            byMicroservice[microserviceKey] = null;
+            entries.remove(removed);
+        }
+        if (removed != null && removed.getConsistencyType() != null) {
+            sharers.get(removed.getConsistencyType()).remove(removed);
+        }
+        if (removed != null && removed == owner) {
+            recomputeOwner();
+        }
+        return removed;
+    }
+
+    // Keeps the owner record current after a change of the entry's state or version
+    void transitioned(ComponentStateEntry entry) {
+        if (entry.getVersion() != null && entry.getVersion() > maxVersion) {
+            maxVersion = entry.getVersion();
+        }
+        if (!isOwnerCandidate(entry)) {
+            if (entry == owner) {
+                recomputeOwner();
+            }
+        } else if (owner == null || outranks(entry, owner)) {
+            owner = entry;
+        } else if (entry == owner) {
+            recomputeOwner();
+        }
+    }
+
+    private void recomputeOwner() {
+        owner = null;
+        for (ComponentStateEntry entry : entries) {
+            if (isOwnerCandidate(entry) && (owner == null || outranks(entry, owner))) {
+                owner = entry;
+            }
+        }
+    }
+
+    private static boolean isOwnerCandidate(ComponentStateEntry entry) {
+        return entry.getState() == ComponentState.MODIFIED || entry.getState() == ComponentState.SHARED_PLUS;
+    }
+
+    private static boolean outranks(ComponentStateEntry candidate, ComponentStateEntry current) {
+        boolean candidateModified = candidate.getState() == ComponentState.MODIFIED;
+        boolean currentModified = current.getState() == ComponentState.MODIFIED;
+        if (candidateModified != currentModified) {
+            return candidateModified;
+        }
+        return candidate.getVersion() > current.getVersion();
+    }
+}
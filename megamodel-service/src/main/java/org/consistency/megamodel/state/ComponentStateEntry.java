@@ -0,0 +1,116 @@
+package org.consistency.megamodel.state;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.consistency.megamodel.model.ComponentModelServiceEntity;
+import org.consistency.megamodel.model.ComponentState;
+import org.consistency.megamodel.model.ConsistencyType;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ScheduledFuture;
+
+@Getter
+@Setter
+public class ComponentStateEntry {
+    private final Long id;
+    // Replaced by the registry's instance when the entry joins the state table
+    @Setter(AccessLevel.NONE)
+    private String microserviceId;
+    @Setter(AccessLevel.NONE)
+    private String componentId;
+    // IdRegistry keys, -1 until the entry joins the state table
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    private int microserviceKey = -1;
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    private int componentKey = -1;
+    private ComponentState state;
+    @Setter(AccessLevel.PACKAGE)
+    private ConsistencyType consistencyType;
+    private Long version;
+    private LocalDateTime timestamp;
+    private LocalDateTime stalenessBound;
+    // WriteFence token of the ownership the entry was loaded under
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    long fenceToken;
+
+    // Guarded by the lock of the shard owning componentId
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    boolean dirty;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    ScheduledFuture<?> stalenessTimer;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    ComponentSlot slot;
+
+    // State and consistency type as currently reflected in StateGauges
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    ComponentState countedState;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    ConsistencyType countedConsistencyType;
+
+    // Entries also travel between cluster nodes as JSON
+    @JsonCreator
+    public ComponentStateEntry(
+        Long id,
+        String microserviceId,
+        String componentId,
+        ComponentState state,
+        ConsistencyType consistencyType,
+        Long version,
+        LocalDateTime timestamp,
+        LocalDateTime stalenessBound
+    ) {
+        this.id = id;
+        this.microserviceId = microserviceId;
+        this.componentId = componentId;
+        this.state = state;
+        this.consistencyType = consistencyType;
+        this.version = version;
+        this.timestamp = timestamp;
+        this.stalenessBound = stalenessBound;
+        this.countedState = state;
+        this.countedConsistencyType = consistencyType;
+    }
+
+    public static ComponentStateEntry from(ComponentModelServiceEntity entity) {
+        return new ComponentStateEntry(
+            entity.getId(),
+            entity.getMicroservice().getId(),
+            entity.getComponentModel().getId(),
+            entity.getState(),
+            entity.getConsistencyType(),
+            entity.getVersion(),
+            entity.getTimestamp(),
+            entity.getStalenessBound()
+        );
+    }
+
+    void bind(IdRegistry ids) {
+        microserviceKey = ids.microserviceKey(microserviceId);
+        componentKey = ids.componentKey(componentId);
+        microserviceId = ids.microserviceId(microserviceKey);
+        componentId = ids.componentId(componentKey);
+    }
+
+    public ComponentStateEntry snapshot() {
+        ComponentStateEntry snapshot = new ComponentStateEntry(
+            id, microserviceId, componentId, state, consistencyType, version, timestamp, stalenessBound);
+        snapshot.microserviceKey = microserviceKey;
+        snapshot.componentKey = componentKey;
+        snapshot.fenceToken = fenceToken;
+        return snapshot;
+    }
+}
@@ -0,0 +1,13 @@
+package org.consistency.megamodel.state;
+
+/**
+ * When a state change has to be in the database relative to the call that made it.
+ */
+public enum DurabilityMode {
+    // The calling thread flushes before the call returns
+    SYNC,
+    // The call waits for the next flush, which the flusher thread shares between all waiting calls
+    GROUP_COMMIT,
+    // The call returns immediately; changes are flushed on the interval or once enough are pending
+    ASYNC
+}
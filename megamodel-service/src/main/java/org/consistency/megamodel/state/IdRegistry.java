@@ -0,0 +1,81 @@
+package org.consistency.megamodel.state;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns microservice and component ids into dense int keys, one key space each. String
+ * ids are translated once where a request enters the state engine; the state table, the
+ * gauges and the transition log index arrays by key and resolve the string only for output.
+ * Every translation returns the same String instance for an id, so entries and events share
+ * it instead of holding copies. Keys are never reused: an id keeps its key after the
+ * microservice or component is deleted, so a key space grows with the distinct ids seen.
+ */
+@Component
+public class IdRegistry {
+    private final KeySpace microservices = new KeySpace();
+    private final KeySpace components = new KeySpace();
+
+    public int microserviceKey(String microserviceId) {
+        return microservices.intern(microserviceId);
+    }
+
+    public int componentKey(String componentId) {
+        return components.intern(componentId);
+    }
+
+    // -1 for an id that was never interned, without interning it
+    public int existingMicroserviceKey(String microserviceId) {
+        return microservices.find(microserviceId);
+    }
+
+    public int existingComponentKey(String componentId) {
+        return components.find(componentId);
+    }
+
+    public String microserviceId(int key) {
+        return microservices.resolve(key);
+    }
+
+    public String componentId(int key) {
+        return components.resolve(key);
+    }
+
+    private static final class KeySpace {
+        private final ConcurrentHashMap<String, Integer> keys = new ConcurrentHashMap<>();
+        // Written under the monitor, read without it: a key is only handed out after its id is stored
+        private volatile String[] ids = new String[64];
+        private int size;
+
+        int intern(String id) {
+            Integer key = keys.get(id);
+            return key != null ? key : add(id);
+        }
+
+        private synchronized int add(String id) {
+            Integer key = keys.get(id);
+            if (key != null) {
+                return key;
+            }
+            String[] current = ids;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+            }
+            current[size] = id;
+            ids = current;
+            keys.put(id, size);
+            return size++;
+        }
+
+        int find(String id) {
+            Integer key = keys.get(id);
+            return key != null ? key : -1;
+        }
+
+        String resolve(int key) {
+            return ids[key];
+        }
+    }
+}
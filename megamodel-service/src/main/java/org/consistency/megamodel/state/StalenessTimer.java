@@ -0,0 +1,74 @@
+package org.consistency.megamodel.state;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Fires at the staleness bound of each BOUNDED_STALENESS row instead of polling for
+ * expired rows. Deadlines live in the executor's priority queue; rescheduling or
+ * clearing a bound cancels the previous deadline of the row.
+ */
+@Slf4j
+@Component
+public class StalenessTimer {
+    private final ScheduledThreadPoolExecutor executor;
+    private volatile Consumer<ComponentStateEntry> expiryHandler = entry -> { };
+
+    public StalenessTimer() {
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "staleness-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    public void onExpiry(Consumer<ComponentStateEntry> handler) {
+        this.expiryHandler = handler;
+    }
+
+    // Must be called while holding the lock of the entry's shard
+    public void schedule(ComponentStateEntry entry) {
+        cancel(entry);
+        LocalDateTime bound = entry.getStalenessBound();
+        if (bound == null) {
+            return;
+        }
+        long delayNanos = Math.max(0, Duration.between(LocalDateTime.now(), bound).toNanos());
+        entry.stalenessTimer = executor.schedule(() -> expire(entry), delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Must be called while holding the lock of the entry's shard
+    public void cancel(ComponentStateEntry entry) {
+        if (entry.stalenessTimer != null) {
+            entry.stalenessTimer.cancel(false);
+            entry.stalenessTimer = null;
+        }
+    }
+
+    public int pendingDeadlines() {
+        return executor.getQueue().size();
+    }
+
+    private void expire(ComponentStateEntry entry) {
+        try {
+            expiryHandler.accept(entry);
+        } catch (Exception e) {
+            log.error("Error expiring staleness bound of component {} in microservice {}",
+                entry.getComponentId(), entry.getMicroserviceId(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
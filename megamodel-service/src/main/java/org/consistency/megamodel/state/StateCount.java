@@ -0,0 +1,7 @@
+package org.consistency.megamodel.state;
+
+import org.consistency.megamodel.model.ComponentState;
+import org.consistency.megamodel.model.ConsistencyType;
+
+public record StateCount(String componentId, ConsistencyType consistencyType, ComponentState state, Long count) {
+}
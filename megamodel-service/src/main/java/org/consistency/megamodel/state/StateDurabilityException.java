@@ -0,0 +1,11 @@
+package org.consistency.megamodel.state;
+
+/**
+ * A change was applied in memory but could not be made durable in time. It stays queued
+ * and is written by a later flush.
+ */
+public class StateDurabilityException extends RuntimeException {
+    public StateDurabilityException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,287 @@
+package org.consistency.megamodel.state;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Write-behind persistence of {@link StateTable} changes. Each flush writes all dirty
+ * rows as JDBC batches ordered by id, so a write that invalidates N sharers costs one round
+ * trip, and changes made while a flush runs are coalesced into the next one. How long a
+ * caller waits for its changes is set by the {@link DurabilityMode}.
+ */
+@Slf4j
+@Component
+public class StateFlusher {
+    private static final String UPDATE_STATE_SQL =
+        "UPDATE component_model_services " +
+        "SET state = ?, consistency_type = ?, version = ?, timestamp = ?, staleness_bound = ? " +
+        "WHERE id = ?";
+
+    private final StateTable stateTable;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${megamodel.state.flush-batch-size:500}")
+    private int batchSize;
+
+    @Value("${megamodel.state.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${megamodel.state.durability:ASYNC}")
+    private DurabilityMode durability;
+
+    // How long GROUP_COMMIT collects changes before flushing, unless a full batch is pending
+    @Value("${megamodel.state.group-commit-interval-ms:5}")
+    private long groupCommitIntervalMs;
+
+    @Value("${megamodel.state.durability-timeout-ms:10000}")
+    private long durabilityTimeoutMs;
+
+    // Guards the cycle counters and the flush request
+    private final Object signal = new Object();
+    private long startedCycle;
+    private long durableCycle;
+    private boolean flushRequested;
+    private volatile boolean running = true;
+    private Thread flusherThread;
+
+    public StateFlusher(
+        StateTable stateTable,
+        JdbcTemplate jdbcTemplate,
+        PlatformTransactionManager transactionManager
+    ) {
+        this.stateTable = stateTable;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Never part of a caller's transaction, which may commit after the entries were marked written
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    void start() {
+        stateTable.setCommitHook(this::commit);
+        flusherThread = new Thread(this::runFlusher, "state-flusher");
+        flusherThread.setDaemon(true);
+        flusherThread.start();
+        log.info("State durability mode is {}", durability);
+    }
+
+    // Called by the state table after a call changed entries, on the calling thread
+    private void commit() {
+        if (durability != DurabilityMode.ASYNC && TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Inside a transaction the caller waits once, before it commits, not after every component.
+            // A failure there rolls the transaction back and reaches the caller.
+            if (TransactionSynchronizationManager.getResource(this) == null) {
+                TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void beforeCommit(boolean readOnly) {
+                        makeDurable();
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(StateFlusher.this);
+                    }
+                });
+            }
+            return;
+        }
+        makeDurable();
+    }
+
+    private void makeDurable() {
+        switch (durability) {
+            case SYNC:
+                if (!flush()) {
+                    throw new StateDurabilityException("Component states could not be flushed");
+                }
+                break;
+            case GROUP_COMMIT:
+                awaitNextFlush();
+                break;
+            default:
+                if (stateTable.dirtyCount() >= batchSize) {
+                    requestFlush();
+                }
+                break;
+        }
+    }
+
+    private void awaitNextFlush() {
+        long deadline = System.nanoTime() + durabilityTimeoutMs * 1_000_000L;
+        synchronized (signal) {
+            // Only a flush that starts after this point is guaranteed to see the caller's changes
+            long target = startedCycle + 1;
+            flushRequested = true;
+            signal.notifyAll();
+            while (durableCycle < target) {
+                long remainingMs = (deadline - System.nanoTime()) / 1_000_000L;
+                if (remainingMs <= 0) {
+                    throw new StateDurabilityException(
+                        "Component states were not flushed within " + durabilityTimeoutMs + " ms");
+                }
+                try {
+                    signal.wait(remainingMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new StateDurabilityException("Interrupted while waiting for component states to be flushed");
+                }
+            }
+        }
+    }
+
+    private void requestFlush() {
+        synchronized (signal) {
+            if (!flushRequested) {
+                flushRequested = true;
+                signal.notifyAll();
+            }
+        }
+    }
+
+    private void runFlusher() {
+        while (running) {
+            try {
+                synchronized (signal) {
+                    if (!flushRequested) {
+                        signal.wait(flushIntervalMs);
+                    }
+                }
+                if (durability == DurabilityMode.GROUP_COMMIT) {
+                    collectGroup();
+                }
+                synchronized (signal) {
+                    flushRequested = false;
+                }
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("State flusher failed", e);
+            }
+        }
+    }
+
+    // Gives concurrent callers a moment to join the flush, cut short once a full batch is pending
+    private void collectGroup() throws InterruptedException {
+        long deadline = System.nanoTime() + groupCommitIntervalMs * 1_000_000L;
+        while (stateTable.dirtyCount() < batchSize && System.nanoTime() < deadline) {
+            Thread.sleep(0, 200_000);
+        }
+    }
+
+    /**
+     * Writes every dirty entry. Returns false if a batch failed; its entries are queued
+     * again and written by a later flush.
+     */
+    // Serialized so a concurrent flush can never write an older snapshot of an entry after a newer one
+    public synchronized boolean flush() {
+        long cycle;
+        synchronized (signal) {
+            cycle = ++startedCycle;
+        }
+        List<ComponentStateEntry> polled;
+        while (!(polled = stateTable.pollDirty(batchSize)).isEmpty()) {
+            if (!flushBatch(polled)) {
+                return false;
+            }
+        }
+        synchronized (signal) {
+            durableCycle = cycle;
+            signal.notifyAll();
+        }
+        return true;
+    }
+
+    private boolean flushBatch(List<ComponentStateEntry> polled) {
+        List<ComponentStateEntry> snapshots = new ArrayList<>(polled.size());
+        for (ComponentStateEntry entry : polled) {
+            snapshots.add(stateTable.takeSnapshotForFlush(entry));
+        }
+        // A fixed row order keeps concurrent writers to the table from deadlocking each other
+        snapshots.sort(Comparator.comparing(ComponentStateEntry::getId));
+
+        WriteFence fence = stateTable.writeFence();
+        String sql = fence.condition().isEmpty() ? UPDATE_STATE_SQL : UPDATE_STATE_SQL + " AND " + fence.condition();
+        try {
+            int[] updated = transactionTemplate.execute(status ->
+                jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ComponentStateEntry snapshot = snapshots.get(i);
+                        setNullable(ps, 1, snapshot.getState() != null ? snapshot.getState().name() : null, Types.VARCHAR);
+                        setNullable(ps, 2, snapshot.getConsistencyType() != null ? snapshot.getConsistencyType().name() : null, Types.VARCHAR);
+                        setNullable(ps, 3, snapshot.getVersion(), Types.BIGINT);
+                        setNullable(ps, 4, snapshot.getTimestamp(), Types.TIMESTAMP);
+                        setNullable(ps, 5, snapshot.getStalenessBound(), Types.TIMESTAMP);
+                        ps.setLong(6, snapshot.getId());
+                        fence.bind(ps, 7, snapshot);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return snapshots.size();
+                    }
+                }));
+            if (!fence.condition().isEmpty()) {
+                logFencedUpdates(updated);
+            }
+            log.debug("Flushed {} component states", snapshots.size());
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to flush {} component states, will retry", snapshots.size(), e);
+            polled.forEach(stateTable::requeue);
+            return false;
+        }
+    }
+
+    // A row the fence kept from being updated has been changed by a later owner of its partition
+    private static void logFencedUpdates(int[] updated) {
+        int fenced = 0;
+        for (int count : updated) {
+            fenced += count == 0 ? 1 : 0;
+        }
+        if (fenced > 0) {
+            log.warn("Discarded {} stale component states of partitions this node no longer owns", fenced);
+        }
+    }
+
+    private static void setNullable(PreparedStatement ps, int index, Object value, int sqlType) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, sqlType);
+        } else {
+            ps.setObject(index, value);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        running = false;
+        flusherThread.interrupt();
+        try {
+            flusherThread.join(durabilityTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
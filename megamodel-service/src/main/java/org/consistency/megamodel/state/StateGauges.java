@@ -0,0 +1,213 @@
+package org.consistency.megamodel.state;
+
+import org.consistency.megamodel.model.ComponentState;
+import org.consistency.megamodel.model.ConsistencyType;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Live row counts of component_model_services per state, per (consistency type, state) and
+ * per (component, state). {@link StateTable} applies every change as a delta; components that
+ * were never loaded are covered by {@link #reconcile}, which corrects the counters against a
+ * GROUP BY count of the table.
+ */
+@Component
+public class StateGauges {
+    private static final ComponentState[] STATES = ComponentState.values();
+    private static final ConsistencyType[] TYPES = ConsistencyType.values();
+
+    private final AtomicLongArray byState = new AtomicLongArray(STATES.length);
+    private final AtomicLongArray byTypeAndState = new AtomicLongArray(TYPES.length * STATES.length);
+    private final AtomicLong modifications = new AtomicLong();
+    private final IdRegistry ids;
+    // Indexed by component key and grown under the monitor; null for components without counters
+    private volatile AtomicLongArray[] byComponent = new AtomicLongArray[64];
+
+    public StateGauges(IdRegistry ids) {
+        this.ids = ids;
+    }
+
+    void add(int componentKey, ConsistencyType type, ComponentState state) {
+        apply(componentKey, type, state, 1);
+        modifications.incrementAndGet();
+    }
+
+    void remove(int componentKey, ConsistencyType type, ComponentState state) {
+        apply(componentKey, type, state, -1);
+        modifications.incrementAndGet();
+    }
+
+    void move(
+        int componentKey,
+        ConsistencyType fromType,
+        ComponentState fromState,
+        ConsistencyType toType,
+        ComponentState toState
+    ) {
+        apply(componentKey, fromType, fromState, -1);
+        apply(componentKey, toType, toState, 1);
+        modifications.incrementAndGet();
+    }
+
+    synchronized void removeComponent(int componentKey) {
+        AtomicLongArray[] current = byComponent;
+        if (componentKey < current.length && current[componentKey] != null) {
+            current[componentKey] = null;
+            byComponent = current;
+            modifications.incrementAndGet();
+        }
+    }
+
+    private AtomicLongArray counts(int componentKey) {
+        AtomicLongArray[] current = byComponent;
+        AtomicLongArray counts = componentKey < current.length ? current[componentKey] : null;
+        return counts != null ? counts : createCounts(componentKey);
+    }
+
+    private synchronized AtomicLongArray createCounts(int componentKey) {
+        AtomicLongArray[] current = byComponent;
+        if (componentKey >= current.length) {
+            current = Arrays.copyOf(current, Math.max(current.length * 2, componentKey + 1));
+        }
+        if (current[componentKey] == null) {
+            current[componentKey] = new AtomicLongArray(STATES.length);
+        }
+        byComponent = current;
+        return current[componentKey];
+    }
+
+    private AtomicLongArray existingCounts(String componentId) {
+        int componentKey = ids.existingComponentKey(componentId);
+        AtomicLongArray[] current = byComponent;
+        return componentKey >= 0 && componentKey < current.length ? current[componentKey] : null;
+    }
+
+    private Map<String, AtomicLongArray> countsByComponentId() {
+        Map<String, AtomicLongArray> counts = new HashMap<>();
+        AtomicLongArray[] current = byComponent;
+        for (int componentKey = 0; componentKey < current.length; componentKey++) {
+            if (current[componentKey] != null) {
+                counts.put(ids.componentId(componentKey), current[componentKey]);
+            }
+        }
+        return counts;
+    }
+
+    private void apply(int componentKey, ConsistencyType type, ComponentState state, long delta) {
+        if (state == null) {
+            return;
+        }
+        byState.addAndGet(state.ordinal(), delta);
+        if (type != null) {
+            byTypeAndState.addAndGet(type.ordinal() * STATES.length + state.ordinal(), delta);
+        }
+        counts(componentKey).addAndGet(state.ordinal(), delta);
+    }
+
+    public long modificationCount() {
+        return modifications.get();
+    }
+
+    public Map<ComponentState, Long> byState() {
+        return toStateMap(byState, 0);
+    }
+
+    public Map<ConsistencyType, Map<ComponentState, Long>> byConsistencyType() {
+        Map<ConsistencyType, Map<ComponentState, Long>> distribution = new EnumMap<>(ConsistencyType.class);
+        for (ConsistencyType type : TYPES) {
+            distribution.put(type, toStateMap(byTypeAndState, type.ordinal() * STATES.length));
+        }
+        return distribution;
+    }
+
+    public Map<ComponentState, Long> byComponent(String componentId) {
+        AtomicLongArray counts = existingCounts(componentId);
+        return toStateMap(counts != null ? counts : new AtomicLongArray(STATES.length), 0);
+    }
+
+    public Map<String, Map<ComponentState, Long>> byComponent() {
+        Map<String, Map<ComponentState, Long>> distribution = new HashMap<>();
+        countsByComponentId().forEach((componentId, counts) -> distribution.put(componentId, toStateMap(counts, 0)));
+        return distribution;
+    }
+
+    private static Map<ComponentState, Long> toStateMap(AtomicLongArray counts, int offset) {
+        Map<ComponentState, Long> distribution = new EnumMap<>(ComponentState.class);
+        for (ComponentState state : STATES) {
+            distribution.put(state, counts.get(offset + state.ordinal()));
+        }
+        return distribution;
+    }
+
+    public Snapshot snapshot() {
+        Map<String, long[]> components = new HashMap<>();
+        countsByComponentId().forEach((componentId, counts) -> components.put(componentId, toArray(counts)));
+        return new Snapshot(toArray(byState), toArray(byTypeAndState), components);
+    }
+
+    private static long[] toArray(AtomicLongArray counts) {
+        long[] values = new long[counts.length()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = counts.get(i);
+        }
+        return values;
+    }
+
+    /**
+     * Adds the difference between the counted rows and {@code observed} to every counter.
+     * Only valid if no change was applied between taking {@code observed} and counting the
+     * rows; changes applied afterwards are preserved because the counters are corrected
+     * rather than overwritten.
+     */
+    public void reconcile(Snapshot observed, Collection<StateCount> counted) {
+        Snapshot expected = new Snapshot(
+            new long[STATES.length], new long[TYPES.length * STATES.length], new HashMap<>());
+        for (StateCount count : counted) {
+            if (count.state() == null) {
+                continue;
+            }
+            int state = count.state().ordinal();
+            expected.byState()[state] += count.count();
+            if (count.consistencyType() != null) {
+                expected.byTypeAndState()[count.consistencyType().ordinal() * STATES.length + state] += count.count();
+            }
+            expected.byComponent().computeIfAbsent(count.componentId(), id -> new long[STATES.length])[state] += count.count();
+        }
+
+        correct(byState, observed.byState(), expected.byState());
+        correct(byTypeAndState, observed.byTypeAndState(), expected.byTypeAndState());
+        long[] none = new long[STATES.length];
+        expected.byComponent().forEach((componentId, values) -> correct(
+            counts(ids.componentKey(componentId)),
+            observed.byComponent().getOrDefault(componentId, none),
+            values));
+        observed.byComponent().forEach((componentId, values) -> {
+            if (!expected.byComponent().containsKey(componentId)) {
+                AtomicLongArray counts = existingCounts(componentId);
+                if (counts != null) {
+                    correct(counts, values, none);
+                }
+            }
+        });
+        modifications.incrementAndGet();
+    }
+
+    private static void correct(AtomicLongArray counts, long[] observed, long[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            long drift = expected[i] - observed[i];
+            if (drift != 0) {
+                counts.addAndGet(i, drift);
+            }
+        }
+    }
+
+    public record Snapshot(long[] byState, long[] byTypeAndState, Map<String, long[]> byComponent) {
+    }
+}
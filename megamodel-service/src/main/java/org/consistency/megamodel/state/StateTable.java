@@ -0,0 +1,515 @@
+package org.consistency.megamodel.state;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.consistency.megamodel.model.ComponentModelRepository;
+import org.consistency.megamodel.model.ComponentModelServiceEntity;
+import org.consistency.megamodel.model.ComponentModelServiceRepository;
+import org.consistency.megamodel.model.ComponentState;
+import org.consistency.megamodel.model.ModelNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Authoritative in-memory copy of component_model_services, sharded by component key.
+ * A component is loaded from the database the first time it is touched; from then on
+ * every transition runs against this table and is persisted by {@link StateFlusher}.
+ * Components and their holders are found by {@link IdRegistry} key, so after the one
+ * translation of the component id a lookup is two array loads. A component id is only
+ * interned once the component turns out to exist, so unknown ids cannot grow the key space.
+ * <p>
+ * Nothing touches the database while holding a shard lock: components are read and rows
+ * are inserted with the lock released, and the result is installed after checking again
+ * under the lock that no other thread got there first.
+ */
+@Slf4j
+@Component
+public class StateTable {
+    private final ComponentModelServiceRepository componentModelServiceRepo;
+    private final ComponentModelRepository componentModelRepo;
+    private final StalenessTimer stalenessTimer;
+    private final StateGauges stateGauges;
+    private final IdRegistry ids;
+    private final TransactionTemplate insertTransaction;
+    private final Queue<ComponentStateEntry> dirtyEntries = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger dirtyCount = new AtomicInteger();
+    // Bumped by every eviction and unload, so a component read before one is not installed after it
+    private final AtomicLong removals = new AtomicLong();
+    private final Map<String, CompletableFuture<ComponentStateEntry>> pendingInserts = new ConcurrentHashMap<>();
+    // Per thread: nesting depth of query/execute calls and whether they dirtied an entry
+    private final ThreadLocal<int[]> mutationScope = ThreadLocal.withInitial(() -> new int[2]);
+    private volatile Runnable commitHook = () -> { };
+    // Throws for a component this node must not touch, checked under the component's lock
+    private volatile Consumer<String> accessCheck = componentId -> { };
+    private volatile WriteFence writeFence = WriteFence.NONE;
+
+    @Value("${megamodel.state.shards:64}")
+    private int shardCount;
+
+    private Shard[] shards;
+    private int shardMask;
+    private int shardBits;
+
+    public StateTable(
+        ComponentModelServiceRepository componentModelServiceRepo,
+        ComponentModelRepository componentModelRepo,
+        StalenessTimer stalenessTimer,
+        StateGauges stateGauges,
+        IdRegistry ids,
+        PlatformTransactionManager transactionManager
+    ) {
+        this.componentModelServiceRepo = componentModelServiceRepo;
+        this.componentModelRepo = componentModelRepo;
+        this.stalenessTimer = stalenessTimer;
+        this.stateGauges = stateGauges;
+        this.ids = ids;
+        this.insertTransaction = new TransactionTemplate(transactionManager);
+        // New rows must survive a rollback of the caller, the table already references them
+        this.insertTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    void init() {
+        int size = Integer.highestOneBit(Math.max(1, shardCount - 1)) << 1;
+        shards = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = new Shard();
+        }
+        shardMask = size - 1;
+        shardBits = Integer.numberOfTrailingZeros(size);
+        log.info("Initialized state table with {} shards", size);
+    }
+
+    // Throws ModelNotFoundException for a component that does not exist
+    public <T> T query(String componentId, Function<ComponentSlot, T> action) {
+        int componentKey = ids.existingComponentKey(componentId);
+        if (componentKey < 0) {
+            if (!componentModelRepo.existsById(componentId)) {
+                throw notFound(componentId);
+            }
+            componentKey = ids.componentKey(componentId);
+        }
+        return query(componentKey, action);
+    }
+
+    // Like query, but answers null for a component that does not exist
+    public <T> T queryIfExists(String componentId, Function<ComponentSlot, T> action) {
+        try {
+            return query(componentId, action);
+        } catch (ModelNotFoundException e) {
+            return null;
+        }
+    }
+
+    public <T> T query(int componentKey, Function<ComponentSlot, T> action) {
+        Shard shard = shardFor(componentKey);
+        int[] scope = mutationScope.get();
+        scope[0]++;
+        shard.lock.lock();
+        try {
+            String componentId = ids.componentId(componentKey);
+            accessCheck.accept(componentId);
+            ComponentSlot slot = shard.find(componentKey);
+            if (slot == null) {
+                slot = load(shard, componentKey, componentId);
+            }
+            return action.apply(slot);
+        } finally {
+            shard.lock.unlock();
+            // The outermost call that changed something applies the durability mode, outside the lock
+            if (--scope[0] == 0 && scope[1] != 0) {
+                scope[1] = 0;
+                commitHook.run();
+            }
+        }
+    }
+
+    // Called with the shard lock held once, which is released while the rows are read. A nested
+    // query on the same shard cannot release it and reads under the lock.
+    private ComponentSlot load(Shard shard, int componentKey, String componentId) {
+        if (shard.lock.getHoldCount() > 1) {
+            return shard.install(componentKey, findEntries(componentId));
+        }
+        while (true) {
+            long removalsBefore = removals.get();
+            List<ComponentStateEntry> entries;
+            shard.lock.unlock();
+            try {
+                entries = findEntries(componentId);
+            } finally {
+                shard.lock.lock();
+            }
+            // The partition may have moved and another thread may have loaded the component meanwhile
+            accessCheck.accept(componentId);
+            ComponentSlot slot = shard.find(componentKey);
+            if (slot != null) {
+                return slot;
+            }
+            if (removals.get() == removalsBefore) {
+                return shard.install(componentKey, entries);
+            }
+        }
+    }
+
+    private List<ComponentStateEntry> findEntries(String componentId) {
+        List<ComponentStateEntry> entries = componentModelServiceRepo.findEntriesByComponentId(componentId);
+        // Keys outlive their components, a deleted one must not come back as an empty slot
+        if (entries.isEmpty() && !componentModelRepo.existsById(componentId)) {
+            throw notFound(componentId);
+        }
+        return entries;
+    }
+
+    // Runs after every top-level query/execute call that marked entries dirty
+    void setCommitHook(Runnable commitHook) {
+        this.commitHook = commitHook;
+    }
+
+    /**
+     * Installs the check that runs before every query/execute and component load. Because it
+     * runs under the component's lock, once {@link #unloadComponents} has dropped a component
+     * no later call can load it again unless the check lets it through.
+     */
+    public void setAccessCheck(Consumer<String> accessCheck) {
+        this.accessCheck = accessCheck;
+    }
+
+    // Installed before any component is loaded; entries loaded earlier would carry no token
+    public void setWriteFence(WriteFence writeFence) {
+        this.writeFence = writeFence;
+    }
+
+    WriteFence writeFence() {
+        return writeFence;
+    }
+
+    public void execute(String componentId, Consumer<ComponentSlot> action) {
+        execute(ids.componentKey(componentId), action);
+    }
+
+    public void execute(int componentKey, Consumer<ComponentSlot> action) {
+        query(componentKey, slot -> {
+            action.accept(slot);
+            return null;
+        });
+    }
+
+    // Loads all missing components with a single query instead of one per component; ids of
+    // components that do not exist are skipped
+    public void preload(Collection<String> componentIds) {
+        Set<String> missing = new HashSet<>();
+        for (String componentId : componentIds) {
+            int componentKey = ids.existingComponentKey(componentId);
+            if (componentKey < 0) {
+                missing.add(componentId);
+                continue;
+            }
+            Shard shard = shardFor(componentKey);
+            shard.lock.lock();
+            try {
+                if (shard.find(componentKey) == null) {
+                    missing.add(componentId);
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        long removalsBefore = removals.get();
+        Map<String, List<ComponentStateEntry>> loaded = new HashMap<>();
+        for (ComponentStateEntry entry : componentModelServiceRepo.findEntriesByComponentIds(missing)) {
+            loaded.computeIfAbsent(entry.getComponentId(), id -> new ArrayList<>()).add(entry);
+        }
+        // Components with holders exist, the others are looked up together
+        Set<String> holderless = new HashSet<>(missing);
+        holderless.removeAll(loaded.keySet());
+        if (!holderless.isEmpty()) {
+            missing.removeAll(holderless);
+            missing.addAll(componentModelRepo.findExistingIds(holderless));
+        }
+        for (String componentId : missing) {
+            int componentKey = ids.componentKey(componentId);
+            Shard shard = shardFor(componentKey);
+            shard.lock.lock();
+            try {
+                // Another thread may have loaded and changed the component in the meantime; after
+                // an eviction or unload the rows read may be outdated and query loads it again
+                if (shard.find(componentKey) == null && removals.get() == removalsBefore) {
+                    accessCheck.accept(componentId);
+                    shard.install(componentKey, loaded.getOrDefault(componentId, List.of()));
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    // Must be called outside query/execute; the entry joins its component through adopt
+    public ComponentStateEntry insert(ComponentModelServiceEntity entity) {
+        String microserviceId = entity.getMicroservice().getId();
+        String componentId = entity.getComponentModel().getId();
+        // Concurrent first operations of a pair share one insert, until its entry reaches the slot
+        String pair = pairOf(microserviceId, componentId);
+        CompletableFuture<ComponentStateEntry> inserting = new CompletableFuture<>();
+        CompletableFuture<ComponentStateEntry> pending = pendingInserts.putIfAbsent(pair, inserting);
+        if (pending != null) {
+            try {
+                return pending.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            // A shared insert whose entry reached the slot has committed, a later one finds its row
+            ComponentStateEntry entry = componentModelServiceRepo
+                .findByMicroserviceIdAndComponentModelId(microserviceId, componentId)
+                .map(ComponentStateEntry::from)
+                .orElse(null);
+            if (entry == null) {
+                try {
+                    entry = ComponentStateEntry.from(insertTransaction.execute(status -> componentModelServiceRepo.save(entity)));
+                } catch (DataIntegrityViolationException e) {
+                    entry = componentModelServiceRepo.findByMicroserviceIdAndComponentModelId(microserviceId, componentId)
+                        .map(ComponentStateEntry::from)
+                        .orElseThrow(() -> e);
+                }
+            }
+            entry.bind(ids);
+            inserting.complete(entry);
+            return entry;
+        } catch (RuntimeException e) {
+            pendingInserts.remove(pair, inserting);
+            inserting.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static String pairOf(String microserviceId, String componentId) {
+        return microserviceId + '/' + componentId;
+    }
+
+    /**
+     * Must be called from inside query/execute on the entry's component. Adds an entry returned
+     * by {@link #insert} to the slot, unless the slot got an entry for the microservice since,
+     * which is returned instead.
+     */
+    public ComponentStateEntry adopt(ComponentSlot slot, ComponentStateEntry entry) {
+        pendingInserts.remove(pairOf(entry.getMicroserviceId(), entry.getComponentId()));
+        ComponentStateEntry existing = slot.get(entry.getMicroserviceKey());
+        if (existing != null) {
+            return existing;
+        }
+        slot.add(entry);
+        stateGauges.add(entry.getComponentKey(), entry.getConsistencyType(), entry.getState());
+        return entry;
+    }
+
+    // Must be called from inside query/execute on the entry's component after every change to it
+    public void markDirty(ComponentStateEntry entry) {
+        if (entry.slot != null) {
+            entry.slot.transitioned(entry);
+        }
+        if (entry.countedState != entry.getState() || entry.countedConsistencyType != entry.getConsistencyType()) {
+            stateGauges.move(entry.getComponentKey(),
+                entry.countedConsistencyType, entry.countedState,
+                entry.getConsistencyType(), entry.getState());
+            entry.countedState = entry.getState();
+            entry.countedConsistencyType = entry.getConsistencyType();
+        }
+        if (!entry.dirty) {
+            entry.dirty = true;
+            dirtyEntries.offer(entry);
+            dirtyCount.incrementAndGet();
+        }
+        int[] scope = mutationScope.get();
+        if (scope[0] > 0) {
+            scope[1] = 1;
+        }
+    }
+
+    public void evictComponent(String componentId) {
+        int componentKey = ids.existingComponentKey(componentId);
+        if (componentKey < 0) {
+            return;
+        }
+        Shard shard = shardFor(componentKey);
+        shard.lock.lock();
+        try {
+            removals.incrementAndGet();
+            ComponentSlot slot = shard.remove(componentKey);
+            if (slot != null) {
+                for (ComponentStateEntry entry : slot.entries()) {
+                    stalenessTimer.cancel(entry);
+                    uncount(entry);
+                }
+            }
+            stateGauges.removeComponent(componentKey);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    public void evictMicroservice(String microserviceId) {
+        int microserviceKey = ids.existingMicroserviceKey(microserviceId);
+        if (microserviceKey < 0) {
+            return;
+        }
+        removals.incrementAndGet();
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                for (ComponentSlot slot : shard.slots) {
+                    ComponentStateEntry removed = slot != null ? slot.remove(microserviceKey) : null;
+                    if (removed != null) {
+                        stalenessTimer.cancel(removed);
+                        uncount(removed);
+                    }
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Drops the loaded components matching the predicate from memory without touching the
+     * gauges or the rows: their dirty entries are still written by the next flush, and a
+     * later call loads them from the database again.
+     */
+    public int unloadComponents(Predicate<String> componentIds) {
+        removals.incrementAndGet();
+        int unloaded = 0;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                for (int i = 0; i < shard.slots.length; i++) {
+                    ComponentSlot slot = shard.slots[i];
+                    if (slot != null && componentIds.test(slot.getComponentId())) {
+                        slot.entries().forEach(stalenessTimer::cancel);
+                        shard.slots[i] = null;
+                        unloaded++;
+                    }
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return unloaded;
+    }
+
+    private void uncount(ComponentStateEntry entry) {
+        stateGauges.remove(entry.getComponentKey(), entry.countedConsistencyType, entry.countedState);
+    }
+
+    List<ComponentStateEntry> pollDirty(int max) {
+        List<ComponentStateEntry> polled = new ArrayList<>(Math.min(max, 256));
+        ComponentStateEntry entry;
+        while (polled.size() < max && (entry = dirtyEntries.poll()) != null) {
+            polled.add(entry);
+        }
+        dirtyCount.addAndGet(-polled.size());
+        return polled;
+    }
+
+    ComponentStateEntry takeSnapshotForFlush(ComponentStateEntry entry) {
+        Shard shard = shardFor(entry.getComponentKey());
+        shard.lock.lock();
+        try {
+            entry.dirty = false;
+            return entry.snapshot();
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    void requeue(ComponentStateEntry entry) {
+        Shard shard = shardFor(entry.getComponentKey());
+        shard.lock.lock();
+        try {
+            markDirty(entry);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    boolean hasDirtyEntries() {
+        return !dirtyEntries.isEmpty();
+    }
+
+    int dirtyCount() {
+        return dirtyCount.get();
+    }
+
+    private static ModelNotFoundException notFound(String componentId) {
+        return new ModelNotFoundException("Component model not found: " + componentId);
+    }
+
+    // Keys are dense, so consecutive components land in consecutive shards
+    private Shard shardFor(int componentKey) {
+        return shards[componentKey & shardMask];
+    }
+
+    private final class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        // Indexed by component key >>> shardBits
+        private ComponentSlot[] slots = new ComponentSlot[16];
+
+        private ComponentSlot find(int componentKey) {
+            int index = componentKey >>> shardBits;
+            return index < slots.length ? slots[index] : null;
+        }
+
+        private ComponentSlot install(int componentKey, List<ComponentStateEntry> entries) {
+            String componentId = ids.componentId(componentKey);
+            ComponentSlot slot = new ComponentSlot(componentId, componentKey, writeFence.token(componentId));
+            for (ComponentStateEntry entry : entries) {
+                entry.bind(ids);
+                slot.add(entry);
+                if (entry.getStalenessBound() != null && entry.getState() != ComponentState.INVALID) {
+                    stalenessTimer.schedule(entry);
+                }
+            }
+            int index = componentKey >>> shardBits;
+            if (index >= slots.length) {
+                slots = Arrays.copyOf(slots, Math.max(slots.length * 2, index + 1));
+            }
+            slots[index] = slot;
+            return slot;
+        }
+
+        private ComponentSlot remove(int componentKey) {
+            ComponentSlot slot = find(componentKey);
+            if (slot != null) {
+                slots[componentKey >>> shardBits] = null;
+            }
+            return slot;
+        }
+    }
+}
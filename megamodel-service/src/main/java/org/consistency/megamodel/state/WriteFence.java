@@ -0,0 +1,37 @@
+package org.consistency.megamodel.state;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Keeps the flusher from writing rows this node no longer owns. A token is taken when a
+ * component is loaded into the state table, and every row update carries the fence's
+ * condition on that token, so changes made under an ownership that has since passed to
+ * another node are not written, however late the flush runs.
+ */
+public interface WriteFence {
+    WriteFence NONE = new WriteFence() {
+        @Override
+        public long token(String componentId) {
+            return 0;
+        }
+
+        @Override
+        public String condition() {
+            return "";
+        }
+
+        @Override
+        public void bind(PreparedStatement ps, int index, ComponentStateEntry entry) {
+        }
+    };
+
+    // Called under the component's lock when the component is loaded
+    long token(String componentId);
+
+    // Appended to the WHERE clause of the row update, empty for no condition
+    String condition();
+
+    // Binds the condition's parameters, starting at the given index
+    void bind(PreparedStatement ps, int index, ComponentStateEntry entry) throws SQLException;
+}
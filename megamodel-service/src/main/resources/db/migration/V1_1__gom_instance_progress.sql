@@ -0,0 +1,7 @@
+-- Asynchronous executions: progress of an instance, its failure, and the queued and
+-- cancelled states. Databases created by ddl-auto=update after executions became
+-- asynchronous already have the columns, but update never widened the status enum.
+alter table gom_instances add column if not exists total_steps integer not null default 0;
+alter table gom_instances add column if not exists completed_steps integer not null default 0;
+alter table gom_instances add column if not exists error_message varchar(255);
+alter table gom_instances modify status enum ('CANCELLED','COMPLETED','FAILED','QUEUED','RUNNING');
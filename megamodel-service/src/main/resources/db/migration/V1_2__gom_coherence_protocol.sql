@@ -0,0 +1,2 @@
+-- Coherence protocol a GOM's operations follow, the configured default when null
+alter table global_operation_models add column if not exists coherence_protocol varchar(255);
@@ -0,0 +1,124 @@
+-- Schema as created by hibernate.ddl-auto=update before migrations were introduced.
+-- Existing databases are baselined at this version and only apply later migrations.
+
+create table microservices (
+    id varchar(255) not null,
+    name varchar(255),
+    description varchar(255),
+    primary key (id)
+) engine=InnoDB;
+
+create table component_models (
+    id varchar(255) not null,
+    name varchar(255),
+    metamodel varchar(255),
+    description varchar(255),
+    primary key (id)
+) engine=InnoDB;
+
+create table component_model_services (
+    id bigint not null auto_increment,
+    component_model_id varchar(255),
+    microservice_id varchar(255),
+    state enum ('INVALID','MODIFIED','SHARED_MINUS','SHARED_PLUS'),
+    consistency_type enum ('BOUNDED_STALENESS','EVENTUAL','MONOTONIC_READS','READ_MY_WRITES','STRONG'),
+    version bigint,
+    timestamp datetime(6),
+    staleness_bound datetime(6),
+    conflict_resolution varchar(255),
+    invalidation_strategy varchar(255),
+    primary key (id),
+    constraint fk_cms_component_model foreign key (component_model_id) references component_models (id),
+    constraint fk_cms_microservice foreign key (microservice_id) references microservices (id)
+) engine=InnoDB;
+
+create table global_operation_models (
+    id varchar(255) not null,
+    name varchar(255),
+    description varchar(255),
+    primary key (id)
+) engine=InnoDB;
+
+create table gom_requirements (
+    id bigint not null auto_increment,
+    gom_id varchar(255),
+    microservice_id varchar(255),
+    component_id varchar(255),
+    consistency_type enum ('BOUNDED_STALENESS','EVENTUAL','MONOTONIC_READS','READ_MY_WRITES','STRONG'),
+    created_at datetime(6),
+    primary key (id),
+    constraint fk_gom_requirements_gom foreign key (gom_id) references global_operation_models (id),
+    constraint fk_gom_requirements_microservice foreign key (microservice_id) references microservices (id),
+    constraint fk_gom_requirements_component foreign key (component_id) references component_models (id)
+) engine=InnoDB;
+
+create table microservice_requirements (
+    id bigint not null auto_increment,
+    gom_id varchar(255),
+    microservice_id varchar(255),
+    primary key (id),
+    constraint fk_microservice_requirements_gom foreign key (gom_id) references global_operation_models (id)
+) engine=InnoDB;
+
+create table component_requirements (
+    id bigint not null auto_increment,
+    requirement_id bigint,
+    component_id varchar(255),
+    consistency_type enum ('BOUNDED_STALENESS','EVENTUAL','MONOTONIC_READS','READ_MY_WRITES','STRONG'),
+    primary key (id),
+    constraint fk_component_requirements_requirement foreign key (requirement_id) references microservice_requirements (id)
+) engine=InnoDB;
+
+create table gom_component_refs (
+    global_operation_model_entity_id varchar(255) not null,
+    microservice_id varchar(255),
+    component_model_id varchar(255),
+    required_state tinyint check (required_state between 0 and 3),
+    constraint fk_gom_component_refs_gom foreign key (global_operation_model_entity_id) references global_operation_models (id)
+) engine=InnoDB;
+
+create table gom_preconditions (
+    global_operation_model_entity_id varchar(255) not null,
+    preconditions varchar(255),
+    constraint fk_gom_preconditions_gom foreign key (global_operation_model_entity_id) references global_operation_models (id)
+) engine=InnoDB;
+
+create table gom_postconditions (
+    global_operation_model_entity_id varchar(255) not null,
+    postconditions varchar(255),
+    constraint fk_gom_postconditions_gom foreign key (global_operation_model_entity_id) references global_operation_models (id)
+) engine=InnoDB;
+
+create table gom_state_transitions (
+    global_operation_model_entity_id varchar(255) not null,
+    source_service_id varchar(255),
+    component_model_id varchar(255),
+    operation_type enum ('READ','WRITE'),
+    target_state enum ('INVALID','MODIFIED','SHARED_MINUS','SHARED_PLUS'),
+    condition_expression varchar(255),
+    constraint fk_gom_state_transitions_gom foreign key (global_operation_model_entity_id) references global_operation_models (id)
+) engine=InnoDB;
+
+create table gom_instances (
+    id varchar(255) not null,
+    gom_id varchar(255),
+    name varchar(255),
+    status enum ('COMPLETED','FAILED','RUNNING'),
+    created_at datetime(6),
+    updated_at datetime(6),
+    primary key (id),
+    constraint fk_gom_instances_gom foreign key (gom_id) references global_operation_models (id)
+) engine=InnoDB;
+
+create table microservice_component_states (
+    id bigint not null auto_increment,
+    instance_id varchar(255),
+    microservice_id varchar(255),
+    component_id varchar(255),
+    state enum ('INVALID','MODIFIED','SHARED_MINUS','SHARED_PLUS'),
+    consistency_type enum ('BOUNDED_STALENESS','EVENTUAL','MONOTONIC_READS','READ_MY_WRITES','STRONG'),
+    version bigint,
+    timestamp datetime(6),
+    primary key (id),
+    constraint fk_microservice_component_states_instance foreign key (instance_id) references gom_instances (id)
+) engine=InnoDB;
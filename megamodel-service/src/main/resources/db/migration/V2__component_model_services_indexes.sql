@@ -0,0 +1,28 @@
+-- A microservice holds a component at most once. Earlier versions could insert a pair twice
+-- when two first operations raced; keep the newest row of every duplicated pair.
+delete from component_model_services
+where microservice_id is not null and component_model_id is not null
+  and id not in (
+    select id from (
+        select max(id) as id from component_model_services
+        group by microservice_id, component_model_id
+    ) newest
+);
+
+-- Pair lookup of every operation
+create unique index if not exists uk_cms_microservice_component on component_model_services (microservice_id, component_model_id);
+
+-- Loading a component into the state table, and its other holders
+create index if not exists idx_cms_component_microservice on component_model_services (component_model_id, microservice_id);
+
+-- Holders of a component in a state
+create index if not exists idx_cms_component_state on component_model_services (component_model_id, state);
+
+-- Components with a holder in a state, and the listing filters
+create index if not exists idx_cms_state_component on component_model_services (state, component_model_id);
+create index if not exists idx_cms_consistency_type on component_model_services (consistency_type);
+
+-- MariaDB has no partial indexes. Rows without a bound sort first in this index, so the
+-- "staleness_bound is not null" range skips them and the component ids are read from the index.
+create index if not exists idx_cms_staleness_bound_state on component_model_services (staleness_bound, state, component_model_id);
+drop index if exists idx_cms_staleness_bound on component_model_services;
@@ -0,0 +1,18 @@
+-- Clustered mode: every node heartbeats its row, and each partition of the component id
+-- space is leased to at most one node at a time. Rows of partition_leases are created by
+-- the nodes for the configured number of partitions.
+create table cluster_nodes (
+    node_id varchar(255) not null,
+    url varchar(255) not null,
+    heartbeat_at datetime(6) not null,
+    primary key (node_id)
+) engine=InnoDB;
+
+create table partition_leases (
+    partition_id integer not null,
+    owner_node varchar(255),
+    owner_url varchar(255),
+    lease_until datetime(6),
+    epoch bigint not null,
+    primary key (partition_id)
+) engine=InnoDB;
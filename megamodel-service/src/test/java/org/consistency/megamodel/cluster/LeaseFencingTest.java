@@ -0,0 +1,131 @@
+package org.consistency.megamodel.cluster;
+
+import org.consistency.megamodel.model.ComponentModelRepository;
+import org.consistency.megamodel.model.ComponentModelServiceRepository;
+import org.consistency.megamodel.model.ComponentState;
+import org.consistency.megamodel.model.ConsistencyType;
+import org.consistency.megamodel.state.ComponentStateEntry;
+import org.consistency.megamodel.state.IdRegistry;
+import org.consistency.megamodel.state.StalenessTimer;
+import org.consistency.megamodel.state.StateFlusher;
+import org.consistency.megamodel.state.StateGauges;
+import org.consistency.megamodel.state.StateTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LeaseFencingTest {
+    private static final String COMPONENT = "c1";
+    private static final String NODE = "node-a";
+
+    private JdbcTemplate jdbc;
+    private PartitionTable partitions;
+    private StateTable stateTable;
+    private StateFlusher stateFlusher;
+    private int partition;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:fencing;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table component_model_services (id bigint primary key, state varchar(32), "
+            + "consistency_type varchar(32), version bigint, timestamp datetime(6), staleness_bound datetime(6))");
+        jdbc.execute("create table partition_leases (partition_id int primary key, owner_node varchar(255), "
+            + "owner_url varchar(255), lease_until datetime(6), epoch bigint not null)");
+        jdbc.update("insert into component_model_services values (1, 'INVALID', 'STRONG', 0, null, null)");
+
+        partitions = new PartitionTable();
+        ReflectionTestUtils.setField(partitions, "enabled", true);
+        ReflectionTestUtils.setField(partitions, "partitionCount", 4);
+        ReflectionTestUtils.setField(partitions, "nodeId", NODE);
+        ReflectionTestUtils.setField(partitions, "advertisedUrl", "http://localhost:8091");
+        partitions.init();
+        partition = partitions.partitionOf(COMPONENT);
+        jdbc.update("insert into partition_leases values (?, ?, 'http://localhost:8091', null, 1)", partition, NODE);
+        partitions.setEpoch(partition, 1);
+        partitions.setServingUntil(System.nanoTime() + 3_600_000_000_000L);
+        partitions.startServing(partition);
+
+        ComponentModelServiceRepository repository = mock(ComponentModelServiceRepository.class);
+        when(repository.findEntriesByComponentId(COMPONENT)).thenReturn(new ArrayList<>(List.of(
+            new ComponentStateEntry(1L, "ms1", COMPONENT, ComponentState.INVALID, ConsistencyType.STRONG,
+                0L, null, null))));
+        ComponentModelRepository componentModels = mock(ComponentModelRepository.class);
+        when(componentModels.existsById(COMPONENT)).thenReturn(true);
+        IdRegistry ids = new IdRegistry();
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        stateTable = new StateTable(repository, componentModels, new StalenessTimer(), new StateGauges(ids), ids,
+            transactionManager);
+        ReflectionTestUtils.setField(stateTable, "shardCount", 4);
+        ReflectionTestUtils.invokeMethod(stateTable, "init");
+        stateTable.setAccessCheck(partitions::checkLocal);
+        stateTable.setWriteFence(partitions);
+        stateFlusher = new StateFlusher(stateTable, jdbc, transactionManager);
+        ReflectionTestUtils.setField(stateFlusher, "batchSize", 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.execute("drop all objects");
+    }
+
+    @Test
+    void changesAreWrittenWhileTheLeaseIsHeld() {
+        modify(7L);
+
+        assertTrue(stateFlusher.flush());
+        assertEquals(Map.of("STATE", "MODIFIED", "VERSION", 7L), row());
+    }
+
+    @Test
+    void changesOfALostLeaseDoNotOverwriteTheNewOwner() {
+        modify(7L);
+        // Another node takes over the expired lease and changes the row before this node flushes
+        jdbc.update("update partition_leases set owner_node = 'node-b', epoch = 2 where partition_id = ?", partition);
+        jdbc.update("update component_model_services set state = 'SHARED_PLUS', version = 9 where id = 1");
+
+        assertTrue(stateFlusher.flush());
+        assertEquals(Map.of("STATE", "SHARED_PLUS", "VERSION", 9L), row());
+    }
+
+    @Test
+    void changesLoadedUnderAnEarlierLeaseAreNotWrittenAfterReacquiring() {
+        modify(7L);
+        // Lost and acquired again: the pending change predates the other node's ownership
+        jdbc.update("update partition_leases set epoch = 3 where partition_id = ?", partition);
+        jdbc.update("update component_model_services set state = 'SHARED_PLUS', version = 9 where id = 1");
+        partitions.setEpoch(partition, 3);
+
+        assertTrue(stateFlusher.flush());
+        assertEquals(Map.of("STATE", "SHARED_PLUS", "VERSION", 9L), row());
+    }
+
+    private void modify(long version) {
+        stateTable.execute(COMPONENT, slot -> {
+            ComponentStateEntry entry = slot.entries().iterator().next();
+            entry.setState(ComponentState.MODIFIED);
+            entry.setVersion(version);
+            entry.setTimestamp(LocalDateTime.now());
+            stateTable.markDirty(entry);
+        });
+    }
+
+    private Map<String, Object> row() {
+        return jdbc.queryForMap("select state, version from component_model_services where id = 1");
+    }
+}
@@ -0,0 +1,255 @@
+package org.consistency.megamodel.cluster;
+
+import org.consistency.megamodel.model.ClusterNodeEntity;
+import org.consistency.megamodel.model.ClusterNodeRepository;
+import org.consistency.megamodel.model.PartitionLeaseEntity;
+import org.consistency.megamodel.model.PartitionLeaseRepository;
+import org.consistency.megamodel.service.BackgroundSyncService;
+import org.consistency.megamodel.state.StateFlusher;
+import org.consistency.megamodel.state.StateTable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PartitionLeaseManagerTest {
+    private static final String NODE = "node-a";
+    private static final String URL = "http://localhost:8091";
+    private static final int PARTITIONS = 4;
+
+    // The lease table, changed by the mocked repository the way its conditional updates do
+    private final Map<Integer, PartitionLeaseEntity> leases = new TreeMap<>();
+    private final List<ClusterNodeEntity> liveNodes = new ArrayList<>();
+    private LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private PartitionTable partitions;
+    private StateTable stateTable;
+    private StateFlusher stateFlusher;
+    private BackgroundSyncService backgroundSyncService;
+    private PartitionLeaseRepository leaseRepository;
+    private PartitionLeaseManager manager;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        partitions = new PartitionTable();
+        ReflectionTestUtils.setField(partitions, "enabled", true);
+        ReflectionTestUtils.setField(partitions, "partitionCount", PARTITIONS);
+        ReflectionTestUtils.setField(partitions, "nodeId", NODE);
+        ReflectionTestUtils.setField(partitions, "advertisedUrl", URL);
+        partitions.init();
+
+        leaseRepository = mock(PartitionLeaseRepository.class);
+        when(leaseRepository.databaseTime()).thenAnswer(invocation -> now);
+        when(leaseRepository.count()).thenAnswer(invocation -> (long) leases.size());
+        when(leaseRepository.existsById(anyInt())).thenAnswer(invocation -> leases.containsKey(invocation.<Integer>getArgument(0)));
+        when(leaseRepository.save(any())).thenAnswer(invocation -> {
+            PartitionLeaseEntity lease = invocation.getArgument(0);
+            leases.put(lease.getPartitionId(), lease);
+            return lease;
+        });
+        when(leaseRepository.findAll()).thenAnswer(invocation -> List.copyOf(leases.values()));
+        when(leaseRepository.findById(anyInt())).thenAnswer(invocation -> Optional.ofNullable(leases.get(invocation.<Integer>getArgument(0))));
+        when(leaseRepository.renew(anyString(), any())).thenAnswer(invocation -> {
+            int renewed = 0;
+            for (PartitionLeaseEntity lease : leases.values()) {
+                if (invocation.getArgument(0).equals(lease.getOwnerNode())) {
+                    lease.setLeaseUntil(invocation.getArgument(1));
+                    renewed++;
+                }
+            }
+            return renewed;
+        });
+        when(leaseRepository.acquire(anyInt(), anyString(), anyString(), any(), any())).thenAnswer(invocation -> {
+            PartitionLeaseEntity lease = leases.get(invocation.<Integer>getArgument(0));
+            LocalDateTime at = invocation.getArgument(3);
+            if (lease.getOwnerNode() != null && !lease.getLeaseUntil().isBefore(at)) {
+                return 0;
+            }
+            lease.setOwnerNode(invocation.getArgument(1));
+            lease.setOwnerUrl(invocation.getArgument(2));
+            lease.setLeaseUntil(invocation.getArgument(4));
+            lease.setEpoch(lease.getEpoch() + 1);
+            return 1;
+        });
+        when(leaseRepository.release(anyInt(), anyString())).thenAnswer(invocation -> {
+            PartitionLeaseEntity lease = leases.get(invocation.<Integer>getArgument(0));
+            if (!invocation.getArgument(1).equals(lease.getOwnerNode())) {
+                return 0;
+            }
+            lease.setOwnerNode(null);
+            lease.setOwnerUrl(null);
+            lease.setLeaseUntil(null);
+            return 1;
+        });
+
+        ClusterNodeRepository nodeRepository = mock(ClusterNodeRepository.class);
+        when(nodeRepository.findByHeartbeatAtAfter(any())).thenAnswer(invocation -> List.copyOf(liveNodes));
+        liveNodes.add(new ClusterNodeEntity(NODE, URL, now));
+
+        stateTable = mock(StateTable.class);
+        stateFlusher = mock(StateFlusher.class);
+        when(stateFlusher.flush()).thenReturn(true);
+        backgroundSyncService = mock(BackgroundSyncService.class);
+
+        manager = new PartitionLeaseManager(partitions, leaseRepository, nodeRepository, stateTable, stateFlusher,
+            backgroundSyncService);
+        ReflectionTestUtils.setField(manager, "leaseDurationMs", 10_000L);
+        manager.init();
+    }
+
+    @Test
+    void initCreatesTheLeasesAndFencesTheStateTable() {
+        assertEquals(PARTITIONS, leases.size());
+        verify(stateTable).setWriteFence(partitions);
+    }
+
+    @Test
+    void acquiresAnEqualShareOfTheFreePartitions() {
+        liveNodes.add(new ClusterNodeEntity("node-b", "http://localhost:8092", now));
+
+        manager.renewLeases();
+
+        Set<Integer> owned = ownedBy(NODE);
+        assertEquals(2, owned.size());
+        for (int partition : owned) {
+            assertTrue(partitions.isServing(partition));
+            assertEquals(1, leases.get(partition).getEpoch());
+        }
+        verify(stateTable).unloadComponents(any());
+        verify(backgroundSyncService).restoreBackgroundWork(any());
+    }
+
+    @Test
+    void reacquiringAPartitionMovesItToANewEpoch() {
+        manager.renewLeases();
+        leases.get(0).setEpoch(5);
+        leases.get(0).setOwnerNode("node-b");
+        leases.get(0).setLeaseUntil(now.minusSeconds(1));
+        partitions.stopServing(0);
+
+        manager.renewLeases();
+
+        assertEquals(NODE, leases.get(0).getOwnerNode());
+        assertEquals(6, leases.get(0).getEpoch());
+        // Rows of the partition are now written under the new epoch
+        assertEquals(6, partitions.token(componentOf(0)));
+    }
+
+    @Test
+    void releasesTheExcessOnceItsChangesAreFlushed() {
+        manager.renewLeases();
+        assertEquals(PARTITIONS, ownedBy(NODE).size());
+
+        liveNodes.add(new ClusterNodeEntity("node-b", "http://localhost:8092", now));
+        manager.renewLeases();
+
+        assertEquals(2, ownedBy(NODE).size());
+        verify(stateFlusher).flush();
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            assertEquals(ownedBy(NODE).contains(partition), partitions.isMarkedServing(partition));
+        }
+    }
+
+    @Test
+    void keepsTheLeasesUntilTheFlushBeforeReleasingSucceeds() {
+        manager.renewLeases();
+        liveNodes.add(new ClusterNodeEntity("node-b", "http://localhost:8092", now));
+        when(stateFlusher.flush()).thenReturn(false);
+
+        manager.renewLeases();
+
+        // No longer served, but still held so no other node loads rows missing these changes
+        assertEquals(PARTITIONS, ownedBy(NODE).size());
+        verify(leaseRepository, never()).release(anyInt(), anyString());
+        Set<Integer> unserved = new TreeSet<>();
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            if (!partitions.isMarkedServing(partition)) {
+                unserved.add(partition);
+            }
+        }
+        assertEquals(2, unserved.size());
+
+        when(stateFlusher.flush()).thenReturn(true);
+        manager.renewLeases();
+
+        assertEquals(2, ownedBy(NODE).size());
+        for (int partition : unserved) {
+            assertFalse(ownedBy(NODE).contains(partition));
+        }
+    }
+
+    @Test
+    void lostLeaseStopsServingItsPartition() {
+        manager.renewLeases();
+        // This node missed its renewals and another node took the expired lease over
+        now = now.plusSeconds(20);
+        liveNodes.set(0, new ClusterNodeEntity(NODE, URL, now));
+        liveNodes.add(new ClusterNodeEntity("node-b", "http://localhost:8092", now));
+        when(leaseRepository.renew(eq(NODE), any())).thenReturn(0);
+        leases.values().forEach(lease -> {
+            lease.setOwnerNode("node-b");
+            lease.setOwnerUrl("http://localhost:8092");
+            lease.setLeaseUntil(now.plusSeconds(10));
+            lease.setEpoch(lease.getEpoch() + 1);
+        });
+
+        manager.renewLeases();
+
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            assertFalse(partitions.isMarkedServing(partition));
+            assertEquals("http://localhost:8092", partitions.ownerUrl(partition));
+        }
+        verify(leaseRepository, never()).release(anyInt(), anyString());
+    }
+
+    @Test
+    void shutdownReleasesEveryLeaseAfterFlushing() {
+        manager.renewLeases();
+
+        manager.shutdown();
+
+        verify(stateFlusher).flush();
+        verify(leaseRepository).releaseAll(NODE);
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            assertFalse(partitions.isMarkedServing(partition));
+        }
+    }
+
+    private String componentOf(int partition) {
+        for (int i = 0; ; i++) {
+            if (partitions.partitionOf("c" + i) == partition) {
+                return "c" + i;
+            }
+        }
+    }
+
+    private Set<Integer> ownedBy(String node) {
+        Set<Integer> owned = new TreeSet<>();
+        leases.forEach((partition, lease) -> {
+            if (node.equals(lease.getOwnerNode())) {
+                owned.add(partition);
+            }
+        });
+        return owned;
+    }
+}
@@ -0,0 +1,93 @@
+package org.consistency.megamodel.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventRingBufferTest {
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(4, new EventRingBuffer<Integer>(3).capacity());
+        assertEquals(4, new EventRingBuffer<Integer>(4).capacity());
+        assertEquals(8, new EventRingBuffer<Integer>(5).capacity());
+    }
+
+    @Test
+    void fullBufferRefusesUntilDrained() {
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(1, buffer.drainTo(drained, 1));
+        assertTrue(buffer.offer(4));
+        assertFalse(buffer.offer(5));
+    }
+
+    @Test
+    void elementsAreDrainedInOrderAcrossWrapAround() {
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<>(4);
+        List<Integer> drained = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(buffer.offer(i));
+            if (i % 3 == 2) {
+                buffer.drainTo(drained, 3);
+            }
+        }
+        while (buffer.drainTo(drained, 2) > 0) {
+            // drains the rest in batches of two
+        }
+
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), drained);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void concurrentProducersLoseNothing() throws Exception {
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<>(1024);
+        int producers = 4;
+        int perProducer = 10_000;
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int offset = p * perProducer;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(offset + i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        List<Integer> drained = new ArrayList<>();
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (drained.size() < producers * perProducer && System.nanoTime() < deadline) {
+            buffer.drainTo(drained, 256);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(producers * perProducer, drained.size());
+        // Each producer's elements keep their order
+        int[] last = new int[producers];
+        Arrays.fill(last, -1);
+        for (int element : drained) {
+            int producer = element / perProducer;
+            assertTrue(element > last[producer]);
+            last[producer] = element;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.consistency.megamodel.event;
+
+import org.consistency.megamodel.model.ComponentState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StateEventBusTest {
+    private final RecordingListener listener = new RecordingListener();
+    private StateEventBus bus;
+
+    @AfterEach
+    void tearDown() {
+        listener.release.countDown();
+        bus.stop();
+    }
+
+    @Test
+    void idleDispatcherIsWokenByAPublisher() throws Exception {
+        start(BackpressurePolicy.BLOCK);
+        listener.release.countDown();
+        // Long enough for the dispatcher to park, which it does without a timeout
+        Thread.sleep(50);
+
+        bus.publish(event(0));
+
+        awaitDelivered(1);
+        assertEquals(List.of(0L), listener.versions);
+    }
+
+    @Test
+    void blockWaitsForSpaceAndKeepsOrder() throws Exception {
+        start(BackpressurePolicy.BLOCK);
+        fillWhileDispatcherIsBusy();
+
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> bus.publish(event(5)));
+        Thread.sleep(100);
+        assertFalse(blocked.isDone());
+
+        listener.release.countDown();
+        blocked.get(10, TimeUnit.SECONDS);
+        awaitDelivered(6);
+        assertEquals(versions(6), listener.versions);
+        assertEquals(0, bus.getDroppedEvents());
+    }
+
+    @Test
+    void dropDiscardsWhatDoesNotFit() throws Exception {
+        start(BackpressurePolicy.DROP);
+        fillWhileDispatcherIsBusy();
+
+        bus.publish(event(5));
+        assertEquals(1, bus.getDroppedEvents());
+
+        listener.release.countDown();
+        awaitDelivered(5);
+        assertEquals(versions(5), listener.versions);
+    }
+
+    @Test
+    void callerRunsDeliversTheQueuedEventsBeforeItsOwn() throws Exception {
+        start(BackpressurePolicy.CALLER_RUNS);
+        fillWhileDispatcherIsBusy();
+
+        CompletableFuture<Void> caller = CompletableFuture.runAsync(() -> bus.publish(event(5)));
+        Thread.sleep(100);
+        // Waits for the batch the dispatcher is delivering instead of overtaking it
+        assertFalse(caller.isDone());
+
+        listener.release.countDown();
+        caller.get(10, TimeUnit.SECONDS);
+        // Everything was delivered by the time the publishing thread returns
+        assertEquals(versions(6), listener.versions);
+    }
+
+    @Test
+    void eventsOfARolledBackTransactionAreDeliveredWhenItCompletes() throws Exception {
+        start(BackpressurePolicy.BLOCK);
+        listener.release.countDown();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            bus.publish(event(0));
+            bus.publish(event(1));
+            Thread.sleep(50);
+            assertTrue(listener.versions.isEmpty());
+
+            // The state table keeps the changes of a rolled back transaction
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        awaitDelivered(2);
+        assertEquals(versions(2), listener.versions);
+    }
+
+    // One event held by the dispatcher inside the listener and a full buffer behind it
+    private void fillWhileDispatcherIsBusy() throws InterruptedException {
+        bus.publish(event(0));
+        assertTrue(listener.delivering.await(10, TimeUnit.SECONDS));
+        for (long version = 1; version <= 4; version++) {
+            bus.publish(event(version));
+        }
+        assertEquals(4, bus.getQueuedEvents());
+    }
+
+    private void start(BackpressurePolicy policy) {
+        @SuppressWarnings("unchecked")
+        ObjectProvider<StateChangeBatchListener> listeners = mock(ObjectProvider.class);
+        when(listeners.orderedStream()).thenReturn(Stream.of(listener));
+        bus = new StateEventBus(mock(ApplicationEventPublisher.class), listeners);
+        ReflectionTestUtils.setField(bus, "bufferSize", 4);
+        ReflectionTestUtils.setField(bus, "batchSize", 1);
+        ReflectionTestUtils.setField(bus, "backpressurePolicy", policy);
+        bus.start();
+    }
+
+    private void awaitDelivered(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (listener.versions.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static List<Long> versions(int count) {
+        return LongStream.range(0, count).boxed().toList();
+    }
+
+    private StateChangeEvent event(long version) {
+        return new StateChangeEvent(this, "ms1", "c1", ComponentState.INVALID, ComponentState.MODIFIED,
+            version, "WRITE");
+    }
+
+    private static class RecordingListener implements StateChangeBatchListener {
+        private final List<Long> versions = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch delivering = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void onStateChanges(List<StateChangeEvent> events) {
+            delivering.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.forEach(event -> versions.add(event.getVersion()));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.consistency.megamodel.expression;
+
+import org.consistency.megamodel.model.ComponentState;
+import org.consistency.megamodel.model.ConsistencyType;
+import org.consistency.megamodel.state.ComponentStateEntry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConditionExpressionTest {
+    private final Map<String, ComponentStateEntry> entries = new HashMap<>();
+    private final StateLookup states = (microserviceId, componentId) -> entries.get(microserviceId + '/' + componentId);
+
+    private void put(String microserviceId, String componentId, ComponentState state, ConsistencyType type, long version) {
+        entries.put(microserviceId + '/' + componentId, new ComponentStateEntry(
+            1L, microserviceId, componentId, state, type, version, LocalDateTime.now(), null));
+    }
+
+    private boolean eval(String expression) {
+        return ConditionExpression.compile(expression).evaluate(states);
+    }
+
+    @Test
+    void comparesStatesConsistencyTypesAndVersions() {
+        put("orders", "order-db", ComponentState.MODIFIED, ConsistencyType.STRONG, 4);
+        put("billing", "order-db", ComponentState.SHARED_MINUS, ConsistencyType.EVENTUAL, 2);
+
+        assertTrue(eval("state(orders, order-db) == MODIFIED"));
+        assertTrue(eval("state(billing, order-db) != MODIFIED"));
+        assertTrue(eval("consistency('billing', \"order-db\") == EVENTUAL"));
+        assertTrue(eval("version(orders, order-db) > version(billing, order-db)"));
+        assertTrue(eval("3 < version(orders, order-db)"));
+        assertFalse(eval("version(billing, order-db) >= 3"));
+    }
+
+    @Test
+    void missingEntriesCompareAsNull() {
+        assertTrue(eval("state(shipping, order-db) == null"));
+        assertFalse(eval("exists(shipping, order-db)"));
+        assertFalse(eval("version(shipping, order-db) >= 0"));
+    }
+
+    @Test
+    void orderingComparisonsWithAMissingValueAreFalse() {
+        put("orders", "order-db", ComponentState.MODIFIED, ConsistencyType.STRONG, 4);
+
+        assertFalse(eval("version(shipping, order-db) < 5"));
+        assertFalse(eval("5 > version(shipping, order-db)"));
+        assertFalse(eval("version(shipping, order-db) <= version(orders, order-db)"));
+        assertFalse(eval("version(orders, order-db) > version(shipping, order-db)"));
+        assertTrue(eval("version(shipping, order-db) != version(orders, order-db)"));
+    }
+
+    @Test
+    void combinesConditionsWithPrecedence() {
+        put("orders", "order-db", ComponentState.SHARED_PLUS, ConsistencyType.STRONG, 1);
+
+        assertTrue(eval("false && true || state(orders, order-db) == SHARED_PLUS"));
+        assertFalse(eval("false && (true || state(orders, order-db) == SHARED_PLUS)"));
+        assertTrue(eval("not exists(billing, order-db) and !(version(orders, order-db) == 2)"));
+        assertTrue(eval("exists(orders, order-db) == true"));
+    }
+
+    @Test
+    void seesStateChangesWithoutRecompiling() {
+        ConditionExpression expression = ConditionExpression.compile("state(orders, order-db) == INVALID");
+        put("orders", "order-db", ComponentState.MODIFIED, ConsistencyType.STRONG, 1);
+        assertFalse(expression.evaluate(states));
+        put("orders", "order-db", ComponentState.INVALID, ConsistencyType.STRONG, 1);
+        assertTrue(expression.evaluate(states));
+    }
+
+    @Test
+    void collectsReferencedComponents() {
+        ConditionExpression expression = ConditionExpression.compile(
+            "exists(a, c1) && state(b, c2) == MODIFIED || version(a, c1) > 1");
+        assertEquals(Set.of("c1", "c2"), expression.componentIds());
+    }
+
+    @Test
+    void rejectsInvalidExpressions() {
+        assertThrows(ExpressionException.class, () -> ConditionExpression.compile(""));
+        assertThrows(ExpressionException.class, () -> ConditionExpression.compile("state(a, c) == UNKNOWN"));
+        assertThrows(ExpressionException.class, () -> ConditionExpression.compile("state(a, c) > MODIFIED"));
+        assertThrows(ExpressionException.class, () -> ConditionExpression.compile("state(a, c) == EVENTUAL"));
+        assertThrows(ExpressionException.class, () -> ConditionExpression.compile("version(a, c) == MODIFIED"));
+        assertThrows(ExpressionException.class, () -> ConditionExpression.compile("version(a, c)"));
+        assertThrows(ExpressionException.class, () -> ConditionExpression.compile("owner(c) == MODIFIED"));
+        assertThrows(ExpressionException.class, () -> ConditionExpression.compile("exists(a, c) &&"));
+        assertThrows(ExpressionException.class, () -> ConditionExpression.compile("(exists(a, c)"));
+        assertThrows(ExpressionException.class, () -> ConditionExpression.compile("MODIFIED == null"));
+        assertThrows(ExpressionException.class, () -> ConditionExpression.compile("version(a, c) > 99999999999999999999"));
+    }
+}
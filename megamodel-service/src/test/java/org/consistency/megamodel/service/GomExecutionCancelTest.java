@@ -0,0 +1,119 @@
+package org.consistency.megamodel.service;
+
+import org.consistency.megamodel.cluster.ClusterClient;
+import org.consistency.megamodel.cluster.ComponentRouter;
+import org.consistency.megamodel.cluster.PartitionTable;
+import org.consistency.megamodel.model.GlobalOperationModelEntity;
+import org.consistency.megamodel.model.GlobalOperationModelRepository;
+import org.consistency.megamodel.model.GomInstanceEntity;
+import org.consistency.megamodel.model.GomInstanceStatus;
+import org.consistency.megamodel.model.ModelNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GomExecutionCancelTest {
+    private static final String GOM = "g1";
+    private static final String INSTANCE = "i1";
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private GomInstanceService gomInstanceService;
+    private GlobalOperationModelService service;
+
+    @BeforeEach
+    void setUp() {
+        GlobalOperationModelEntity gom = new GlobalOperationModelEntity();
+        gom.setId(GOM);
+        gom.setName("cancel-me");
+        GlobalOperationModelRepository gomRepository = mock(GlobalOperationModelRepository.class);
+        when(gomRepository.findById(GOM)).thenReturn(Optional.of(gom));
+
+        gomInstanceService = mock(GomInstanceService.class);
+        when(gomInstanceService.createInstance(eq(GOM), anyString(), eq(GomInstanceStatus.QUEUED)))
+            .thenAnswer(invocation -> {
+                GomInstanceEntity instance = new GomInstanceEntity();
+                instance.setId(INSTANCE);
+                instance.setStatus(GomInstanceStatus.QUEUED);
+                return instance;
+            });
+
+        // Runs until the execution is cancelled, like the real executor does between steps
+        GomStepExecutor stepExecutor = mock(GomStepExecutor.class);
+        doAnswer(invocation -> {
+            BooleanSupplier cancelled = invocation.getArgument(2);
+            started.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!cancelled.getAsBoolean() && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            throw new CancellationException("GOM execution cancelled");
+        }).when(stepExecutor).execute(any(), any(), any());
+
+        StateTransitionService stateTransitionService = mock(StateTransitionService.class);
+        when(stateTransitionService.getComponentStates(any())).thenReturn(Map.of());
+
+        CoherenceProtocolRegistry protocols = new CoherenceProtocolRegistry(List.of(new DefaultCoherenceProtocol()));
+        ReflectionTestUtils.setField(protocols, "defaultProtocolName", DefaultCoherenceProtocol.NAME);
+        protocols.init();
+
+        service = new GlobalOperationModelService(gomRepository, stateTransitionService, gomInstanceService,
+            stepExecutor, mock(PlatformTransactionManager.class), protocols,
+            new ComponentRouter(new PartitionTable()), mock(ClusterClient.class), mock(MetadataCache.class));
+        ReflectionTestUtils.setField(service, "executionConcurrency", 1);
+        ReflectionTestUtils.setField(service, "executionQueueCapacity", 1);
+        ReflectionTestUtils.invokeMethod(service, "init");
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void waitingExecuteReportsCancellation() throws Exception {
+        CompletableFuture<GomInstanceEntity> execution = CompletableFuture.supplyAsync(
+            () -> service.executeGom(GOM));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        assertTrue(service.cancelExecution(INSTANCE));
+
+        GomInstanceEntity instance = execution.get(10, TimeUnit.SECONDS);
+        assertEquals(GomInstanceStatus.CANCELLED, instance.getStatus());
+        verify(gomInstanceService).finishInstance(eq(INSTANCE), eq(GomInstanceStatus.CANCELLED), any(), any());
+    }
+
+    @Test
+    void cancellingAFinishedInstanceFailsAndAnUnknownOneIsNotFound() {
+        GomInstanceEntity finished = new GomInstanceEntity();
+        finished.setId("finished");
+        finished.setStatus(GomInstanceStatus.COMPLETED);
+        when(gomInstanceService.getInstance("finished")).thenReturn(Optional.of(finished));
+        when(gomInstanceService.getInstance("unknown")).thenReturn(Optional.empty());
+
+        assertFalse(service.cancelExecution("finished"));
+        assertThrows(ModelNotFoundException.class, () -> service.cancelExecution("unknown"));
+    }
+}
@@ -0,0 +1,190 @@
+package org.consistency.megamodel.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.consistency.megamodel.cluster.ClusterClient;
+import org.consistency.megamodel.model.ComponentModelRepository;
+import org.consistency.megamodel.model.ComponentModelSummary;
+import org.consistency.megamodel.model.GlobalOperationModelEntity;
+import org.consistency.megamodel.model.GlobalOperationModelRepository;
+import org.consistency.megamodel.model.MicroserviceRepository;
+import org.consistency.megamodel.model.MicroserviceSummary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MetadataCacheTest {
+    private MicroserviceRepository microservices;
+    private ComponentModelRepository components;
+    private GlobalOperationModelRepository goms;
+    private ClusterClient clusterClient;
+    private MetadataCache cache;
+
+    @BeforeEach
+    void setUp() {
+        microservices = mock(MicroserviceRepository.class);
+        components = mock(ComponentModelRepository.class);
+        goms = mock(GlobalOperationModelRepository.class);
+        clusterClient = mock(ClusterClient.class);
+        cache = new MetadataCache(microservices, components, goms, clusterClient,
+            new ObjectMapper().findAndRegisterModules(), mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(cache, "maximumSize", 100L);
+        ReflectionTestUtils.setField(cache, "expireAfterWriteMs", 60_000L);
+        cache.init();
+    }
+
+    @Test
+    void readsAreServedFromTheCacheUntilInvalidated() {
+        when(microservices.findSummaryById("ms1"))
+            .thenReturn(Optional.of(new MicroserviceSummary("ms1", "orders", null)))
+            .thenReturn(Optional.of(new MicroserviceSummary("ms1", "orders-v2", null)));
+
+        assertEquals("orders", cache.findMicroservice("ms1").orElseThrow().name());
+        assertEquals("orders", cache.findMicroservice("ms1").orElseThrow().name());
+        verify(microservices, times(1)).findSummaryById("ms1");
+
+        cache.invalidateMicroservice("ms1");
+
+        assertEquals("orders-v2", cache.findMicroservice("ms1").orElseThrow().name());
+        verify(microservices, times(2)).findSummaryById("ms1");
+    }
+
+    @Test
+    void invalidationReachesThePeers() {
+        cache.invalidateMicroservice("ms1");
+        cache.invalidateComponent("c1");
+
+        verify(clusterClient).broadcast("/api/cluster/microservices/{id}/invalidate", null, "ms1");
+        verify(clusterClient).broadcast("/api/cluster/components/{id}/invalidate", null, "c1");
+    }
+
+    @Test
+    void invalidationFromAPeerIsNotBroadcastAgain() {
+        when(components.findSummaryById("c1")).thenReturn(Optional.of(summary("c1")));
+        cache.findComponent("c1");
+
+        cache.invalidateLocalComponent("c1");
+        cache.invalidateLocalMicroservice("ms1");
+        cache.findComponent("c1");
+
+        verify(components, times(2)).findSummaryById("c1");
+        verify(clusterClient, never()).broadcast(anyString(), any(), any());
+    }
+
+    @Test
+    void invalidatingOneIdKeepsTheOthers() {
+        when(components.findSummaryById(anyString()))
+            .thenAnswer(invocation -> Optional.of(summary(invocation.getArgument(0))));
+        cache.findComponent("c1");
+        cache.findComponent("c2");
+
+        cache.invalidateLocalComponent("c1");
+        cache.findComponent("c1");
+        cache.findComponent("c2");
+
+        verify(components, times(2)).findSummaryById("c1");
+        verify(components, times(1)).findSummaryById("c2");
+    }
+
+    @Test
+    void missesAreNotCached() {
+        when(components.findSummaryById("c1"))
+            .thenReturn(Optional.empty())
+            .thenReturn(Optional.of(summary("c1")));
+
+        assertTrue(cache.findComponent("c1").isEmpty());
+        // Created after the miss, visible without any invalidation
+        assertTrue(cache.findComponent("c1").isPresent());
+    }
+
+    @Test
+    void gomIsLoadedAgainAfterItsPlanIsInvalidated() {
+        GlobalOperationModelEntity gom = new GlobalOperationModelEntity();
+        gom.setId("g1");
+        when(goms.findById("g1")).thenReturn(Optional.of(gom));
+
+        cache.findGom("g1");
+        cache.findGom("g1");
+        verify(goms, times(1)).findById("g1");
+
+        cache.invalidateLocalGom("g1");
+        cache.findGom("g1");
+        verify(goms, times(2)).findById("g1");
+    }
+
+    @Test
+    void everyGomReadGetsItsOwnCopy() {
+        GlobalOperationModelEntity gom = new GlobalOperationModelEntity();
+        gom.setId("g1");
+        gom.setName("orders");
+        gom.setPreconditions(List.of("exists(ms1, c1)"));
+        when(goms.findById("g1")).thenReturn(Optional.of(gom));
+
+        GlobalOperationModelEntity first = cache.findGom("g1").orElseThrow();
+        first.setName("changed by a caller");
+        first.getPreconditions().clear();
+
+        GlobalOperationModelEntity second = cache.findGom("g1").orElseThrow();
+        assertEquals("orders", second.getName());
+        assertEquals(List.of("exists(ms1, c1)"), second.getPreconditions());
+        verify(goms, times(1)).findById("g1");
+    }
+
+    @Test
+    void invalidationDuringALoadRemovesWhatTheLoadRead() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch saved = new CountDownLatch(1);
+        when(components.findSummaryById("c1"))
+            .thenAnswer(invocation -> {
+                loading.countDown();
+                saved.await(10, TimeUnit.SECONDS);
+                return Optional.of(new ComponentModelSummary("c1", "before", null, null));
+            })
+            .thenReturn(Optional.of(new ComponentModelSummary("c1", "after", null, null)));
+
+        CompletableFuture<Optional<ComponentModelSummary>> load = CompletableFuture.supplyAsync(() -> cache.findComponent("c1"));
+        assertTrue(loading.await(10, TimeUnit.SECONDS));
+        // The save commits while the load still holds the previous version
+        CompletableFuture<Void> invalidation = CompletableFuture.runAsync(() -> cache.invalidateLocalComponent("c1"));
+        Thread.sleep(50);
+        assertFalse(invalidation.isDone());
+
+        saved.countDown();
+        assertEquals("before", load.get(10, TimeUnit.SECONDS).orElseThrow().name());
+        invalidation.get(10, TimeUnit.SECONDS);
+        assertEquals("after", cache.findComponent("c1").orElseThrow().name());
+    }
+
+    @Test
+    void statsCountHitsAndMisses() {
+        when(components.findSummaryById("c1")).thenReturn(Optional.of(summary("c1")));
+        cache.findComponent("c1");
+        cache.findComponent("c1");
+        cache.findComponent("c1");
+
+        assertEquals(2L, cache.getStats().get("components").get("hits"));
+        assertEquals(1L, cache.getStats().get("components").get("misses"));
+        assertEquals(1L, cache.getStats().get("components").get("size"));
+    }
+
+    private static ComponentModelSummary summary(String id) {
+        return new ComponentModelSummary(id, id, null, null);
+    }
+}
@@ -0,0 +1,82 @@
+package org.consistency.megamodel.service;
+
+import org.consistency.megamodel.cluster.ClusterClient;
+import org.consistency.megamodel.cluster.PartitionTable;
+import org.consistency.megamodel.model.ComponentModelServiceRepository;
+import org.consistency.megamodel.model.ComponentState;
+import org.consistency.megamodel.model.ConsistencyType;
+import org.consistency.megamodel.state.IdRegistry;
+import org.consistency.megamodel.state.StateCount;
+import org.consistency.megamodel.state.StateFlusher;
+import org.consistency.megamodel.state.StateGauges;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MetricsServiceTest {
+    private StateGauges stateGauges;
+    private StateFlusher stateFlusher;
+    private MetricsService metricsService;
+
+    @BeforeEach
+    void setUp() {
+        stateGauges = new StateGauges(new IdRegistry());
+        stateFlusher = mock(StateFlusher.class);
+        when(stateFlusher.flush()).thenReturn(true);
+        metricsService = new MetricsService(mock(ComponentModelServiceRepository.class), stateGauges, stateFlusher,
+            new IdRegistry(), mock(PartitionTable.class), mock(ClusterClient.class));
+        // What this node's gauges show before the leader counts
+        stateGauges.reconcile(stateGauges.snapshot(), List.of(count(ComponentState.MODIFIED, 1)));
+    }
+
+    @Test
+    void countsAreAppliedIfNothingChangedSincePreparing() {
+        metricsService.prepareStateCounts();
+        verify(stateFlusher).flush();
+
+        metricsService.applyStateCounts(List.of(count(ComponentState.INVALID, 3)));
+
+        assertEquals(0L, stateGauges.byState().get(ComponentState.MODIFIED));
+        assertEquals(3L, stateGauges.byState().get(ComponentState.INVALID));
+    }
+
+    @Test
+    void countsAreIgnoredWithoutPreparing() {
+        metricsService.applyStateCounts(List.of(count(ComponentState.INVALID, 3)));
+
+        assertEquals(1L, stateGauges.byState().get(ComponentState.MODIFIED));
+        assertEquals(0L, stateGauges.byState().get(ComponentState.INVALID));
+    }
+
+    @Test
+    void countsAreIgnoredIfTheGaugesChangedSincePreparing() {
+        metricsService.prepareStateCounts();
+        // A change this node made after flushing, which the leader's count may not include
+        stateGauges.reconcile(stateGauges.snapshot(), List.of(count(ComponentState.MODIFIED, 2)));
+
+        metricsService.applyStateCounts(List.of(count(ComponentState.INVALID, 3)));
+
+        assertEquals(2L, stateGauges.byState().get(ComponentState.MODIFIED));
+        assertEquals(0L, stateGauges.byState().get(ComponentState.INVALID));
+    }
+
+    @Test
+    void countsAreIgnoredIfTheFlushBeforeThemFailed() {
+        when(stateFlusher.flush()).thenReturn(false);
+        metricsService.prepareStateCounts();
+
+        metricsService.applyStateCounts(List.of(count(ComponentState.INVALID, 3)));
+
+        assertEquals(1L, stateGauges.byState().get(ComponentState.MODIFIED));
+    }
+
+    private static StateCount count(ComponentState state, long count) {
+        return new StateCount("c1", ConsistencyType.STRONG, state, count);
+    }
+}
@@ -0,0 +1,274 @@
+package org.consistency.megamodel.service;
+
+import org.consistency.megamodel.cluster.ClusterClient;
+import org.consistency.megamodel.cluster.ComponentRouter;
+import org.consistency.megamodel.cluster.PartitionTable;
+import org.consistency.megamodel.event.StateChangeEvent;
+import org.consistency.megamodel.event.StateEventBus;
+import org.consistency.megamodel.expression.ConditionExpression;
+import org.consistency.megamodel.model.ComponentModelEntity;
+import org.consistency.megamodel.model.ComponentModelRepository;
+import org.consistency.megamodel.model.ComponentModelServiceEntity;
+import org.consistency.megamodel.model.ComponentModelServiceRepository;
+import org.consistency.megamodel.model.ComponentState;
+import org.consistency.megamodel.model.ConsistencyType;
+import org.consistency.megamodel.model.MicroserviceEntity;
+import org.consistency.megamodel.model.MicroserviceRepository;
+import org.consistency.megamodel.model.ModelNotFoundException;
+import org.consistency.megamodel.model.OperationType;
+import org.consistency.megamodel.model.StateOperation;
+import org.consistency.megamodel.state.ComponentStateEntry;
+import org.consistency.megamodel.state.IdRegistry;
+import org.consistency.megamodel.state.StalenessTimer;
+import org.consistency.megamodel.state.StateGauges;
+import org.consistency.megamodel.state.StateTable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StateTransitionConcurrencyTest {
+    private static final String COMPONENT = "c1";
+    private static final String OTHER_COMPONENT = "c2";
+    private static final int SERVICES = 12;
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 2_000;
+
+    private ComponentModelServiceRepository repository;
+    private MicroserviceRepository microservices;
+    private ComponentModelRepository componentModels;
+    private StateTable stateTable;
+    private StateEventBus stateEventBus;
+    private CoherenceProtocolRegistry protocols;
+    private StateTransitionService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ComponentModelServiceRepository.class);
+        componentModels = mock(ComponentModelRepository.class);
+        ConsistencyType[] types = ConsistencyType.values();
+        long id = 0;
+        for (String componentId : List.of(COMPONENT, OTHER_COMPONENT)) {
+            List<ComponentStateEntry> entries = new ArrayList<>();
+            for (int i = 0; i < SERVICES; i++) {
+                entries.add(new ComponentStateEntry(id++, "ms" + i, componentId, ComponentState.INVALID,
+                    types[i % types.length], 0L, LocalDateTime.now(), null));
+            }
+            when(repository.findEntriesByComponentId(componentId)).thenReturn(entries);
+            when(componentModels.existsById(componentId)).thenReturn(true);
+        }
+
+        StalenessTimer stalenessTimer = new StalenessTimer();
+        IdRegistry ids = new IdRegistry();
+        stateTable = new StateTable(repository, componentModels, stalenessTimer, new StateGauges(ids), ids,
+            mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(stateTable, "shardCount", 4);
+        ReflectionTestUtils.invokeMethod(stateTable, "init");
+
+        protocols = new CoherenceProtocolRegistry(List.of(new DefaultCoherenceProtocol()));
+        ReflectionTestUtils.setField(protocols, "defaultProtocolName", DefaultCoherenceProtocol.NAME);
+        protocols.init();
+
+        microservices = mock(MicroserviceRepository.class);
+        stateEventBus = mock(StateEventBus.class);
+        service = new StateTransitionService(stateTable, ids, stalenessTimer,
+            microservices, componentModels,
+            stateEventBus, mock(MetricsService.class), protocols,
+            new ComponentRouter(new PartitionTable()), mock(ClusterClient.class));
+    }
+
+    @Test
+    void concurrentWritersGetUniqueVersionsAndNeverShareModified() throws Exception {
+        Set<Long> versions = ConcurrentHashMap.newKeySet();
+        AtomicInteger writes = new AtomicInteger();
+        AtomicInteger violations = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int seed = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    String microserviceId = "ms" + ((seed * 7 + i) % SERVICES);
+                    if ((i + seed) % 3 == 0) {
+                        service.handleReadOperation(microserviceId, COMPONENT);
+                    } else {
+                        versions.add(service.handleWriteOperation(microserviceId, COMPONENT).getVersion());
+                        writes.incrementAndGet();
+                    }
+                    long modified = stateTable.query(COMPONENT, slot -> slot.entries().stream()
+                        .filter(entry -> entry.getState() == ComponentState.MODIFIED)
+                        .count());
+                    if (modified > 1) {
+                        violations.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(0, violations.get());
+        assertEquals(writes.get(), versions.size());
+        assertEquals(writes.get(), (long) stateTable.query(COMPONENT, slot -> slot.getMaxVersion()));
+        assertEquals(ComponentState.MODIFIED, stateTable.query(COMPONENT, slot -> slot.getOwner().getState()));
+    }
+
+    @Test
+    void guardIsCheckedUnderTheLockThatAppliesTheStep() throws Exception {
+        // Only holds until the first of the concurrent writes is applied
+        ConditionExpression guard = ConditionExpression.compile("version(ms0, c1) == 0");
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<ComponentStateEntry>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                return service.handleGuardedOperation("ms0", COMPONENT, OperationType.WRITE,
+                    protocols.defaultTable(), guard, (microserviceId, componentId) -> null);
+            }));
+        }
+        start.countDown();
+        int applied = 0;
+        for (Future<ComponentStateEntry> future : futures) {
+            applied += future.get(10, TimeUnit.SECONDS) != null ? 1 : 0;
+        }
+        pool.shutdown();
+
+        assertEquals(1, applied);
+        assertEquals(1L, (long) stateTable.query(COMPONENT, slot -> slot.getMaxVersion()));
+    }
+
+    @Test
+    void changesArePublishedAfterTheComponentLockIsReleased() {
+        // A publisher stalled by a full event buffer must not keep other threads off the component
+        List<Integer> holdersSeenWhilePublishing = new ArrayList<>();
+        doAnswer(invocation -> {
+            holdersSeenWhilePublishing.add(CompletableFuture
+                .supplyAsync(() -> stateTable.query(COMPONENT, slot -> slot.entries().size()))
+                .get(5, TimeUnit.SECONDS));
+            return null;
+        }).when(stateEventBus).publish(any());
+
+        service.handleWriteOperation("ms0", COMPONENT);
+        service.handleWriteOperation("ms1", COMPONENT);
+
+        // The first write publishes the writer, the second the writer and the invalidated first writer
+        verify(stateEventBus, times(3)).publish(any(StateChangeEvent.class));
+        assertEquals(List.of(SERVICES, SERVICES, SERVICES), holdersSeenWhilePublishing);
+    }
+
+    @Test
+    void batchFailingPartwayPublishesEveryChangeItKept() {
+        List<StateChangeEvent> events = new ArrayList<>();
+        doAnswer(invocation -> events.add(invocation.getArgument(0))).when(stateEventBus).publish(any());
+        when(microservices.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<MicroserviceEntity> found = new ArrayList<>();
+            invocation.<Iterable<String>>getArgument(0).forEach(id -> found.add(microservice(id)));
+            return found;
+        });
+        when(componentModels.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<ComponentModelEntity> found = new ArrayList<>();
+            invocation.<Iterable<String>>getArgument(0).forEach(id -> found.add(componentModel(id)));
+            return found;
+        });
+        // ms1 is deleted while the batch inserts the row of ms-new, after the batch checked
+        // that it holds the second component
+        when(repository.findByMicroserviceIdAndComponentModelId("ms-new", OTHER_COMPONENT)).thenAnswer(invocation -> {
+            stateTable.evictMicroservice("ms1");
+            return Optional.of(row(100L, "ms-new", OTHER_COMPONENT));
+        });
+
+        List<StateOperation> batch = List.of(
+            operation(OperationType.WRITE, "ms0", COMPONENT),
+            operation(OperationType.READ, "ms2", COMPONENT),
+            operation(OperationType.WRITE, "ms0", OTHER_COMPONENT),
+            operation(OperationType.WRITE, "ms-new", OTHER_COMPONENT),
+            operation(OperationType.WRITE, "ms1", OTHER_COMPONENT));
+        assertThrows(ModelNotFoundException.class, () -> service.handleBatchOperations(batch));
+
+        // Every holder left the initial INVALID state through a published event, and its last
+        // event names the state it is in
+        for (String componentId : List.of(COMPONENT, OTHER_COMPONENT)) {
+            Map<String, ComponentState> published = new HashMap<>();
+            events.stream()
+                .filter(event -> event.getComponentId().equals(componentId))
+                .forEach(event -> published.put(event.getMicroserviceId(), event.getNewState()));
+            Map<String, ComponentState> changed = stateTable.query(componentId, slot -> {
+                Map<String, ComponentState> states = new HashMap<>();
+                slot.entries().stream()
+                    .filter(entry -> entry.getState() != ComponentState.INVALID)
+                    .forEach(entry -> states.put(entry.getMicroserviceId(), entry.getState()));
+                return states;
+            });
+            published.remove("ms1");
+            published.values().removeIf(state -> state == ComponentState.INVALID);
+            assertEquals(changed, published, componentId);
+        }
+        assertEquals(ComponentState.MODIFIED,
+            stateTable.query(OTHER_COMPONENT, slot -> slot.getOwner().getState()));
+    }
+
+    private static StateOperation operation(OperationType type, String microserviceId, String componentId) {
+        StateOperation operation = new StateOperation();
+        operation.setOperation(type);
+        operation.setMicroserviceId(microserviceId);
+        operation.setComponentId(componentId);
+        return operation;
+    }
+
+    private static ComponentModelServiceEntity row(long id, String microserviceId, String componentId) {
+        ComponentModelServiceEntity row = new ComponentModelServiceEntity();
+        row.setId(id);
+        row.setMicroservice(microservice(microserviceId));
+        row.setComponentModel(componentModel(componentId));
+        row.setState(ComponentState.INVALID);
+        row.setConsistencyType(ConsistencyType.EVENTUAL);
+        row.setVersion(0L);
+        row.setTimestamp(LocalDateTime.now());
+        return row;
+    }
+
+    private static MicroserviceEntity microservice(String id) {
+        MicroserviceEntity microservice = new MicroserviceEntity();
+        microservice.setId(id);
+        return microservice;
+    }
+
+    private static ComponentModelEntity componentModel(String id) {
+        ComponentModelEntity componentModel = new ComponentModelEntity();
+        componentModel.setId(id);
+        return componentModel;
+    }
+}
@@ -0,0 +1,28 @@
+package org.consistency.megamodel.service;
+
+import org.consistency.megamodel.state.IdRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransitionLogTest {
+    private final TransitionLog log = new TransitionLog(4, new IdRegistry());
+
+    @Test
+    void limitIsClampedToTheCapacity() {
+        for (int i = 0; i < 6; i++) {
+            log.recordOperation("c1", "ms1", "OP" + i, null);
+        }
+
+        assertTrue(log.snapshot(-1, false).isEmpty());
+        assertTrue(log.snapshot(0, false).isEmpty());
+        List<TransitionLog.Entry> all = log.snapshot(Integer.MAX_VALUE, false);
+        assertEquals(4, all.size());
+        // Oldest first, the two oldest were overwritten
+        assertEquals("OP2", all.get(0).operation());
+        assertEquals("OP5", all.get(3).operation());
+    }
+}
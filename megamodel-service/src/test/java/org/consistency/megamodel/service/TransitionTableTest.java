@@ -0,0 +1,136 @@
+package org.consistency.megamodel.service;
+
+import org.consistency.megamodel.model.ComponentState;
+import org.consistency.megamodel.model.ConsistencyType;
+import org.consistency.megamodel.model.OperationType;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransitionTableTest {
+    private final TransitionTable defaults = new DefaultCoherenceProtocol().transitionTable();
+
+    @Test
+    void defaultProtocolMakesWritersModifiedAndDemotesPeers() {
+        for (ConsistencyType type : ConsistencyType.values()) {
+            for (ComponentState state : ComponentState.values()) {
+                assertEquals(ComponentState.MODIFIED, write(defaults, type, state, TransitionTable.Role.ACTOR));
+            }
+        }
+
+        assertEquals(ComponentState.INVALID, write(defaults, ConsistencyType.STRONG, ComponentState.SHARED_PLUS, TransitionTable.Role.PEER));
+        assertEquals(ComponentState.INVALID, write(defaults, ConsistencyType.STRONG, ComponentState.MODIFIED, TransitionTable.Role.PEER));
+        assertEquals(ComponentState.SHARED_MINUS, write(defaults, ConsistencyType.EVENTUAL, ComponentState.SHARED_PLUS, TransitionTable.Role.PEER));
+        assertEquals(ComponentState.SHARED_MINUS, write(defaults, ConsistencyType.READ_MY_WRITES, ComponentState.MODIFIED, TransitionTable.Role.PEER));
+        assertEquals(ComponentState.SHARED_MINUS, write(defaults, ConsistencyType.MONOTONIC_READS, ComponentState.MODIFIED, TransitionTable.Role.PEER));
+        assertEquals(ComponentState.SHARED_PLUS, write(defaults, ConsistencyType.MONOTONIC_READS, ComponentState.SHARED_PLUS, TransitionTable.Role.PEER));
+
+        assertTrue(defaults.peersChangeOnWrite(ConsistencyType.BOUNDED_STALENESS));
+        assertTrue(defaults.peersChangeOnWrite(ConsistencyType.MONOTONIC_READS));
+        assertTrue(defaults.keepsSingleWriter());
+    }
+
+    @Test
+    void singleWriterCheckRejectsReadsIntoModifiedAndWritersThatStayModified() {
+        assertFalse(defaults.withActorTarget(OperationType.READ, ComponentState.MODIFIED).keepsSingleWriter());
+        assertTrue(defaults.withActorTarget(OperationType.WRITE, ComponentState.SHARED_PLUS).keepsSingleWriter());
+
+        TransitionTable.Builder writersStay = TransitionTable.builder();
+        for (ConsistencyType type : ConsistencyType.values()) {
+            for (ComponentState state : ComponentState.values()) {
+                writersStay.set(type, state, OperationType.WRITE, TransitionTable.Role.ACTOR, ComponentState.MODIFIED);
+            }
+        }
+        TransitionTable broken = writersStay.build();
+        assertFalse(broken.keepsSingleWriter());
+        assertThrows(IllegalStateException.class,
+            () -> registry(List.of(new DefaultCoherenceProtocol(), protocol("writers-stay", broken))));
+    }
+
+    @Test
+    void defaultProtocolRefreshesOnlyInvalidReaders() {
+        assertEquals(ComponentState.SHARED_PLUS, read(defaults, ConsistencyType.STRONG, ComponentState.INVALID));
+        assertEquals(ComponentState.SHARED_MINUS, read(defaults, ConsistencyType.BOUNDED_STALENESS, ComponentState.INVALID));
+        assertEquals(ComponentState.SHARED_MINUS, read(defaults, ConsistencyType.EVENTUAL, ComponentState.SHARED_MINUS));
+        assertEquals(ComponentState.MODIFIED, read(defaults, ConsistencyType.STRONG, ComponentState.MODIFIED));
+        assertFalse(defaults.peersChangeOnRead());
+    }
+
+    @Test
+    void actorTargetOverridesOnlyTheActorOfThatOperation() {
+        TransitionTable overridden = defaults.withActorTarget(OperationType.READ, ComponentState.SHARED_PLUS);
+
+        assertEquals(ComponentState.SHARED_PLUS, read(overridden, ConsistencyType.EVENTUAL, ComponentState.INVALID));
+        assertEquals(ComponentState.SHARED_PLUS, read(overridden, ConsistencyType.EVENTUAL, ComponentState.SHARED_MINUS));
+        assertEquals(ComponentState.MODIFIED, write(overridden, ConsistencyType.EVENTUAL, ComponentState.INVALID, TransitionTable.Role.ACTOR));
+        assertEquals(ComponentState.INVALID, write(overridden, ConsistencyType.STRONG, ComponentState.SHARED_PLUS, TransitionTable.Role.PEER));
+        assertEquals(ComponentState.SHARED_MINUS, read(defaults, ConsistencyType.EVENTUAL, ComponentState.INVALID));
+        assertNotEquals(defaults, overridden);
+    }
+
+    @Test
+    void registryServesProtocolsSideBySide() {
+        CoherenceProtocol invalidateAll = protocol("invalidate-all", allPeersInvalidatedOnWrite());
+        CoherenceProtocolRegistry registry = registry(List.of(new DefaultCoherenceProtocol(), invalidateAll));
+
+        assertSame(registry.get(DefaultCoherenceProtocol.NAME), registry.get(null));
+        assertEquals(defaults, registry.defaultTable());
+        assertEquals(ComponentState.INVALID, write(registry.get("invalidate-all").transitionTable(),
+            ConsistencyType.MONOTONIC_READS, ComponentState.SHARED_PLUS, TransitionTable.Role.PEER));
+        assertThrows(IllegalArgumentException.class, () -> registry.get("missing"));
+    }
+
+    @Test
+    void registryRejectsDuplicateNames() {
+        assertThrows(IllegalStateException.class,
+            () -> registry(List.of(new DefaultCoherenceProtocol(), protocol(DefaultCoherenceProtocol.NAME, defaults))));
+    }
+
+    private static TransitionTable allPeersInvalidatedOnWrite() {
+        TransitionTable.Builder builder = TransitionTable.builder();
+        for (ConsistencyType type : ConsistencyType.values()) {
+            for (ComponentState state : ComponentState.values()) {
+                builder.set(type, state, OperationType.WRITE, TransitionTable.Role.ACTOR, ComponentState.MODIFIED);
+                builder.set(type, state, OperationType.WRITE, TransitionTable.Role.PEER, ComponentState.INVALID);
+            }
+        }
+        return builder.build();
+    }
+
+    private static CoherenceProtocol protocol(String name, TransitionTable table) {
+        return new CoherenceProtocol() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public TransitionTable transitionTable() {
+                return table;
+            }
+        };
+    }
+
+    private static CoherenceProtocolRegistry registry(List<CoherenceProtocol> protocols) {
+        CoherenceProtocolRegistry registry = new CoherenceProtocolRegistry(protocols);
+        ReflectionTestUtils.setField(registry, "defaultProtocolName", DefaultCoherenceProtocol.NAME);
+        registry.init();
+        return registry;
+    }
+
+    private static ComponentState write(TransitionTable table, ConsistencyType type, ComponentState state, TransitionTable.Role role) {
+        return table.next(type, state, OperationType.WRITE, role);
+    }
+
+    private static ComponentState read(TransitionTable table, ConsistencyType type, ComponentState state) {
+        return table.next(type, state, OperationType.READ, TransitionTable.Role.ACTOR);
+    }
+}
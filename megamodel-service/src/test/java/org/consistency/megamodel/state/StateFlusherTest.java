@@ -0,0 +1,184 @@
+package org.consistency.megamodel.state;
+
+import org.consistency.megamodel.model.ComponentModelRepository;
+import org.consistency.megamodel.model.ComponentModelServiceRepository;
+import org.consistency.megamodel.model.ComponentState;
+import org.consistency.megamodel.model.ConsistencyType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StateFlusherTest {
+    private static final String COMPONENT = "c1";
+
+    private JdbcTemplate jdbc;
+    private DataSourceTransactionManager transactionManager;
+    private StateTable stateTable;
+    private StateFlusher stateFlusher;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:flusher;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table component_model_services (id bigint primary key, state varchar(32), "
+            + "consistency_type varchar(32), version bigint, timestamp datetime(6), staleness_bound datetime(6))");
+        jdbc.execute("create table audit (id bigint primary key)");
+        jdbc.update("insert into component_model_services values (1, 'INVALID', 'STRONG', 0, null, null)");
+
+        ComponentModelServiceRepository repository = mock(ComponentModelServiceRepository.class);
+        when(repository.findEntriesByComponentId(COMPONENT)).thenReturn(new ArrayList<>(List.of(
+            new ComponentStateEntry(1L, "ms1", COMPONENT, ComponentState.INVALID, ConsistencyType.STRONG,
+                0L, null, null))));
+        ComponentModelRepository componentModels = mock(ComponentModelRepository.class);
+        when(componentModels.existsById(COMPONENT)).thenReturn(true);
+        IdRegistry ids = new IdRegistry();
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        stateTable = new StateTable(repository, componentModels, new StalenessTimer(), new StateGauges(ids), ids,
+            transactionManager);
+        ReflectionTestUtils.setField(stateTable, "shardCount", 4);
+        ReflectionTestUtils.invokeMethod(stateTable, "init");
+        stateFlusher = new StateFlusher(stateTable, jdbc, transactionManager);
+        ReflectionTestUtils.setField(stateFlusher, "batchSize", 100);
+        // Long enough that only a requested flush writes anything during a test
+        ReflectionTestUtils.setField(stateFlusher, "flushIntervalMs", 60_000L);
+        ReflectionTestUtils.setField(stateFlusher, "groupCommitIntervalMs", 1L);
+        ReflectionTestUtils.setField(stateFlusher, "durabilityTimeoutMs", 500L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (stateFlusher != null) {
+            ReflectionTestUtils.setField(stateFlusher, "durability", DurabilityMode.ASYNC);
+            stateFlusher.flushOnShutdown();
+        }
+        jdbc.execute("drop all objects");
+    }
+
+    @Test
+    void asyncLeavesChangesToTheNextFlush() {
+        start(DurabilityMode.ASYNC);
+        modify(7L);
+
+        assertEquals(0L, version());
+        assertEquals(1, stateTable.dirtyCount());
+        assertTrue(stateFlusher.flush());
+        assertEquals(7L, version());
+    }
+
+    @Test
+    void syncWritesBeforeTheCallReturns() {
+        start(DurabilityMode.SYNC);
+        modify(7L);
+
+        assertEquals(7L, version());
+        assertFalse(stateTable.hasDirtyEntries());
+    }
+
+    @Test
+    void groupCommitWaitsForTheFlusherThread() {
+        start(DurabilityMode.GROUP_COMMIT);
+        modify(7L);
+
+        assertEquals(7L, version());
+    }
+
+    @Test
+    void failedBatchIsQueuedAgainAndWrittenLater() {
+        start(DurabilityMode.ASYNC);
+        modify(7L);
+        jdbc.execute("alter table component_model_services rename to component_model_services_away");
+
+        assertFalse(stateFlusher.flush());
+        assertEquals(1, stateTable.dirtyCount());
+
+        jdbc.execute("alter table component_model_services_away rename to component_model_services");
+        assertTrue(stateFlusher.flush());
+        assertEquals(7L, version());
+    }
+
+    @Test
+    void syncFailureReachesTheCaller() {
+        start(DurabilityMode.SYNC);
+        jdbc.execute("alter table component_model_services rename to component_model_services_away");
+
+        assertThrows(StateDurabilityException.class, () -> modify(7L));
+        assertEquals(1, stateTable.dirtyCount());
+    }
+
+    @Test
+    void groupCommitTimesOutWhileFlushesFail() {
+        start(DurabilityMode.GROUP_COMMIT);
+        jdbc.execute("alter table component_model_services rename to component_model_services_away");
+
+        assertThrows(StateDurabilityException.class, () -> modify(7L));
+    }
+
+    @Test
+    void transactionWritesItsChangesBeforeCommitting() {
+        start(DurabilityMode.SYNC);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbc.update("insert into audit values (1)");
+            modify(7L);
+            // Deferred to the commit, once for the whole transaction
+            assertTrue(stateTable.hasDirtyEntries());
+        });
+
+        assertEquals(7L, version());
+        assertEquals(1, auditRows());
+    }
+
+    @Test
+    void transactionIsRolledBackWhenItsChangesCannotBeWritten() {
+        start(DurabilityMode.SYNC);
+        jdbc.execute("alter table component_model_services rename to component_model_services_away");
+
+        assertThrows(StateDurabilityException.class, () ->
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                jdbc.update("insert into audit values (1)");
+                modify(7L);
+            }));
+
+        assertEquals(0, auditRows());
+        assertEquals(1, stateTable.dirtyCount());
+    }
+
+    private void start(DurabilityMode durability) {
+        ReflectionTestUtils.setField(stateFlusher, "durability", durability);
+        stateFlusher.start();
+    }
+
+    private void modify(long version) {
+        stateTable.execute(COMPONENT, slot -> {
+            ComponentStateEntry entry = slot.entries().iterator().next();
+            entry.setState(ComponentState.MODIFIED);
+            entry.setVersion(version);
+            entry.setTimestamp(LocalDateTime.now());
+            stateTable.markDirty(entry);
+        });
+    }
+
+    private long version() {
+        return jdbc.queryForObject("select version from component_model_services where id = 1", Long.class);
+    }
+
+    private int auditRows() {
+        return jdbc.queryForObject("select count(*) from audit", Integer.class);
+    }
+}
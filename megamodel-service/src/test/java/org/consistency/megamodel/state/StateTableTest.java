@@ -0,0 +1,232 @@
+package org.consistency.megamodel.state;
+
+import org.consistency.megamodel.model.ComponentModelEntity;
+import org.consistency.megamodel.model.ComponentModelRepository;
+import org.consistency.megamodel.model.ComponentModelServiceEntity;
+import org.consistency.megamodel.model.ComponentModelServiceRepository;
+import org.consistency.megamodel.model.ComponentState;
+import org.consistency.megamodel.model.ConsistencyType;
+import org.consistency.megamodel.model.MicroserviceEntity;
+import org.consistency.megamodel.model.ModelNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StateTableTest {
+    private ComponentModelServiceRepository repository;
+    private ComponentModelRepository componentModels;
+    private IdRegistry ids;
+    private StateTable stateTable;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ComponentModelServiceRepository.class);
+        componentModels = mock(ComponentModelRepository.class);
+        when(repository.findEntriesByComponentId(anyString())).thenAnswer(invocation -> new ArrayList<>());
+        when(repository.findEntriesByComponentIds(anyCollection())).thenAnswer(invocation -> new ArrayList<>());
+        ids = new IdRegistry();
+        stateTable = new StateTable(repository, componentModels, new StalenessTimer(), new StateGauges(ids), ids,
+            mock(PlatformTransactionManager.class));
+        // One shard, so every component shares its lock
+        ReflectionTestUtils.setField(stateTable, "shardCount", 1);
+        ReflectionTestUtils.invokeMethod(stateTable, "init");
+    }
+
+    @Test
+    void unknownComponentIsNotFoundAndNotInterned() {
+        assertThrows(ModelNotFoundException.class, () -> stateTable.query("missing", slot -> slot));
+        assertNull(stateTable.queryIfExists("missing", slot -> slot));
+        assertEquals(-1, ids.existingComponentKey("missing"));
+    }
+
+    @Test
+    void preloadSkipsUnknownComponents() {
+        when(repository.findEntriesByComponentIds(anyCollection())).thenReturn(List.of(entry("ms1", "c1")));
+        when(componentModels.findExistingIds(any())).thenReturn(List.of("c2"));
+
+        stateTable.preload(List.of("c1", "c2", "missing"));
+
+        assertEquals(1, holders("c1"));
+        assertEquals(0, holders("c2"));
+        assertEquals(-1, ids.existingComponentKey("missing"));
+    }
+
+    @Test
+    void deletedComponentIsNotLoadedAgainAsAnEmptySlot() {
+        when(componentModels.existsById("c1")).thenReturn(true);
+        assertEquals(0, holders("c1"));
+
+        when(componentModels.existsById("c1")).thenReturn(false);
+        stateTable.evictComponent("c1");
+
+        assertThrows(ModelNotFoundException.class, () -> stateTable.query("c1", slot -> slot));
+    }
+
+    @Test
+    void loadingAComponentDoesNotBlockTheOtherComponentsOfItsShard() throws Exception {
+        when(componentModels.existsById(anyString())).thenReturn(true);
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.findEntriesByComponentId("slow")).thenAnswer(invocation -> {
+            reading.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return new ArrayList<>(List.of(entry("ms1", "slow")));
+        });
+        holders("fast");
+
+        CompletableFuture<Integer> slow = CompletableFuture.supplyAsync(() -> holders("slow"));
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Integer> fast = CompletableFuture.supplyAsync(() -> holders("fast"));
+
+        assertEquals(0, fast.get(10, TimeUnit.SECONDS));
+        assertFalse(slow.isDone());
+        release.countDown();
+        assertEquals(1, slow.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void concurrentLoadsOfAComponentInstallOneSlot() throws Exception {
+        when(componentModels.existsById(anyString())).thenReturn(true);
+        CountDownLatch bothReading = new CountDownLatch(2);
+        when(repository.findEntriesByComponentId("c1")).thenAnswer(invocation -> {
+            bothReading.countDown();
+            bothReading.await(10, TimeUnit.SECONDS);
+            return new ArrayList<>(List.of(entry("ms1", "c1")));
+        });
+
+        CompletableFuture<ComponentSlot> first = CompletableFuture.supplyAsync(() -> stateTable.query("c1", slot -> slot));
+        CompletableFuture<ComponentSlot> second = CompletableFuture.supplyAsync(() -> stateTable.query("c1", slot -> slot));
+
+        assertSame(first.get(10, TimeUnit.SECONDS), second.get(10, TimeUnit.SECONDS));
+        assertEquals(1, holders("c1"));
+    }
+
+    @Test
+    void componentEvictedWhileLoadingIsReadAgain() throws Exception {
+        when(componentModels.existsById(anyString())).thenReturn(true);
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch evicted = new CountDownLatch(1);
+        when(repository.findEntriesByComponentId("c1"))
+            .thenAnswer(invocation -> {
+                reading.countDown();
+                evicted.await(10, TimeUnit.SECONDS);
+                return new ArrayList<>(List.of(entry("ms1", "c1")));
+            })
+            .thenAnswer(invocation -> new ArrayList<>());
+
+        CompletableFuture<Integer> load = CompletableFuture.supplyAsync(() -> holders("c1"));
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+        stateTable.evictComponent("c1");
+        evicted.countDown();
+
+        // The rows read before the eviction are dropped in favour of a fresh read
+        assertEquals(0, load.get(10, TimeUnit.SECONDS));
+        verify(repository, times(2)).findEntriesByComponentId("c1");
+    }
+
+    @Test
+    void unloadedComponentKeepsItsDirtyEntriesAndIsLoadedAgain() {
+        when(componentModels.existsById(anyString())).thenReturn(true);
+        when(repository.findEntriesByComponentId("c1")).thenAnswer(invocation -> new ArrayList<>(List.of(entry("ms1", "c1"))));
+        modify("c1");
+
+        assertEquals(1, stateTable.unloadComponents("c1"::equals));
+        assertEquals(1, stateTable.dirtyCount());
+        assertEquals(1, holders("c1"));
+        verify(repository, times(2)).findEntriesByComponentId("c1");
+    }
+
+    @Test
+    void entryIsQueuedOnceUntilItsSnapshotIsTaken() {
+        when(componentModels.existsById(anyString())).thenReturn(true);
+        when(repository.findEntriesByComponentId("c1")).thenAnswer(invocation -> new ArrayList<>(List.of(entry("ms1", "c1"))));
+        modify("c1");
+        modify("c1");
+        assertEquals(1, stateTable.dirtyCount());
+
+        List<ComponentStateEntry> polled = stateTable.pollDirty(10);
+        assertEquals(1, polled.size());
+        ComponentStateEntry snapshot = stateTable.takeSnapshotForFlush(polled.get(0));
+        assertEquals(ComponentState.MODIFIED, snapshot.getState());
+        assertFalse(stateTable.hasDirtyEntries());
+
+        // Changed again after the snapshot, so it is written again
+        modify("c1");
+        assertEquals(1, stateTable.dirtyCount());
+    }
+
+    @Test
+    void insertedEntryGivesWayToOneAddedMeanwhile() {
+        when(componentModels.existsById(anyString())).thenReturn(true);
+        ComponentModelServiceEntity row = row(7L);
+        when(repository.save(any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+        when(repository.findByMicroserviceIdAndComponentModelId("ms1", "c1")).thenReturn(Optional.of(row));
+
+        // Another thread inserted the pair first, its row is returned
+        ComponentStateEntry inserted = stateTable.insert(row(null));
+        assertEquals(7L, inserted.getId());
+
+        ComponentStateEntry adopted = stateTable.query("c1", slot -> stateTable.adopt(slot, inserted));
+        assertSame(inserted, adopted);
+        ComponentStateEntry duplicate = ComponentStateEntry.from(row);
+        duplicate.bind(ids);
+        assertSame(inserted, stateTable.query("c1", slot -> stateTable.adopt(slot, duplicate)));
+        assertEquals(1, holders("c1"));
+    }
+
+    private void modify(String componentId) {
+        stateTable.execute(componentId, slot -> {
+            ComponentStateEntry entry = slot.entries().iterator().next();
+            entry.setState(ComponentState.MODIFIED);
+            stateTable.markDirty(entry);
+        });
+    }
+
+    private static ComponentModelServiceEntity row(Long id) {
+        MicroserviceEntity microservice = new MicroserviceEntity();
+        microservice.setId("ms1");
+        ComponentModelEntity componentModel = new ComponentModelEntity();
+        componentModel.setId("c1");
+        ComponentModelServiceEntity row = new ComponentModelServiceEntity();
+        row.setId(id);
+        row.setMicroservice(microservice);
+        row.setComponentModel(componentModel);
+        row.setState(ComponentState.INVALID);
+        row.setConsistencyType(ConsistencyType.EVENTUAL);
+        row.setVersion(0L);
+        return row;
+    }
+
+    private int holders(String componentId) {
+        return stateTable.query(componentId, slot -> slot.entries().size());
+    }
+
+    private static ComponentStateEntry entry(String microserviceId, String componentId) {
+        return new ComponentStateEntry(1L, microserviceId, componentId, ComponentState.INVALID,
+            ConsistencyType.EVENTUAL, 0L, LocalDateTime.now(), null);
+    }
+}